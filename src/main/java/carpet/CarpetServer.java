@@ -19,15 +19,20 @@ import carpet.script.ScriptCommand;
 import carpet.commands.SpawnCommand;
 import carpet.commands.TestCommand;
 import carpet.network.ServerNetworkHandler;
+import carpet.helpers.BulkFakePlayers;
 import carpet.helpers.HopperCounter;
 import carpet.logging.LoggerRegistry;
+import carpet.logging.logHelpers.TrajectoryCapture;
 import carpet.script.CarpetScriptServer;
 import carpet.api.settings.SettingsManager;
 import carpet.logging.HUDController;
 import carpet.script.external.Carpet;
 import carpet.script.external.Vanilla;
 import carpet.script.utils.ParticleParser;
+import carpet.utils.ContinuousProfiler;
 import carpet.utils.MobAI;
+import carpet.utils.PathfindingProfiler;
+import carpet.utils.SpatialProfiler;
 import carpet.utils.SpawnReporter;
 import com.mojang.brigadier.CommandDispatcher;
 
@@ -96,6 +101,7 @@ public class CarpetServer // static for now - easier to handle all around the co
     public static void onServerLoadedWorlds(MinecraftServer minecraftServer)
     {
         HopperCounter.resetAll(minecraftServer, true);
+        if (CarpetSettings.persistentHopperCounters) HopperCounter.loadAll(minecraftServer);
         extensions.forEach(e -> e.onServerLoadedWorlds(minecraftServer));
         // initialize scarpet rules after all extensions are loaded
         forEachManager(SettingsManager::initializeScarpetRules);
@@ -105,7 +111,9 @@ public class CarpetServer // static for now - easier to handle all around the co
     public static void tick(MinecraftServer server)
     {
         HUDController.update_hud(server, null);
+        if (CarpetSettings.persistentHopperCounters && server.getTickCount() % HopperCounter.SAVE_INTERVAL == 0) HopperCounter.saveAll(server);
         if (scriptServer != null) scriptServer.tick();
+        BulkFakePlayers.tick(server);
 
         //in case something happens
         CarpetSettings.impendingFillSkipUpdates.set(false);
@@ -179,6 +187,8 @@ public class CarpetServer // static for now - easier to handle all around the co
         if (minecraft_server != null)
         {
             if (scriptServer != null) scriptServer.onClose();
+            // waiting for the write, the world folder may be gone or reused right after
+            if (CarpetSettings.persistentHopperCounters) HopperCounter.saveAll(server).join();
             // this is a mess, will cleanip onlly when global reference is gone
             if (!Vanilla.MinecraftServer_getScriptServer(server).stopAll) {
                 Vanilla.MinecraftServer_getScriptServer(server).onClose();
@@ -186,10 +196,17 @@ public class CarpetServer // static for now - easier to handle all around the co
 
             scriptServer = null;
             ServerNetworkHandler.close();
+            BulkFakePlayers.reset();
+            TrajectoryCapture.reset();
 
             LoggerRegistry.stopLoggers();
             HUDController.resetScarpetHUDs();
             ParticleParser.resetCache();
+            ContinuousProfiler.reset();
+            SpatialProfiler.reset();
+            PathfindingProfiler.reset();
+            PerimeterInfoCommand.reset();
+            SpawnCommand.reset();
             extensions.forEach(e -> e.onServerClosed(server));
             minecraft_server = null;
         }
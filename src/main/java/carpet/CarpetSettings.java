@@ -365,6 +365,16 @@ public class CarpetSettings
     )
     public static boolean hopperCounters = false;
 
+    @Rule(
+            desc = "Hopper counters are saved with the world and survive server restarts",
+            extra = {
+                    "Counters are written to hopper_counters.dat in the world folder every 5 minutes and on shutdown",
+                    "Includes the per second, minute and hour rate history shown with /counter <color> rates"
+            },
+            category = {CREATIVE, FEATURE}
+    )
+    public static boolean persistentHopperCounters = false;
+
     @Rule(
             desc = "Allows Budding Amethyst blocks to be moved",
             extra = {
@@ -439,6 +449,28 @@ public class CarpetSettings
     )
     public static String defaultLoggers = "none";
 
+    public static class HudUpdateIntervalValidator extends Validator<Integer> {
+
+        @Override public Integer validate(CommandSourceStack source, CarpetRule<Integer> currentRule, Integer newValue, String string) {
+            return newValue > 0 ? newValue : null;
+        }
+
+        @Override
+        public String description() {
+            return "You have to choose a value greater than 0";
+        }
+    }
+    @Rule(
+            desc = "Ticks between HUD logger updates for each player",
+            extra = {"Players are spread over these ticks, so they are not all updated at once,",
+                    "and footers that didn't change are not sent again"},
+            options = {"10", "20", "40"},
+            category = {CREATIVE, SURVIVAL},
+            validate = HudUpdateIntervalValidator.class,
+            strict = false
+    )
+    public static int hudUpdateInterval = 20;
+
     @Rule(
             desc = "Enables /distance command to measure in game distance between points",
             extra = "Also enables brown carpet placement action if 'carpets' rule is turned on as well",
@@ -525,6 +557,41 @@ public class CarpetSettings
     )
     public static boolean scriptsOptimization = true;
 
+    @Rule(
+            desc = "Approximate memory in megabytes an app's global variables and state can hold before its owner gets warned, 0 for no warnings",
+            extra = "Checked every 5 seconds. See current usage with /script memory",
+            options = {"0", "64", "256"},
+            category = SCARPET,
+            strict = false,
+            validate = Validators.NonNegativeNumber.class
+    )
+    public static int scriptsAppMemoryWarning = 0;
+
+    @Rule(
+            desc = "Approximate memory in megabytes an app's global variables and state can hold before it gets unloaded, 0 for no limit",
+            extra = "Apps can set a lower limit for themselves with 'memory_limit' in their config",
+            options = {"0", "256", "1024"},
+            category = SCARPET,
+            strict = false,
+            validate = Validators.NonNegativeNumber.class
+    )
+    public static int scriptsAppMemoryLimit = 0;
+
+    @Rule(
+            desc = "Time in milliseconds each app can spend on the server thread per tick, 0 for no limit",
+            extra = {
+                    "Scheduled calls of apps over their budget wait for the next tick,",
+                    "and code running for ten times the budget in a tick gets stopped.",
+                    "Apps can set a lower budget for themselves with 'tick_budget' in their config.",
+                    "See the usage with /script apps"
+            },
+            options = {"0", "5", "10", "25"},
+            category = SCARPET,
+            strict = false,
+            validate = Validators.NonNegativeNumber.class
+    )
+    public static int scriptsAppTickBudget = 0;
+
     private static class ScarpetAppStore extends Validator<String> {
         @Override
         public String validate(CommandSourceStack source, CarpetRule<String> currentRule, String newValue, String stringInput) {
@@ -538,7 +605,7 @@ public class CarpetSettings
             } else {
                 if (newValue.endsWith("/"))
                     newValue = newValue.substring(0, newValue.length() - 1);
-                AppStoreManager.setScarpetRepoLink("https://api.github.com/repos/" + newValue + "/");
+                AppStoreManager.setAppStore(newValue);
             }
             if (source != null)
                 CommandHelper.notifyPlayersCommandsChanged(source.getServer());
@@ -547,7 +614,7 @@ public class CarpetSettings
 
         @Override
         public String description() {
-            return "Appstore link should point to a valid github repository";
+            return "Appstore link should point to a valid github repository, app store mirror or local folder";
         }
     }
 
@@ -556,7 +623,10 @@ public class CarpetSettings
             extra = {
                     "set to 'none' to disable.",
                     "Point to any github repo with scarpet apps",
-                    "using <user>/<repo>/contents/<path...>"
+                    "using <user>/<repo>/contents/<path...>,",
+                    "to a http(s) mirror serving an index.json of its apps,",
+                    "or to a local folder of apps with file:<path>.",
+                    "Downloads are cached in config/carpet/appstore_cache"
             },
             category = SCARPET,
             strict = false,
@@ -37,6 +37,8 @@ public class CounterCommand
                                     .executes(c -> resetCounter(c.getSource(), dyeColor)))
                             .then(literal("realtime")
                                     .executes(c -> displayCounter(c.getSource(), dyeColor, true)))
+                            .then(literal("rates")
+                                    .executes(c -> displayRates(c.getSource(), dyeColor)))
                     );
         }
         dispatcher.register(commandBuilder);
@@ -60,6 +62,19 @@ public class CounterCommand
         return 1;
     }
 
+    /**
+     * A method to display average and peak rates of a counter over the last minute, hour and day
+     * @param color The counter colour whose rates we are querying.
+     */
+    private static int displayRates(CommandSourceStack source, DyeColor color)
+    {
+        for (Component message: HopperCounter.getCounter(color).formatRates(source.getServer()))
+        {
+            source.sendSuccess(() -> message, false);
+        }
+        return 1;
+    }
+
     private static int resetCounters(CommandSourceStack source)
     {
         HopperCounter.resetAll(source.getServer(), false);
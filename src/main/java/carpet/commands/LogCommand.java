@@ -3,21 +3,29 @@ package carpet.commands;
 import carpet.CarpetSettings;
 import carpet.logging.Logger;
 import carpet.logging.LoggerRegistry;
+import carpet.logging.logHelpers.TrajectoryCapture;
 import carpet.utils.CommandHelper;
 import carpet.utils.Messenger;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 import net.minecraft.commands.CommandBuildContext;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
 import java.util.Arrays;
 
@@ -37,6 +45,27 @@ public class LogCommand
                                 suggests( (c, b)-> suggest(c.getSource().getOnlinePlayerNames(),b)).
                                 executes( (c) -> unsubFromAll(c.getSource(), getString(c, "player")))));
 
+        literalargumentbuilder.then(Commands.literal("capture").
+                requires( (player) -> player.hasPermission(2)).
+                executes( (c) -> captureStatus(c.getSource())).
+                then(Commands.literal("start").
+                        executes( (c) -> startCapture(c.getSource(), EnumSet.allOf(TrajectoryCapture.Kind.class))).
+                        then(Commands.argument("kind", StringArgumentType.word()).
+                                suggests( (c, b) -> suggest(Arrays.stream(TrajectoryCapture.Kind.values()).map(k -> k.name), b)).
+                                executes( (c) -> startCapture(c.getSource(), getString(c, "kind"))))).
+                then(Commands.literal("stop").
+                        executes( (c) -> stopCapture(c.getSource()))).
+                then(Commands.literal("summary").
+                        then(Commands.argument("capture", StringArgumentType.word()).
+                                suggests( (c, b) -> suggest(TrajectoryCapture.list(c.getSource().getServer()), b)).
+                                executes( (c) -> captureSummary(c.getSource(), getString(c, "capture"))))).
+                then(Commands.literal("replay").
+                        then(Commands.argument("capture", StringArgumentType.word()).
+                                suggests( (c, b) -> suggest(TrajectoryCapture.list(c.getSource().getServer()), b)).
+                                executes( (c) -> replayCapture(c.getSource(), getString(c, "capture"), 30)).
+                                then(Commands.argument("seconds", IntegerArgumentType.integer(1, 3600)).
+                                        executes( (c) -> replayCapture(c.getSource(), getString(c, "capture"), IntegerArgumentType.getInteger(c, "seconds")))))));
+
         literalargumentbuilder.then(Commands.argument("log name",StringArgumentType.word()).
                 suggests( (c, b)-> suggest(LoggerRegistry.getLoggerNames(),b)).
                 executes( (c)-> toggleSubscription(c.getSource(), c.getSource().getTextName(), getString(c, "log name"))).
@@ -66,6 +95,98 @@ public class LogCommand
 
         dispatcher.register(literalargumentbuilder);
     }
+    private static int captureStatus(CommandSourceStack source)
+    {
+        Messenger.m(source, TrajectoryCapture.status());
+        return 1;
+    }
+
+    private static int startCapture(CommandSourceStack source, String kindName)
+    {
+        TrajectoryCapture.Kind kind = TrajectoryCapture.Kind.byName(kindName);
+        if (kind == null)
+        {
+            Messenger.m(source, "r Unknown trajectory kind: " + kindName);
+            return 0;
+        }
+        return startCapture(source, EnumSet.of(kind));
+    }
+
+    private static int startCapture(CommandSourceStack source, EnumSet<TrajectoryCapture.Kind> kinds)
+    {
+        if (TrajectoryCapture.isCapturing())
+        {
+            Messenger.m(source, "r Already capturing, stop the current capture first");
+            return 0;
+        }
+        TrajectoryCapture.start(source.getServer(), kinds);
+        Messenger.m(source, "w Capturing trajectories of ", "wb " + String.join(", ", kinds.stream().map(k -> k.name).toList()));
+        return 1;
+    }
+
+    private static int stopCapture(CommandSourceStack source)
+    {
+        if (!TrajectoryCapture.isCapturing())
+        {
+            Messenger.m(source, "r Not capturing");
+            return 0;
+        }
+        Component status = TrajectoryCapture.status();
+        MinecraftServer server = source.getServer();
+        // large captures take a while to compress, the result is reported back on the server thread
+        TrajectoryCapture.stop(server).whenComplete((file, error) -> server.execute(() -> {
+            if (error != null)
+            {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                CarpetSettings.LOG.error("Failed to save trajectory capture", cause);
+                Messenger.m(source, "r Failed to save trajectory capture: " + cause.getMessage());
+                return;
+            }
+            if (file == null)
+            {
+                Messenger.m(source, "w Nothing was captured");
+                return;
+            }
+            Messenger.m(source, status);
+            String saved = file.getFileName().toString();
+            Messenger.m(source, "w Saved as ", "wb " + saved.substring(0, saved.length() - TrajectoryCapture.EXTENSION.length()));
+        }));
+        return 1;
+    }
+
+    private static int captureSummary(CommandSourceStack source, String name)
+    {
+        try
+        {
+            TrajectoryCapture.load(source.getServer(), name).summary().forEach(line -> Messenger.m(source, line));
+            return 1;
+        }
+        catch (IOException e)
+        {
+            Messenger.m(source, "r Failed to read trajectory capture: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static int replayCapture(CommandSourceStack source, String name, int seconds)
+    {
+        TrajectoryCapture capture;
+        try
+        {
+            capture = TrajectoryCapture.load(source.getServer(), name);
+        }
+        catch (IOException e)
+        {
+            Messenger.m(source, "r Failed to read trajectory capture: " + e.getMessage());
+            return 0;
+        }
+        ServerPlayer player = source.getPlayer();
+        List<ServerPlayer> players = player != null ? List.of(player) : source.getLevel().players();
+        int drawn = capture.replay(source.getServer(), players, seconds * 20);
+        Messenger.m(source, "w Showing ", "wb " + drawn, "w  trajectories for " + seconds + " seconds");
+        return drawn;
+    }
+
     private static int listLogs(CommandSourceStack source)
     {
         Player player;
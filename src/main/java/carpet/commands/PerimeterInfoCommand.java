@@ -24,6 +24,17 @@ import static net.minecraft.commands.arguments.ResourceArgument.resource;
 
 public class PerimeterInfoCommand
 {
+    // one check at a time, only touched on the server thread
+    private static boolean running = false;
+
+    /**
+     * Checks still queued when the server stops never finish, so the next server needs to start without one
+     */
+    public static void reset()
+    {
+        running = false;
+    }
+
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher, CommandBuildContext commandBuildContext)
     {
         LiteralArgumentBuilder<CommandSourceStack> command = literal("perimeterinfo").
@@ -49,14 +60,20 @@ public class PerimeterInfoCommand
 
     private static int perimeterDiagnose(CommandSourceStack source, BlockPos pos, String mobId)
     {
+        if (running)
+        {
+            Messenger.m(source, "r Another perimeter check is still running, try again when it's done");
+            return 0;
+        }
         CompoundTag nbttagcompound = new CompoundTag();
         Mob entityliving = null;
         if (mobId != null)
         {
             nbttagcompound.putString("id", mobId);
+            // not added to the world, so it doesn't tick while spots are checked over several ticks
             Entity baseEntity = EntityType.loadEntityRecursive(nbttagcompound, source.getLevel(), (entity_1x) -> {
                 entity_1x.moveTo(new BlockPos(pos.getX(), source.getLevel().getMinBuildHeight()-10, pos.getZ()), entity_1x.getYRot(), entity_1x. getXRot());
-                return !source.getLevel().addWithUUID(entity_1x) ? null : entity_1x;
+                return entity_1x;
             });
             if (!(baseEntity instanceof  Mob))
             {
@@ -66,17 +83,50 @@ public class PerimeterInfoCommand
             }
             entityliving = (Mob) baseEntity;
         }
-        PerimeterDiagnostics.Result res = PerimeterDiagnostics.countSpots(source.getLevel(), pos, entityliving);
-
-        Messenger.m(source, "w Spawning spaces around ",Messenger.tp("c",pos), "w :");
-        Messenger.m(source, "w   potential in-liquid: ","wb "+res.liquid);
-        Messenger.m(source, "w   potential on-ground: ","wb "+res.ground);
-        if (entityliving != null)
+        Mob mob = entityliving;
+        running = true;
+        boolean submitted = false;
+        try
         {
-            Messenger.m(source, "w   ", entityliving.getDisplayName() ,"w : ","wb "+res.specific);
-            res.samples.forEach(bp -> Messenger.m(source, "w   ", Messenger.tp("c", bp)));
-            entityliving.discard(); // dicard // remove();
+            checkPerimeter(source, pos, mob);
+            submitted = true;
+        }
+        finally
+        {
+            if (!submitted)
+            {
+                running = false;
+                if (mob != null)
+                {
+                    mob.discard();
+                }
+            }
         }
         return 1;
     }
+
+    private static void checkPerimeter(CommandSourceStack source, BlockPos pos, Mob mob)
+    {
+        PerimeterDiagnostics.countSpotsAsync(source.getLevel(), pos, mob).whenComplete((res, error) -> {
+            running = false;
+            if (mob != null)
+            {
+                mob.discard();
+            }
+            if (error != null)
+            {
+                CarpetSettings.LOG.error("Perimeter check failed", error);
+                Messenger.m(source, "r Perimeter check failed: " + error.getMessage());
+                return;
+            }
+            Messenger.m(source, "w Spawning spaces around ",Messenger.tp("c",pos), "w :");
+            Messenger.m(source, "w   potential in-liquid: ","wb "+res.liquid);
+            Messenger.m(source, "w   potential on-ground: ","wb "+res.ground);
+            if (mob != null)
+            {
+                Messenger.m(source, "w   ", mob.getDisplayName() ,"w : ","wb "+res.specific);
+                res.samples.forEach(bp -> Messenger.m(source, "w   ", Messenger.tp("c", bp)));
+            }
+        });
+    }
 }
@@ -1,5 +1,7 @@
 package carpet.commands;
 
+import carpet.helpers.ActionTimeline;
+import carpet.helpers.BulkFakePlayers;
 import carpet.helpers.EntityPlayerActionPack;
 import carpet.helpers.EntityPlayerActionPack.Action;
 import carpet.helpers.EntityPlayerActionPack.ActionType;
@@ -14,6 +16,7 @@ import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.SharedConstants;
@@ -35,6 +38,7 @@ import net.minecraft.world.level.GameType;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.phys.Vec2;
 import net.minecraft.world.phys.Vec3;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -110,6 +114,14 @@ public class PlayerCommand
                                                         )))
                                         )))
                                 ))
+                        ).then(literal("timeline")
+                                .then(literal("play").then(argument("timeline", StringArgumentType.word())
+                                        .suggests((c, b) -> suggest(ActionTimeline.list(c.getSource().getServer()), b))
+                                        .executes(PlayerCommand::playTimeline)))
+                                .then(literal("stop").executes(manipulation(ap -> ap.play(null))))
+                        ).then(literal("bulk").requires((player) -> player.hasPermission(2))
+                                .then(literal("spawn").then(makeBulkSpawnCommand()))
+                                .then(literal("kill").executes(PlayerCommand::bulkKill))
                         )
                 );
         dispatcher.register(command);
@@ -125,6 +137,17 @@ public class PlayerCommand
                         .executes(c -> manipulate(c, ap -> ap.start(type, Action.interval(IntegerArgumentType.getInteger(c, "ticks")))))));
     }
 
+    private static RequiredArgumentBuilder<CommandSourceStack, Integer> makeBulkSpawnCommand()
+    {
+        RequiredArgumentBuilder<CommandSourceStack, Integer> command = argument("count", IntegerArgumentType.integer(1, BulkFakePlayers.MAX_BOTS))
+                .executes(c -> bulkSpawn(c, BulkFakePlayers.Behaviour.IDLE));
+        for (BulkFakePlayers.Behaviour behaviour : BulkFakePlayers.Behaviour.values())
+        {
+            command.then(literal(behaviour.getName()).executes(c -> bulkSpawn(c, behaviour)));
+        }
+        return command;
+    }
+
     private static LiteralArgumentBuilder<CommandSourceStack> makeDropCommand(String actionName, boolean dropAll)
     {
         return literal(actionName)
@@ -303,6 +326,58 @@ public class PlayerCommand
         return 1;
     }
 
+    private static int playTimeline(CommandContext<CommandSourceStack> context)
+    {
+        if (cantManipulate(context)) return 0;
+        CommandSourceStack source = context.getSource();
+        ActionTimeline timeline;
+        try
+        {
+            timeline = ActionTimeline.load(source.getServer(), StringArgumentType.getString(context, "timeline"));
+        }
+        catch (ActionTimeline.TimelineException e)
+        {
+            Messenger.m(source, "r " + e.getMessage());
+            return 0;
+        }
+        catch (IOException e)
+        {
+            Messenger.m(source, "r Failed to read timeline: " + e.getMessage());
+            return 0;
+        }
+        ((ServerPlayerInterface) getPlayer(context)).getActionPack().play(timeline);
+        return 1;
+    }
+
+    private static int bulkSpawn(CommandContext<CommandSourceStack> context, BulkFakePlayers.Behaviour behaviour)
+    {
+        CommandSourceStack source = context.getSource();
+        String prefix = StringArgumentType.getString(context, "player");
+        int count = IntegerArgumentType.getInteger(context, "count");
+        if ((prefix + (count - 1)).length() > maxNameLength(source.getServer()))
+        {
+            Messenger.m(source, "rb Player name prefix: " + prefix + " is too long for " + count + " players");
+            return 0;
+        }
+        if (!Level.isInSpawnableBounds(BlockPos.containing(source.getPosition())))
+        {
+            Messenger.m(source, "rb Players cannot be placed outside of the world");
+            return 0;
+        }
+        int queued = BulkFakePlayers.spawn(source.getServer(), prefix, count, source.getLevel(), source.getPosition(), behaviour);
+        Messenger.m(source, "w Spawning ", "wb " + queued, "w  " + behaviour.getName() + " players named ", "wb " + prefix + "0",
+                "w  to ", "wb " + prefix + (count - 1), "g  (" + BulkFakePlayers.count() + " in total)");
+        return queued;
+    }
+
+    private static int bulkKill(CommandContext<CommandSourceStack> context)
+    {
+        String prefix = StringArgumentType.getString(context, "player");
+        int killed = BulkFakePlayers.kill(context.getSource().getServer(), prefix);
+        Messenger.m(context.getSource(), "w Removed ", "wb " + killed, "w  players named ", "wb " + prefix + "*");
+        return killed;
+    }
+
     private static int maxNameLength(MinecraftServer server)
     {
         return server.getPort() >= 0 ? SharedConstants.MAX_PLAYER_NAME_LENGTH : 40;
@@ -3,6 +3,10 @@ package carpet.commands;
 import carpet.CarpetSettings;
 import carpet.utils.CarpetProfiler;
 import carpet.utils.CommandHelper;
+import carpet.utils.ContinuousProfiler;
+import carpet.utils.Messenger;
+import carpet.utils.PathfindingProfiler;
+import carpet.utils.SpatialProfiler;
 
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
@@ -28,7 +32,35 @@ public class ProfileCommand
                 then(literal("entities").
                         executes((c) -> healthEntities(c.getSource(), 100)).
                         then(argument("ticks", integer(20,24000)).
-                                executes((c) -> healthEntities(c.getSource(), getInteger(c, "ticks")))));
+                                executes((c) -> healthEntities(c.getSource(), getInteger(c, "ticks"))))).
+                then(literal("chunks").
+                        executes((c) -> healthChunks(c.getSource(), 100)).
+                        then(argument("ticks", integer(20,24000)).
+                                executes((c) -> healthChunks(c.getSource(), getInteger(c, "ticks"))))).
+                then(literal("pathfinding").
+                        executes((c) -> healthPathfinding(c.getSource(), 100, 1)).
+                        then(argument("ticks", integer(20,24000)).
+                                executes((c) -> healthPathfinding(c.getSource(), getInteger(c, "ticks"), 1)).
+                                then(argument("sampling", integer(1, 1000)).
+                                        executes((c) -> healthPathfinding(c.getSource(), getInteger(c, "ticks"), getInteger(c, "sampling")))))).
+                then(literal("continuous").
+                        executes((c) -> ContinuousProfiler.report(c.getSource(), false)).
+                        then(literal("start").
+                                executes((c) -> startContinuous(c.getSource(), ContinuousProfiler.DEFAULT_HISTORY)).
+                                then(argument("history", integer(20, 72000)).
+                                        executes((c) -> startContinuous(c.getSource(), getInteger(c, "history"))))).
+                        then(literal("stop").
+                                executes((c) -> stopContinuous(c.getSource()))).
+                        then(literal("health").
+                                executes((c) -> ContinuousProfiler.report(c.getSource(), false))).
+                        then(literal("entities").
+                                executes((c) -> ContinuousProfiler.report(c.getSource(), true))).
+                        then(literal("spikes").
+                                executes((c) -> ContinuousProfiler.spikes(c.getSource(), 10)).
+                                then(argument("count", integer(1, 100)).
+                                        executes((c) -> ContinuousProfiler.spikes(c.getSource(), getInteger(c, "count"))))).
+                        then(literal("export").
+                                executes((c) -> ContinuousProfiler.export(c.getSource()))));
         dispatcher.register(literalargumentbuilder);
     }
 
@@ -43,4 +75,35 @@ public class ProfileCommand
         CarpetProfiler.prepare_entity_report(source, ticks);
         return 1;
     }
+
+    public static int healthChunks(CommandSourceStack source, int ticks)
+    {
+        SpatialProfiler.prepare_report(source, ticks);
+        return 1;
+    }
+
+    public static int healthPathfinding(CommandSourceStack source, int ticks, int sampling)
+    {
+        PathfindingProfiler.prepare_report(source, ticks, sampling);
+        return 1;
+    }
+
+    public static int startContinuous(CommandSourceStack source, int history)
+    {
+        ContinuousProfiler.start(source.getServer(), history);
+        Messenger.m(source, "w Continuous profiler started, keeping the last ", "y " + history, "w  ticks");
+        return 1;
+    }
+
+    public static int stopContinuous(CommandSourceStack source)
+    {
+        if (!ContinuousProfiler.isRunning())
+        {
+            Messenger.m(source, "r Continuous profiler is not running");
+            return 0;
+        }
+        ContinuousProfiler.stop();
+        Messenger.m(source, "w Continuous profiler stopped, collected data is kept until it is started again");
+        return 1;
+    }
 }
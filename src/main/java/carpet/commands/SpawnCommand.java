@@ -6,6 +6,7 @@ import carpet.helpers.HopperCounter;
 import carpet.utils.CommandHelper;
 import carpet.utils.Messenger;
 import carpet.utils.SpawnReporter;
+import carpet.utils.SpawnSimulation;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.BoolArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
@@ -51,21 +52,59 @@ public class SpawnCommand
                 then(literal("tracking").
                         executes( (c) -> printTrackingReport(c.getSource())).
                         then(literal("start").
-                                executes( (c) -> startTracking(c.getSource(), null)).
+                                executes( (c) -> startTracking(c.getSource(), null, false)).
+                                then(literal("heatmap").
+                                        executes( (c) -> startTracking(c.getSource(), null, true))).
                                 then(argument("from", BlockPosArgument.blockPos()).
                                         then(argument("to", BlockPosArgument.blockPos()).
                                                 executes( (c) -> startTracking(
                                                         c.getSource(),
                                                         BoundingBox.fromCorners(
                                                                 BlockPosArgument.getSpawnablePos(c, "from"),
-                                                                BlockPosArgument.getSpawnablePos(c, "to"))))))).
+                                                                BlockPosArgument.getSpawnablePos(c, "to")),
+                                                        false)).
+                                                then(literal("heatmap").
+                                                        executes( (c) -> startTracking(
+                                                                c.getSource(),
+                                                                BoundingBox.fromCorners(
+                                                                        BlockPosArgument.getSpawnablePos(c, "from"),
+                                                                        BlockPosArgument.getSpawnablePos(c, "to")),
+                                                                true)))))).
                         then(literal("stop").
                                 executes( (c) -> stopTracking(c.getSource()))).
+                        then(literal("heatmap").
+                                executes( (c) -> printHeatmap(c.getSource(), BlockPos.containing(c.getSource().getPosition()))).
+                                then(argument("pos", BlockPosArgument.blockPos()).
+                                        executes( (c) -> printHeatmap(c.getSource(), BlockPosArgument.getSpawnablePos(c, "pos"))))).
                         then(argument("type", word()).
                                 suggests( (c, b) -> suggest(Arrays.stream(SpawnReporter.cachedMobCategories()).map(MobCategory::getName),b)).
                                 executes( (c) -> recentSpawnsForType(c.getSource(), getString(c, "type"))))).
                 then(literal("test").
                         executes( (c)-> runTest(c.getSource(), 72000, null)).
+                        then(literal("simulate").
+                                then(argument("from", BlockPosArgument.blockPos()).
+                                        then(argument("to", BlockPosArgument.blockPos()).
+                                                executes( (c) -> runSimulation(
+                                                        c.getSource(),
+                                                        BoundingBox.fromCorners(
+                                                                BlockPosArgument.getSpawnablePos(c, "from"),
+                                                                BlockPosArgument.getSpawnablePos(c, "to")),
+                                                        72000, 8)).
+                                                then(argument("ticks", integer(10)).
+                                                        executes( (c) -> runSimulation(
+                                                                c.getSource(),
+                                                                BoundingBox.fromCorners(
+                                                                        BlockPosArgument.getSpawnablePos(c, "from"),
+                                                                        BlockPosArgument.getSpawnablePos(c, "to")),
+                                                                getInteger(c, "ticks"), 8)).
+                                                        then(argument("trials", integer(1, 64)).
+                                                                executes( (c) -> runSimulation(
+                                                                        c.getSource(),
+                                                                        BoundingBox.fromCorners(
+                                                                                BlockPosArgument.getSpawnablePos(c, "from"),
+                                                                                BlockPosArgument.getSpawnablePos(c, "to")),
+                                                                        getInteger(c, "ticks"),
+                                                                        getInteger(c, "trials")))))))).
                         then(argument("ticks", integer(10)).
                                 executes( (c)-> runTest(
                                         c.getSource(),
@@ -109,6 +148,17 @@ public class SpawnCommand
         dispatcher.register(literalargumentbuilder);
     }
 
+    // one simulation at a time, only touched on the server thread
+    private static boolean simulating = false;
+
+    /**
+     * Simulations still reading the world when the server stops never finish, so the next server needs to start without one
+     */
+    public static void reset()
+    {
+        simulating = false;
+    }
+
     private static final Map<String, MobCategory> MOB_CATEGORY_MAP = Arrays.stream(SpawnReporter.cachedMobCategories()).collect(Collectors.toMap(MobCategory::getName, Function.identity()));
 
     private static MobCategory getCategory(String string) throws CommandSyntaxException
@@ -133,15 +183,21 @@ public class SpawnCommand
         return 1;
     }
 
-    private static int startTracking(CommandSourceStack source, BoundingBox filter)
+    private static int startTracking(CommandSourceStack source, BoundingBox filter, boolean heatmap)
     {
         if (SpawnReporter.trackingSpawns())
         {
             Messenger.m(source, "r You are already tracking spawning.");
             return 0;
         }
-        SpawnReporter.startTracking(source.getServer(), filter);
-        Messenger.m(source, "gi Spawning tracking started.");
+        SpawnReporter.startTracking(source.getServer(), filter, heatmap);
+        Messenger.m(source, heatmap ? "gi Spawning tracking started, with a spawn heatmap." : "gi Spawning tracking started.");
+        return 1;
+    }
+
+    private static int printHeatmap(CommandSourceStack source, BlockPos pos)
+    {
+        Messenger.send(source, SpawnReporter.makeHeatmapReport(source.getLevel(), pos));
         return 1;
     }
 
@@ -187,6 +243,50 @@ public class SpawnCommand
         return 1;
     }
 
+    private static int runSimulation(CommandSourceStack source, BoundingBox area, int ticks, int trials)
+    {
+        if (simulating)
+        {
+            Messenger.m(source, "r Another spawn simulation is still running, try again when it's done");
+            return 0;
+        }
+        if ((long) area.getXSpan() * area.getYSpan() * area.getZSpan() > SpawnSimulation.MAX_VOLUME)
+        {
+            Messenger.m(source, "r Area to simulate is too large, at most " + SpawnSimulation.MAX_VOLUME + " blocks are allowed");
+            return 0;
+        }
+        simulating = true;
+        boolean submitted = false;
+        try
+        {
+            simulate(source, area, ticks, trials);
+            submitted = true;
+        }
+        finally
+        {
+            if (!submitted)
+            {
+                simulating = false;
+            }
+        }
+        Messenger.m(source, String.format("gi Started simulating %d trials of %d ticks of spawning", trials, ticks));
+        return 1;
+    }
+
+    private static void simulate(CommandSourceStack source, BoundingBox area, int ticks, int trials)
+    {
+        SpawnSimulation.run(source.getLevel(), area, source.getPosition(), ticks, trials).whenComplete((result, error) -> {
+            simulating = false;
+            if (error != null)
+            {
+                CarpetSettings.LOG.error("Spawn simulation failed", error);
+                Messenger.m(source, "r Spawn simulation failed: " + error.getMessage());
+                return;
+            }
+            Messenger.send(source, SpawnReporter.makeSimulationReport(result));
+        });
+    }
+
     private static int toggleMocking(CommandSourceStack source, boolean domock)
     {
         if (domock)
@@ -210,10 +310,7 @@ public class SpawnCommand
 
     private static int resetSpawnRates(CommandSourceStack source)
     {
-        for (MobCategory s: SpawnReporter.spawn_tries.keySet())
-        {
-            SpawnReporter.spawn_tries.put(s,1);
-        }
+        SpawnReporter.resetSpawnTries();
         Messenger.m(source, "gi Spawn rates brought to 1 round per tick for all groups.");
 
         return 1;
@@ -222,7 +319,7 @@ public class SpawnCommand
     private static int setSpawnRates(CommandSourceStack source, String mobtype, int rounds) throws CommandSyntaxException
     {
         MobCategory cat = getCategory(mobtype);
-        SpawnReporter.spawn_tries.put(cat, rounds);
+        SpawnReporter.setSpawnTries(cat, rounds);
         Messenger.m(source, "gi "+mobtype+" mobs will now spawn "+rounds+" times per tick");
         return 1;
     }
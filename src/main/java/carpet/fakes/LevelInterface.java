@@ -19,6 +19,9 @@ public interface LevelInterface
     
     boolean setBlockStateWithBlockEntity(BlockPos blockPos, BlockState blockState, BlockEntity newBlockEntity, int int1);
 
+    /**
+     * @return entities colliding with the box, at most one more than the limit, in a list reused by the next call
+     */
     List<Entity> getOtherEntitiesLimited(@Nullable Entity except, AABB box, Predicate<? super Entity> predicate, int limit);
 
     NeighborUpdater getNeighborUpdater();
@@ -0,0 +1,346 @@
+package carpet.helpers;
+
+import carpet.helpers.EntityPlayerActionPack.Action;
+import carpet.helpers.EntityPlayerActionPack.ActionType;
+import net.minecraft.core.Direction;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraft.world.phys.Vec3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Timed sequence of player actions, compiled once from a text file and replayed by any number of players,
+ * each with its own {@link Cursor}. Replays are deterministic: a step always runs the same number of ticks
+ * after the timeline started, as long as the player is ticking.
+ * <p>
+ * Each line holds one step, in the same words as the {@code /player} command, and {@code #} starts a comment:
+ * <pre>
+ * look north | look &lt;yaw&gt; &lt;pitch&gt; | look at &lt;x&gt; &lt;y&gt; &lt;z&gt;
+ * turn left | turn &lt;yaw&gt; &lt;pitch&gt;
+ * move forward|backward|left|right | move stop
+ * use|attack|jump|drop|dropStack|swapHands [once|continuous|interval &lt;ticks&gt;|stop]
+ * sneak | unsneak | sprint | unsprint | hotbar &lt;slot&gt; | stop
+ * wait &lt;ticks&gt;
+ * repeat [&lt;times&gt;] ... end
+ * </pre>
+ * Steps run one after another in the same tick until a {@code wait}. {@code repeat} without a count loops forever.
+ */
+public class ActionTimeline
+{
+    public static final String FOLDER = "player_timelines";
+    public static final String EXTENSION = ".txt";
+    // keeps loops without waits from hanging the server, the rest of the loop runs the next tick
+    private static final int MAX_STEPS_PER_TICK = 1000;
+
+    private static final Map<String, ActionType> ACTIONS = Map.of(
+            "use", ActionType.USE,
+            "attack", ActionType.ATTACK,
+            "jump", ActionType.JUMP,
+            "drop", ActionType.DROP_ITEM,
+            "dropStack", ActionType.DROP_STACK,
+            "swapHands", ActionType.SWAP_HANDS
+    );
+
+    private enum Op { ACT, WAIT, REPEAT, END }
+
+    /**
+     * @param argument ticks to wait, times to repeat (0 for ever), or for an end, where its repeat is
+     * @param loop slot of the loop counter, for repeats and ends
+     */
+    private record Step(Op op, Consumer<EntityPlayerActionPack> action, int argument, int loop) {}
+
+    public static class TimelineException extends Exception
+    {
+        public TimelineException(String message)
+        {
+            super(message);
+        }
+    }
+
+    public final String name;
+    private final Step[] steps;
+    private final int loops;
+
+    private ActionTimeline(String name, Step[] steps, int loops)
+    {
+        this.name = name;
+        this.steps = steps;
+        this.loops = loops;
+    }
+
+    public Cursor start()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * Position of one player in the timeline
+     */
+    public final class Cursor
+    {
+        private int next;
+        private int wait;
+        private final int[] remaining = new int[loops];
+
+        public ActionTimeline timeline()
+        {
+            return ActionTimeline.this;
+        }
+
+        /**
+         * Runs steps due this tick
+         *
+         * @return whether the timeline has steps left
+         */
+        public boolean tick(EntityPlayerActionPack actionPack)
+        {
+            if (wait > 0 && --wait > 0)
+            {
+                return true;
+            }
+            for (int executed = 0; next < steps.length && executed < MAX_STEPS_PER_TICK; executed++)
+            {
+                Step step = steps[next++];
+                switch (step.op)
+                {
+                    case ACT -> step.action.accept(actionPack);
+                    case WAIT ->
+                    {
+                        wait = step.argument;
+                        return true;
+                    }
+                    case REPEAT -> remaining[step.loop] = step.argument;
+                    case END ->
+                    {
+                        // loops with no count never run out
+                        if (remaining[step.loop] == 0 || --remaining[step.loop] > 0)
+                        {
+                            next = step.argument + 1;
+                        }
+                    }
+                }
+            }
+            return next < steps.length;
+        }
+    }
+
+    public static Path folder(MinecraftServer server)
+    {
+        return server.getWorldPath(LevelResource.ROOT).resolve(FOLDER);
+    }
+
+    /**
+     * @return names of timelines in the world folder
+     */
+    public static List<String> list(MinecraftServer server)
+    {
+        Path folder = folder(server);
+        if (!Files.isDirectory(folder))
+        {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(folder))
+        {
+            return files.map(f -> f.getFileName().toString())
+                    .filter(f -> f.endsWith(EXTENSION))
+                    .map(f -> f.substring(0, f.length() - EXTENSION.length()))
+                    .sorted().toList();
+        }
+        catch (IOException e)
+        {
+            return List.of();
+        }
+    }
+
+    public static ActionTimeline load(MinecraftServer server, String name) throws IOException, TimelineException
+    {
+        if (!name.matches("[a-zA-Z0-9_\\-]+"))
+        {
+            throw new TimelineException("Invalid timeline name: " + name);
+        }
+        Path file = folder(server).resolve(name + EXTENSION);
+        if (!Files.exists(file))
+        {
+            throw new TimelineException("No timeline " + name + " in " + FOLDER);
+        }
+        return compile(name, Files.readAllLines(file));
+    }
+
+    public static ActionTimeline compile(String name, List<String> lines) throws TimelineException
+    {
+        List<Step> steps = new ArrayList<>();
+        // indices of steps of repeats waiting for their end
+        ArrayDeque<Integer> open = new ArrayDeque<>();
+        int loops = 0;
+        for (int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            if (comment >= 0)
+            {
+                line = line.substring(0, comment);
+            }
+            String[] words = line.trim().split("\\s+");
+            if (words[0].isEmpty())
+            {
+                continue;
+            }
+            try
+            {
+                switch (words[0])
+                {
+                    case "wait" -> steps.add(new Step(Op.WAIT, null, positive(words, 1), 0));
+                    case "repeat" ->
+                    {
+                        open.push(steps.size());
+                        steps.add(new Step(Op.REPEAT, null, words.length > 1 ? positive(words, 1) : 0, loops++));
+                    }
+                    case "end" ->
+                    {
+                        if (open.isEmpty())
+                        {
+                            throw new TimelineException("end without repeat");
+                        }
+                        int repeat = open.pop();
+                        steps.add(new Step(Op.END, null, repeat, steps.get(repeat).loop));
+                    }
+                    default -> steps.add(new Step(Op.ACT, action(words), 0, 0));
+                }
+            }
+            catch (TimelineException | IllegalArgumentException e)
+            {
+                throw new TimelineException("Line " + (i + 1) + " of " + name + ": " + e.getMessage());
+            }
+        }
+        if (!open.isEmpty())
+        {
+            throw new TimelineException("repeat without end in " + name);
+        }
+        return new ActionTimeline(name, steps.toArray(new Step[0]), loops);
+    }
+
+    private static Consumer<EntityPlayerActionPack> action(String[] words) throws TimelineException
+    {
+        String command = words[0];
+        ActionType type = ACTIONS.get(command);
+        if (type != null)
+        {
+            // actions keep count of their uses, so each run starts a new one
+            String mode = words.length > 1 ? words[1] : "once";
+            return switch (mode)
+            {
+                case "once" -> ap -> ap.start(type, Action.once());
+                case "continuous" -> ap -> ap.start(type, Action.continuous());
+                case "interval" ->
+                {
+                    int ticks = positive(words, 2);
+                    yield ap -> ap.start(type, Action.interval(ticks));
+                }
+                case "stop" -> ap -> ap.start(type, null);
+                default -> throw new TimelineException("Unknown mode " + mode + " of " + command);
+            };
+        }
+        return switch (command)
+        {
+            case "stop" -> EntityPlayerActionPack::stopActions;
+            case "sneak" -> ap -> ap.setSneaking(true);
+            case "unsneak" -> ap -> ap.setSneaking(false);
+            case "sprint" -> ap -> ap.setSprinting(true);
+            case "unsprint" -> ap -> ap.setSprinting(false);
+            case "hotbar" ->
+            {
+                int slot = number(words, 1);
+                if (slot < 1 || slot > 9)
+                {
+                    throw new TimelineException("Hotbar slot must be between 1 and 9");
+                }
+                yield ap -> ap.setSlot(slot);
+            }
+            case "move" -> switch (word(words, 1))
+            {
+                case "forward" -> ap -> ap.setForward(1);
+                case "backward" -> ap -> ap.setForward(-1);
+                case "left" -> ap -> ap.setStrafing(1);
+                case "right" -> ap -> ap.setStrafing(-1);
+                case "stop" -> EntityPlayerActionPack::stopMovement;
+                default -> throw new TimelineException("Unknown direction " + words[1]);
+            };
+            case "look" -> look(words);
+            case "turn" -> switch (word(words, 1))
+            {
+                case "left" -> ap -> ap.turn(-90, 0);
+                case "right" -> ap -> ap.turn(90, 0);
+                case "back" -> ap -> ap.turn(180, 0);
+                default ->
+                {
+                    float yaw = angle(words, 1);
+                    float pitch = angle(words, 2);
+                    yield ap -> ap.turn(yaw, pitch);
+                }
+            };
+            default -> throw new TimelineException("Unknown step " + command);
+        };
+    }
+
+    private static Consumer<EntityPlayerActionPack> look(String[] words) throws TimelineException
+    {
+        String first = word(words, 1);
+        if (first.equals("at"))
+        {
+            Vec3 target = new Vec3(decimal(words, 2), decimal(words, 3), decimal(words, 4));
+            return ap -> ap.lookAt(target);
+        }
+        Direction direction = Direction.byName(first.toLowerCase(Locale.ROOT));
+        if (direction != null)
+        {
+            return ap -> ap.look(direction);
+        }
+        float yaw = angle(words, 1);
+        float pitch = angle(words, 2);
+        return ap -> ap.look(yaw, pitch);
+    }
+
+    private static String word(String[] words, int index) throws TimelineException
+    {
+        if (index >= words.length)
+        {
+            throw new TimelineException("Missing arguments of " + words[0]);
+        }
+        return words[index];
+    }
+
+    private static int number(String[] words, int index) throws TimelineException
+    {
+        return Integer.parseInt(word(words, index));
+    }
+
+    private static int positive(String[] words, int index) throws TimelineException
+    {
+        int value = number(words, index);
+        if (value < 1)
+        {
+            throw new TimelineException(words[0] + " needs a positive number");
+        }
+        return value;
+    }
+
+    private static double decimal(String[] words, int index) throws TimelineException
+    {
+        return Double.parseDouble(word(words, index));
+    }
+
+    private static float angle(String[] words, int index) throws TimelineException
+    {
+        return (float) decimal(words, index);
+    }
+}
@@ -0,0 +1,222 @@
+package carpet.helpers;
+
+import carpet.fakes.ServerPlayerInterface;
+import carpet.helpers.EntityPlayerActionPack.Action;
+import carpet.helpers.EntityPlayerActionPack.ActionType;
+import carpet.patches.EntityPlayerMPFake;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.GameType;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Crowds of fake players for load testing the server. Bots get offline profiles right away, are spawned a few
+ * per tick so a couple hundred of them don't stall the server at once, and are driven through their
+ * {@link EntityPlayerActionPack} by a simple behaviour. Like all fake players, whatever the server sends them
+ * is dropped before being encoded.
+ */
+public class BulkFakePlayers
+{
+    public static final int MAX_BOTS = 1000;
+    private static final int SPAWNS_PER_TICK = 10;
+    private static final int SPREAD = 32;
+
+    public enum Behaviour
+    {
+        // stands still, only loading the chunks around it
+        IDLE,
+        // walks around, changing direction every few seconds and jumping over obstacles
+        WALK,
+        // digs down and around where it stands
+        MINE,
+        // flies straight away as a spectator, generating and loading new chunks all the way
+        EXPLORE;
+
+        public String getName()
+        {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        private GameType gameType()
+        {
+            return switch (this)
+            {
+                case EXPLORE -> GameType.SPECTATOR;
+                case MINE -> GameType.SURVIVAL;
+                default -> GameType.CREATIVE;
+            };
+        }
+    }
+
+    private record Pending(String name, ServerLevel level, Vec3 pos, Behaviour behaviour) {}
+
+    private static final class Bot
+    {
+        private final Behaviour behaviour;
+        private boolean spawned;
+        private long nextChange;
+
+        private Bot(Behaviour behaviour)
+        {
+            this.behaviour = behaviour;
+        }
+    }
+
+    private static final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private static final Map<String, Bot> bots = new HashMap<>();
+    private static final RandomSource random = RandomSource.create();
+
+    /**
+     * Queues bots named with the prefix and a number to be spawned around the position, skipping names already online
+     *
+     * @return number of bots queued
+     */
+    public static int spawn(MinecraftServer server, String prefix, int count, ServerLevel level, Vec3 pos, Behaviour behaviour)
+    {
+        int queued = 0;
+        for (int i = 0; i < count; i++)
+        {
+            String name = prefix + i;
+            if (server.getPlayerList().getPlayerByName(name) != null || bots.containsKey(name))
+            {
+                continue;
+            }
+            double x = pos.x + random.nextInt(2 * SPREAD + 1) - SPREAD;
+            double z = pos.z + random.nextInt(2 * SPREAD + 1) - SPREAD;
+            pending.add(new Pending(name, level, new Vec3(x, pos.y, z), behaviour));
+            bots.put(name, new Bot(behaviour));
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * Removes bots with names starting with the prefix, spawned or still queued
+     *
+     * @return number of bots removed
+     */
+    public static int kill(MinecraftServer server, String prefix)
+    {
+        pending.removeIf(p -> p.name().startsWith(prefix));
+        int killed = 0;
+        Iterator<String> names = bots.keySet().iterator();
+        while (names.hasNext())
+        {
+            String name = names.next();
+            if (!name.startsWith(prefix))
+            {
+                continue;
+            }
+            names.remove();
+            if (server.getPlayerList().getPlayerByName(name) instanceof EntityPlayerMPFake bot)
+            {
+                bot.kill();
+            }
+            killed++;
+        }
+        return killed;
+    }
+
+    public static int count()
+    {
+        return bots.size();
+    }
+
+    public static void tick(MinecraftServer server)
+    {
+        if (bots.isEmpty())
+        {
+            return;
+        }
+        for (int i = 0; i < SPAWNS_PER_TICK && !pending.isEmpty(); i++)
+        {
+            Pending next = pending.poll();
+            Bot bot = bots.get(next.name());
+            if (bot == null)
+            {
+                continue;
+            }
+            bot.spawned = true;
+            // land walkers and miners on the ground, explorers fly where they were asked to
+            int ground = next.level().getHeight(Heightmap.Types.MOTION_BLOCKING, Mth.floor(next.pos().x), Mth.floor(next.pos().z));
+            Vec3 pos = next.behaviour() == Behaviour.EXPLORE ? next.pos() : new Vec3(next.pos().x, ground, next.pos().z);
+            GameType gameType = next.behaviour().gameType();
+            EntityPlayerMPFake.createBulk(next.name(), server, next.level(), pos, random.nextFloat() * 360 - 180, 0, gameType, gameType == GameType.SPECTATOR);
+        }
+        long now = server.getTickCount();
+        Iterator<Map.Entry<String, Bot>> entries = bots.entrySet().iterator();
+        while (entries.hasNext())
+        {
+            Map.Entry<String, Bot> entry = entries.next();
+            ServerPlayer player = server.getPlayerList().getPlayerByName(entry.getKey());
+            Bot bot = entry.getValue();
+            if (player == null)
+            {
+                // killed or logged out, unless still waiting to be spawned
+                if (bot.spawned)
+                {
+                    entries.remove();
+                }
+                continue;
+            }
+            if (now >= bot.nextChange)
+            {
+                bot.nextChange = now + drive(bot.behaviour, ((ServerPlayerInterface) player).getActionPack());
+            }
+        }
+    }
+
+    /**
+     * Gives the bot its next thing to do
+     *
+     * @return ticks until the bot changes what it does
+     */
+    private static int drive(Behaviour behaviour, EntityPlayerActionPack actions)
+    {
+        switch (behaviour)
+        {
+            case WALK ->
+            {
+                actions.look(random.nextFloat() * 360 - 180, 0);
+                actions.setForward(1);
+                actions.setSprinting(random.nextInt(4) == 0);
+                actions.start(ActionType.JUMP, Action.interval(20, random.nextInt(20)));
+                return 40 + random.nextInt(100);
+            }
+            case MINE ->
+            {
+                actions.look(random.nextFloat() * 360 - 180, 45 + random.nextInt(45));
+                actions.setForward(random.nextInt(3) == 0 ? 1 : 0);
+                actions.start(ActionType.ATTACK, Action.continuous());
+                return 100 + random.nextInt(200);
+            }
+            case EXPLORE ->
+            {
+                // keeps its heading, so it never goes back to chunks it already loaded
+                actions.setForward(1);
+                actions.setSprinting(true);
+                return Integer.MAX_VALUE;
+            }
+            default ->
+            {
+                return Integer.MAX_VALUE;
+            }
+        }
+    }
+
+    public static void reset()
+    {
+        pending.clear();
+        bots.clear();
+    }
+}
@@ -0,0 +1,180 @@
+package carpet.helpers;
+
+import carpet.utils.VarInts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Item counts of a single {@link HopperCounter} entry bucketed by game time, kept in fixed-size ring buffers
+ * for each {@link Resolution}, so rates can be tracked over long runs in constant memory.
+ */
+public class CounterTimeSeries
+{
+    public enum Resolution
+    {
+        SECOND("s", 20, 60),
+        MINUTE("min", 20 * 60, 60),
+        HOUR("h", 20 * 60 * 60, 24);
+
+        public final String suffix;
+        /**
+         * Length of a single bucket in game ticks
+         */
+        public final int ticks;
+        /**
+         * Number of buckets kept in the ring
+         */
+        public final int size;
+
+        Resolution(String suffix, int ticks, int size)
+        {
+            this.suffix = suffix;
+            this.ticks = ticks;
+            this.size = size;
+        }
+    }
+
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+    private final long[][] buckets = new long[RESOLUTIONS.length][];
+    /**
+     * Index of the most recent bucket (counted from the counter start) for each resolution, or -1 if nothing was counted
+     */
+    private final long[] current = new long[RESOLUTIONS.length];
+    /**
+     * Largest completed bucket seen so far for each resolution
+     */
+    private final long[] peak = new long[RESOLUTIONS.length];
+
+    public CounterTimeSeries()
+    {
+        for (Resolution resolution : RESOLUTIONS)
+        {
+            buckets[resolution.ordinal()] = new long[resolution.size];
+            current[resolution.ordinal()] = -1;
+        }
+    }
+
+    /**
+     * @param elapsed game ticks since the counter started
+     */
+    public void add(long elapsed, long count)
+    {
+        for (Resolution resolution : RESOLUTIONS)
+        {
+            int r = resolution.ordinal();
+            long bucket = elapsed / resolution.ticks;
+            advance(r, bucket);
+            buckets[r][(int) (bucket % resolution.size)] += count;
+        }
+    }
+
+    /**
+     * Moves the ring forward to the bucket containing {@code elapsed}, so empty intervals count as zero.
+     */
+    public void update(long elapsed)
+    {
+        for (Resolution resolution : RESOLUTIONS)
+        {
+            advance(resolution.ordinal(), elapsed / resolution.ticks);
+        }
+    }
+
+    private void advance(int r, long bucket)
+    {
+        long last = current[r];
+        if (bucket <= last)
+        {
+            return;
+        }
+        long[] ring = buckets[r];
+        if (last >= 0)
+        {
+            peak[r] = Math.max(peak[r], ring[(int) (last % ring.length)]);
+        }
+        // buckets skipped over, or before the first item of this entry, counted nothing
+        for (long b = Math.max(last + 1, bucket - ring.length + 1); b <= bucket; b++)
+        {
+            ring[(int) (b % ring.length)] = 0;
+        }
+        current[r] = bucket;
+    }
+
+    /**
+     * Average items per bucket over the completed buckets still held in the ring, the partial current one excluded.
+     */
+    public double average(Resolution resolution)
+    {
+        int r = resolution.ordinal();
+        long last = current[r];
+        int completed = (int) Math.min(last, resolution.size - 1);
+        if (completed <= 0)
+        {
+            return 0.0;
+        }
+        long[] ring = buckets[r];
+        long sum = 0;
+        for (long b = last - completed; b < last; b++)
+        {
+            sum += ring[(int) (b % ring.length)];
+        }
+        return (double) sum / completed;
+    }
+
+    /**
+     * Largest number of items counted in a single completed bucket
+     */
+    public long peak(Resolution resolution)
+    {
+        return peak[resolution.ordinal()];
+    }
+
+    /**
+     * @return counts of the completed buckets held in the ring, oldest first
+     */
+    public long[] history(Resolution resolution)
+    {
+        int r = resolution.ordinal();
+        long last = current[r];
+        int completed = (int) Math.max(0, Math.min(last, resolution.size - 1));
+        long[] result = new long[completed];
+        long[] ring = buckets[r];
+        for (int i = 0; i < completed; i++)
+        {
+            result[i] = ring[(int) ((last - completed + i) % ring.length)];
+        }
+        return result;
+    }
+
+    void write(DataOutput output) throws IOException
+    {
+        for (Resolution resolution : RESOLUTIONS)
+        {
+            int r = resolution.ordinal();
+            VarInts.writeVarLong(output, current[r] + 1);
+            VarInts.writeVarLong(output, peak[r]);
+            for (long count : buckets[r])
+            {
+                VarInts.writeVarLong(output, count);
+            }
+        }
+    }
+
+    static CounterTimeSeries read(DataInput input) throws IOException
+    {
+        CounterTimeSeries series = new CounterTimeSeries();
+        for (Resolution resolution : RESOLUTIONS)
+        {
+            int r = resolution.ordinal();
+            series.current[r] = VarInts.readVarLong(input) - 1;
+            series.peak[r] = VarInts.readVarLong(input);
+            for (int i = 0; i < resolution.size; i++)
+            {
+                series.buckets[r][i] = VarInts.readVarLong(input);
+            }
+        }
+        return series;
+    }
+}
@@ -50,6 +50,8 @@ public class EntityPlayerActionPack
 
     private int itemUseCooldown;
 
+    private ActionTimeline.Cursor timeline;
+
     public EntityPlayerActionPack(ServerPlayer playerIn)
     {
         player = playerIn;
@@ -69,6 +71,8 @@ public class EntityPlayerActionPack
         strafing = other.strafing;
 
         itemUseCooldown = other.itemUseCooldown;
+
+        timeline = other.timeline;
     }
 
     public EntityPlayerActionPack start(ActionType type, Action action)
@@ -162,12 +166,30 @@ public class EntityPlayerActionPack
 
 
     public EntityPlayerActionPack stopAll()
+    {
+        timeline = null;
+        return stopActions();
+    }
+
+    /**
+     * Stops actions and movement, but not the timeline, which can keep starting new ones
+     */
+    public EntityPlayerActionPack stopActions()
     {
         for (ActionType type : actions.keySet()) type.stop(player, actions.get(type));
         actions.clear();
         return stopMovement();
     }
 
+    /**
+     * Replays the timeline from its start, replacing the one running, or stops it with null
+     */
+    public EntityPlayerActionPack play(ActionTimeline actionTimeline)
+    {
+        timeline = actionTimeline == null ? null : actionTimeline.start();
+        return this;
+    }
+
     public EntityPlayerActionPack mount(boolean onlyRideables)
     {
         //test what happens
@@ -212,6 +234,10 @@ public class EntityPlayerActionPack
 
     public void onUpdate()
     {
+        if (timeline != null && !timeline.tick(this))
+        {
+            timeline = null;
+        }
         Map<ActionType, Boolean> actionAttempts = new HashMap<>();
         actions.values().removeIf(e -> e.done);
         for (Map.Entry<ActionType, Action> e : actions.entrySet())
@@ -1,14 +1,19 @@
 package carpet.helpers;
 
 import carpet.CarpetServer;
+import carpet.CarpetSettings;
 import carpet.fakes.IngredientInterface;
 import carpet.fakes.RecipeManagerInterface;
 import carpet.utils.Messenger;
+import carpet.utils.VarInts;
 import it.unimi.dsi.fastutil.objects.Object2LongLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
 import net.minecraft.ChatFormatting;
+import net.minecraft.Util;
 import net.minecraft.core.Registry;
 import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.core.registries.Registries;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
@@ -30,7 +35,18 @@ import net.minecraft.world.level.block.BeaconBeamBlock;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.material.MapColor;
+import net.minecraft.world.level.storage.LevelResource;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,7 +54,10 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static java.util.Map.entry;
 
@@ -60,6 +79,14 @@ public class HopperCounter
 
     public static final TextColor WHITE = TextColor.fromLegacyFormat(ChatFormatting.WHITE);
 
+    /**
+     * How often, in ticks, counters are written to disk when {@link CarpetSettings#persistentHopperCounters} is on
+     */
+    public static final int SAVE_INTERVAL = 20 * 60 * 5;
+    private static final String SAVE_FILE = "hopper_counters.dat";
+    private static final int SAVE_FORMAT = 1;
+    private static CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+
     static
     {
         EnumMap<DyeColor, HopperCounter> counterMap = new EnumMap<>(DyeColor.class);
@@ -84,6 +111,14 @@ public class HopperCounter
      * stored thus far of that item type.
      */
     private final Object2LongMap<Item> counter = new Object2LongLinkedOpenHashMap<>();
+    /**
+     * Item counts over time for each item in the counter, used to get rates over the last minute, hour and day.
+     */
+    private final Map<Item, CounterTimeSeries> itemSeries = new Object2ObjectLinkedOpenHashMap<>();
+    /**
+     * Item counts over time of all items together
+     */
+    private CounterTimeSeries totalSeries = new CounterTimeSeries();
     /**
      * The starting tick of the counter, used to calculate in-game time. Only initialised when the first item enters the
      * counter
@@ -120,6 +155,9 @@ public class HopperCounter
         }
         Item item = stack.getItem();
         counter.put(item, counter.getLong(item) + stack.getCount());
+        long elapsed = Math.max(0, server.overworld().getGameTime() - startTick);
+        totalSeries.add(elapsed, stack.getCount());
+        itemSeries.computeIfAbsent(item, i -> new CounterTimeSeries()).add(elapsed, stack.getCount());
         // pubSubProvider.publish();
     }
 
@@ -129,6 +167,8 @@ public class HopperCounter
     public void reset(MinecraftServer server)
     {
         counter.clear();
+        itemSeries.clear();
+        totalSeries = new CounterTimeSeries();
         startTick = server.overworld().getGameTime();
         startMillis = System.currentTimeMillis();
         // pubSubProvider.publish();
@@ -226,6 +266,179 @@ public class HopperCounter
         return items;
     }
 
+    /**
+     * Prints average and peak rates of the counter over the last minute, hour and day, in items per hour, for all
+     * items together and each item separately. Only in-game time is used, as that's what the buckets are based on.
+     */
+    public List<Component> formatRates(MinecraftServer server)
+    {
+        if (startTick < 0 || counter.isEmpty())
+        {
+            return Collections.singletonList(Messenger.c("w No items for ", coloredName, "w  yet"));
+        }
+        long elapsed = Math.max(0, server.overworld().getGameTime() - startTick);
+        totalSeries.update(elapsed);
+        itemSeries.values().forEach(s -> s.update(elapsed));
+        List<Component> lines = new ArrayList<>();
+        lines.add(Messenger.c("w Rates for ", coloredName, String.format("w  over %.2f min, in items/h (average | peak):", elapsed / (20.0 * 60.0))));
+        lines.add(formatRateLine(Messenger.c("wb Total"), totalSeries));
+        itemSeries.entrySet().stream().sorted((e, f) -> Long.compare(counter.getLong(f.getKey()), counter.getLong(e.getKey()))).forEach(e ->
+        {
+            Item item = e.getKey();
+            MutableComponent itemName = Component.translatable(item.getDescriptionId());
+            TextColor color = guessColor(item, server.registryAccess());
+            itemName.setStyle((color != null) ? itemName.getStyle().withColor(color) : itemName.getStyle().withItalic(true));
+            lines.add(formatRateLine(itemName, e.getValue()));
+        });
+        return lines;
+    }
+
+    private static Component formatRateLine(Component name, CounterTimeSeries series)
+    {
+        List<Object> parts = new ArrayList<>();
+        parts.add("g - ");
+        parts.add(name);
+        parts.add("g :");
+        for (CounterTimeSeries.Resolution resolution : CounterTimeSeries.Resolution.values())
+        {
+            double perHour = 20.0 * 60 * 60 / resolution.ticks;
+            parts.add("g  " + resolution.size + resolution.suffix + " ");
+            parts.add(String.format("wb %.0f", series.average(resolution) * perHour));
+            parts.add(String.format("^g %d items per %s on average", Math.round(series.average(resolution)), resolution.suffix));
+            parts.add("g |");
+            parts.add(String.format("w %.0f", series.peak(resolution) * perHour));
+            parts.add(String.format("^g at most %d items in a single %s", series.peak(resolution), resolution.suffix));
+        }
+        return Messenger.c(parts.toArray());
+    }
+
+    /**
+     * Items counted per bucket of the given resolution, oldest first, for all items together if {@code item} is null.
+     */
+    public long[] getHistory(Item item, CounterTimeSeries.Resolution resolution, MinecraftServer server)
+    {
+        CounterTimeSeries series = item == null ? totalSeries : itemSeries.get(item);
+        if (series == null || startTick < 0)
+        {
+            return new long[0];
+        }
+        series.update(Math.max(0, server.overworld().getGameTime() - startTick));
+        return series.history(resolution);
+    }
+
+    /**
+     * Writes all counters that started counting to the world folder, in a small gzipped binary format.
+     * Counters are copied on the calling thread, compressing and writing them happens on the IO pool,
+     * one save after another.
+     *
+     * @return when the save is on disk
+     */
+    public static CompletableFuture<Void> saveAll(MinecraftServer server)
+    {
+        Path file = server.getWorldPath(LevelResource.ROOT).resolve(SAVE_FILE);
+        Path temp = file.resolveSibling(SAVE_FILE + ".tmp");
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        long now = System.currentTimeMillis();
+        try (DataOutputStream out = new DataOutputStream(snapshot))
+        {
+            out.writeByte(SAVE_FORMAT);
+            List<HopperCounter> started = COUNTERS.values().stream().filter(c -> c.startTick >= 0).toList();
+            out.writeByte(started.size());
+            for (HopperCounter counter : started)
+            {
+                out.writeByte(counter.color.getId());
+                VarInts.writeVarLong(out, counter.startTick);
+                VarInts.writeVarLong(out, Math.max(0, now - counter.startMillis));
+                counter.totalSeries.write(out);
+                VarInts.writeVarLong(out, counter.counter.size());
+                for (Object2LongMap.Entry<Item> entry : counter.counter.object2LongEntrySet())
+                {
+                    out.writeUTF(BuiltInRegistries.ITEM.getKey(entry.getKey()).toString());
+                    VarInts.writeVarLong(out, entry.getLongValue());
+                    CounterTimeSeries series = counter.itemSeries.get(entry.getKey());
+                    out.writeBoolean(series != null);
+                    if (series != null)
+                    {
+                        series.write(out);
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            CarpetSettings.LOG.error("Failed to save hopper counters", e);
+            return pendingSave;
+        }
+        pendingSave = pendingSave.thenRunAsync(() -> {
+            try
+            {
+                try (OutputStream out = new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))
+                {
+                    snapshot.writeTo(out);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e)
+            {
+                CarpetSettings.LOG.error("Failed to save hopper counters", e);
+            }
+        }, Util.ioPool());
+        return pendingSave;
+    }
+
+    /**
+     * Restores counters saved with {@link #saveAll}, if the world has any.
+     */
+    public static void loadAll(MinecraftServer server)
+    {
+        Path file = server.getWorldPath(LevelResource.ROOT).resolve(SAVE_FILE);
+        if (!Files.exists(file))
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)))))
+        {
+            int format = in.readUnsignedByte();
+            if (format != SAVE_FORMAT)
+            {
+                CarpetSettings.LOG.warn("Unknown hopper counter save format " + format + ", ignoring saved counters");
+                return;
+            }
+            int counters = in.readUnsignedByte();
+            for (int c = 0; c < counters; c++)
+            {
+                HopperCounter counter = COUNTERS.get(DyeColor.byId(in.readUnsignedByte()));
+                counter.counter.clear();
+                counter.itemSeries.clear();
+                counter.startTick = VarInts.readVarLong(in);
+                counter.startMillis = now - VarInts.readVarLong(in);
+                counter.totalSeries = CounterTimeSeries.read(in);
+                long items = VarInts.readVarLong(in);
+                for (long i = 0; i < items; i++)
+                {
+                    ResourceLocation id = ResourceLocation.tryParse(in.readUTF());
+                    long count = VarInts.readVarLong(in);
+                    CounterTimeSeries series = in.readBoolean() ? CounterTimeSeries.read(in) : null;
+                    if (id == null || !BuiltInRegistries.ITEM.containsKey(id))
+                    {
+                        continue;
+                    }
+                    Item item = BuiltInRegistries.ITEM.get(id);
+                    counter.counter.put(item, count);
+                    if (series != null)
+                    {
+                        counter.itemSeries.put(item, series);
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            CarpetSettings.LOG.error("Failed to load hopper counters", e);
+        }
+    }
+
     /**
      * Converts a colour to have a low brightness and uniform colour, so when it prints the items in different colours
      * it's not too flashy and bright, but enough that it's not dull to look at.
@@ -0,0 +1,239 @@
+package carpet.helpers;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.AbortableIterationConsumer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.boss.EnderDragonPart;
+import net.minecraft.world.entity.boss.enderdragon.EnderDragon;
+import net.minecraft.world.level.entity.EntityTypeTest;
+import net.minecraft.world.level.entity.LevelEntityGetter;
+import net.minecraft.world.phys.AABB;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Broadphase for entity collisions with a limit, used by maxEntityCollisions. Entities of each 16^3 section
+ * are sorted into cells of 4 blocks by their position the first time a section is queried in a tick, and reused
+ * for all queries of that tick, so crammed entities look only at their neighbours instead of the whole section
+ * and stop as soon as they have enough of them. Queries don't allocate, nor use exceptions to stop early.
+ * <p>
+ * Cells are built from positions at the start of the tick, entities moving more than a block within the tick
+ * or added to the section after it was sorted can be missed until the next tick. Candidates are always checked
+ * against their current bounding box.
+ */
+public class PushableEntityGrid
+{
+    private static final int CELL_BITS = 2;
+    private static final int CELLS_PER_AXIS = 16 >> CELL_BITS;
+    private static final int CELLS = CELLS_PER_AXIS * CELLS_PER_AXIS * CELLS_PER_AXIS;
+    // how far entities reach out of their cell, like entity section lookups, plus a block they may move in a tick
+    private static final double REACH = 3.0;
+    private static final EntityTypeTest<Entity, Entity> ANY_ENTITY = EntityTypeTest.forClass(Entity.class);
+
+    private static final class Section
+    {
+        private long tick = Long.MIN_VALUE;
+        // entities sorted by cell, cell c holding the ones from cellStart[c] to cellStart[c + 1]
+        private final int[] cellStart = new int[CELLS + 1];
+        private Entity[] entities = new Entity[16];
+    }
+
+    private final LevelEntityGetter<Entity> entityGetter;
+    private final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+    private final List<Entity> found = new ArrayList<>();
+    private final List<Entity> collected = new ArrayList<>();
+    private long tick = Long.MIN_VALUE;
+
+    public PushableEntityGrid(LevelEntityGetter<Entity> entityGetter)
+    {
+        this.entityGetter = entityGetter;
+    }
+
+    /**
+     * Finds entities, other than the one excluded, that collide with the box and pass the predicate,
+     * stopping after more than the limit are found.
+     *
+     * @param tick current tick, cells are rebuilt when it changes
+     * @return list of found entities, reused by the next query
+     */
+    public List<Entity> getOtherEntitiesLimited(long tick, Entity except, AABB box, Predicate<? super Entity> predicate, int limit)
+    {
+        if (tick != this.tick)
+        {
+            // forget sections nobody asked about in the last tick
+            long previous = this.tick;
+            sections.values().removeIf(section -> section.tick != previous);
+            this.tick = tick;
+        }
+        found.clear();
+        int minX = SectionPos.posToSectionCoord(box.minX - REACH);
+        int minY = SectionPos.posToSectionCoord(box.minY - REACH);
+        int minZ = SectionPos.posToSectionCoord(box.minZ - REACH);
+        int maxX = SectionPos.posToSectionCoord(box.maxX + REACH);
+        int maxY = SectionPos.posToSectionCoord(box.maxY + REACH);
+        int maxZ = SectionPos.posToSectionCoord(box.maxZ + REACH);
+        for (int sx = minX; sx <= maxX; sx++)
+        {
+            for (int sy = minY; sy <= maxY; sy++)
+            {
+                for (int sz = minZ; sz <= maxZ; sz++)
+                {
+                    if (collect(section(sx, sy, sz), sx, sy, sz, except, box, predicate, limit))
+                    {
+                        return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return whether the limit has been reached
+     */
+    private boolean collect(Section section, int sx, int sy, int sz, Entity except, AABB box, Predicate<? super Entity> predicate, int limit)
+    {
+        if (section.cellStart[CELLS] == 0)
+        {
+            return false;
+        }
+        int minX = cellCoord(box.minX - REACH, sx);
+        int minY = cellCoord(box.minY - REACH, sy);
+        int minZ = cellCoord(box.minZ - REACH, sz);
+        int maxX = cellCoord(box.maxX + REACH, sx);
+        int maxY = cellCoord(box.maxY + REACH, sy);
+        int maxZ = cellCoord(box.maxZ + REACH, sz);
+        for (int cx = minX; cx <= maxX; cx++)
+        {
+            for (int cy = minY; cy <= maxY; cy++)
+            {
+                for (int cz = minZ; cz <= maxZ; cz++)
+                {
+                    int cell = cellIndex(cx, cy, cz);
+                    for (int i = section.cellStart[cell], end = section.cellStart[cell + 1]; i < end; i++)
+                    {
+                        Entity entity = section.entities[i];
+                        if (entity != except && !entity.isRemoved() && entity.getBoundingBox().intersects(box) && predicate.test(entity))
+                        {
+                            found.add(entity);
+                            if (found.size() > limit)
+                            {
+                                return true;
+                            }
+                        }
+                        if (entity instanceof EnderDragon dragon)
+                        {
+                            for (EnderDragonPart part : dragon.getSubEntities())
+                            {
+                                if (entity != except && part.getBoundingBox().intersects(box) && predicate.test(part))
+                                {
+                                    found.add(part);
+                                }
+                            }
+                            if (found.size() > limit)
+                            {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private Section section(int sx, int sy, int sz)
+    {
+        long key = SectionPos.asLong(sx, sy, sz);
+        Section section = sections.get(key);
+        if (section == null)
+        {
+            section = new Section();
+            sections.put(key, section);
+        }
+        if (section.tick != tick)
+        {
+            build(section, sx, sy, sz);
+            section.tick = tick;
+        }
+        return section;
+    }
+
+    /**
+     * Sorts entities standing in the section by cell
+     */
+    private void build(Section section, int sx, int sy, int sz)
+    {
+        collected.clear();
+        long key = SectionPos.asLong(sx, sy, sz);
+        AABB bounds = new AABB(
+                SectionPos.sectionToBlockCoord(sx), SectionPos.sectionToBlockCoord(sy), SectionPos.sectionToBlockCoord(sz),
+                SectionPos.sectionToBlockCoord(sx + 1), SectionPos.sectionToBlockCoord(sy + 1), SectionPos.sectionToBlockCoord(sz + 1));
+        entityGetter.get(ANY_ENTITY, bounds, entity -> {
+            // entities sticking into the section from the neighbouring ones belong there
+            if (SectionPos.asLong(entity.blockPosition()) == key)
+            {
+                collected.add(entity);
+            }
+            return AbortableIterationConsumer.Continuation.CONTINUE;
+        });
+        int count = collected.size();
+        int[] cellStart = section.cellStart;
+        Arrays.fill(cellStart, 0);
+        if (section.entities.length < count)
+        {
+            section.entities = new Entity[Math.max(count, section.entities.length * 2)];
+        }
+        else
+        {
+            // don't keep entities of previous ticks alive
+            Arrays.fill(section.entities, count, section.entities.length, null);
+        }
+        if (count == 0)
+        {
+            return;
+        }
+        // counting sort: sizes of cells, then where each cell starts, then fill the cells
+        for (Entity entity : collected)
+        {
+            cellStart[cellOf(entity, sx, sy, sz) + 1]++;
+        }
+        for (int cell = 0; cell < CELLS; cell++)
+        {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        for (Entity entity : collected)
+        {
+            int cell = cellOf(entity, sx, sy, sz);
+            // cellStart[cell] is used as the next free slot and ends up where the next cell starts
+            section.entities[cellStart[cell]++] = entity;
+        }
+        // shift back so cellStart[cell] is where the cell starts again
+        System.arraycopy(cellStart, 0, cellStart, 1, CELLS);
+        cellStart[0] = 0;
+        collected.clear();
+    }
+
+    private static int cellOf(Entity entity, int sx, int sy, int sz)
+    {
+        return cellIndex(cellCoord(entity.getX(), sx), cellCoord(entity.getY(), sy), cellCoord(entity.getZ(), sz));
+    }
+
+    /**
+     * @return cell along one axis of the section the coordinate falls into, clamped to the section
+     */
+    private static int cellCoord(double coord, int section)
+    {
+        int inSection = (int) Math.floor(coord) - SectionPos.sectionToBlockCoord(section);
+        return Math.max(0, Math.min(CELLS_PER_AXIS - 1, inSection >> CELL_BITS));
+    }
+
+    private static int cellIndex(int cx, int cy, int cz)
+    {
+        return (cx * CELLS_PER_AXIS + cy) * CELLS_PER_AXIS + cz;
+    }
+}
@@ -1,6 +1,7 @@
 package carpet.logging;
 
 import carpet.CarpetServer;
+import carpet.CarpetSettings;
 import carpet.helpers.HopperCounter;
 import carpet.logging.logHelpers.PacketCounter;
 import carpet.utils.Messenger;
@@ -14,11 +15,14 @@ import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.util.TimeUtil;
 import net.minecraft.world.level.Level;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -35,12 +39,35 @@ public class HUDController
         HUDListeners.add(listener);
     }
 
+    // footer lines each player was sent last
     public static final Map<ServerPlayer, List<Component>> player_huds = new HashMap<>();
 //keyed with player names so unlogged players don't hold the reference
     public static final Map<String, Component> scarpet_headers = new HashMap<>();
 
     public static final Map<String, Component> scarpet_footers = new HashMap<>();
 
+    // key of messages added without a logger, which last until the next round of listeners
+    private static final Object UNTRACKED = new Object();
+    // ticks between rounds of listeners
+    private static final int LISTENER_INTERVAL = 20;
+    private static boolean inListenerRound = false;
+    private static final Component NEW_LINE = Component.literal("\n");
+
+    /**
+     * Messages currently in the HUD of a player, by the logger they come from, and what the player was sent last
+     */
+    private static final class PlayerHud
+    {
+        private final Map<Object, Component[]> messages = new LinkedHashMap<>();
+        private int untrackedRound = -1;
+        private Component sentHeader;
+        private List<Component> sentFooter;
+    }
+
+    private static final Map<ServerPlayer, PlayerHud> huds = new HashMap<>();
+    // players whose HUD may have changed since it was last sent
+    private static final Set<ServerPlayer> changed = new HashSet<>();
+
     public static void resetScarpetHUDs() {
         scarpet_headers.clear();
         scarpet_footers.clear();
@@ -49,19 +76,69 @@ public class HUDController
     public static void addMessage(ServerPlayer player, Component hudMessage)
     {
         if (player == null) return;
-        if (!player_huds.containsKey(player))
+        PlayerHud hud = huds.computeIfAbsent(player, p -> new PlayerHud());
+        int round = CarpetServer.minecraft_server.getTickCount() / LISTENER_INTERVAL;
+        Component[] untracked = hud.untrackedRound == round ? hud.messages.get(UNTRACKED) : null;
+        if (untracked == null)
         {
-            player_huds.put(player, new ArrayList<>());
+            untracked = new Component[]{hudMessage};
         }
         else
         {
-            player_huds.get(player).add(Component.literal("\n"));
+            untracked = Arrays.copyOf(untracked, untracked.length + 1);
+            untracked[untracked.length - 1] = hudMessage;
+        }
+        hud.untrackedRound = round;
+        hud.messages.put(UNTRACKED, untracked);
+        changed.add(player);
+    }
+
+    /**
+     * Replaces the messages the logger shows to the player
+     */
+    static void setMessages(ServerPlayer player, HUDLogger logger, Component[] messages)
+    {
+        if (messages == null)
+        {
+            removeMessages(player, logger);
+            return;
         }
-        player_huds.get(player).add(hudMessage);
+        huds.computeIfAbsent(player, p -> new PlayerHud()).messages.put(logger, messages);
+        changed.add(player);
+    }
+
+    static void removeMessages(ServerPlayer player, HUDLogger logger)
+    {
+        PlayerHud hud = huds.get(player);
+        if (hud != null && hud.messages.remove(logger) != null)
+        {
+            changed.add(player);
+        }
+    }
+
+    /**
+     * @return whether listeners are running, what loggers get from them goes to all their players at once,
+     * since listeners are only called every {@link #LISTENER_INTERVAL} ticks
+     */
+    static boolean inListenerRound()
+    {
+        return inListenerRound;
+    }
+
+    /**
+     * @return whether the player gets new HUD messages this tick. Players are spread over the interval,
+     * so they are not all updated on the same tick
+     */
+    static boolean isDue(ServerPlayer player, int interval)
+    {
+        int offset = Math.floorMod(player.getUUID().hashCode(), interval);
+        return (CarpetServer.minecraft_server.getTickCount() + offset) % interval == 0;
     }
 
     public static void clearPlayer(ServerPlayer player)
     {
+        huds.remove(player);
+        player_huds.remove(player);
         ClientboundTabListPacket packet = new ClientboundTabListPacket(Component.literal(""), Component.literal(""));
         player.connection.send(packet);
     }
@@ -69,29 +146,36 @@ public class HUDController
 
     public static void update_hud(MinecraftServer server, List<ServerPlayer> force)
     {
-        if (((server.getTickCount() % 20 != 0) && force == null) || CarpetServer.minecraft_server == null)
+        if (CarpetServer.minecraft_server == null)
             return;
 
-        player_huds.clear();
+        if (force != null)
+        {
+            // scarpet headers or footers changed, only they need to be sent
+            changed.addAll(force);
+            sendChanged(server);
+            return;
+        }
 
-        server.getPlayerList().getPlayers().forEach(p -> {
-            Component scarpetFOoter = scarpet_footers.get(p.getScoreboardName());
-            if (scarpetFOoter != null) HUDController.addMessage(p, scarpetFOoter);
-        });
+        if (server.getTickCount() % 20 == 0)
+            PacketCounter.rotate();
 
         if (LoggerRegistry.__tps)
             LoggerRegistry.getLogger("tps").log(()-> send_tps_display(server));
 
         if (LoggerRegistry.__mobcaps)
-            LoggerRegistry.getLogger("mobcaps").log((option, player) -> {
+        {
+            HUDLogger mobcaps = (HUDLogger) LoggerRegistry.getLogger("mobcaps");
+            mobcaps.log((option, player) -> {
                 ResourceKey<Level> dim = switch (option) {
                     case "overworld" -> Level.OVERWORLD;
                     case "nether" -> Level.NETHER;
                     case "end" -> Level.END;
                     default -> player.level().dimension();
                 };
-                return new Component[]{SpawnReporter.printMobcapsForDimension(server.getLevel(dim), false).get(0)};
+                return mobcaps.shared(dim, () -> new Component[]{SpawnReporter.printMobcapsForDimension(server.getLevel(dim), false).get(0)});
             });
+        }
 
         if(LoggerRegistry.__counter)
             LoggerRegistry.getLogger("counter").log((option)->send_counter_info(server, option));
@@ -99,19 +183,108 @@ public class HUDController
         if (LoggerRegistry.__packets)
             LoggerRegistry.getLogger("packets").log(HUDController::packetCounter);
 
-        // extensions have time to pitch in.
-        HUDListeners.forEach(l -> l.accept(server));
+        // extensions have time to pitch in, at the pace they always got called at
+        if (server.getTickCount() % LISTENER_INTERVAL == 0)
+            runListeners(server);
+
+        // picks up scarpet headers and footers of players that just joined
+        for (ServerPlayer player : server.getPlayerList().getPlayers())
+        {
+            if (isDue(player, CarpetSettings.hudUpdateInterval))
+            {
+                changed.add(player);
+            }
+        }
+        sendChanged(server);
+    }
 
-        Set<ServerPlayer> targets = new HashSet<>(player_huds.keySet());
-        if (force!= null) targets.addAll(force);
-        for (ServerPlayer player: targets)
+    private static void runListeners(MinecraftServer server)
+    {
+        int round = server.getTickCount() / LISTENER_INTERVAL;
+        inListenerRound = true;
+        try
+        {
+            HUDListeners.forEach(l -> l.accept(server));
+        }
+        finally
+        {
+            inListenerRound = false;
+        }
+        // messages added without a logger that didn't come again this round
+        for (Map.Entry<ServerPlayer, PlayerHud> entry : huds.entrySet())
         {
+            PlayerHud hud = entry.getValue();
+            if (hud.untrackedRound != round && hud.messages.remove(UNTRACKED) != null)
+            {
+                changed.add(entry.getKey());
+            }
+        }
+    }
+
+    private static boolean isGone(ServerPlayer player)
+    {
+        return player.hasDisconnected() || player.isRemoved();
+    }
+
+    /**
+     * Sends players their HUD if it is different from what they got last time
+     */
+    private static void sendChanged(MinecraftServer server)
+    {
+        // players respawning are replaced with new ones
+        huds.keySet().removeIf(HUDController::isGone);
+        player_huds.keySet().removeIf(HUDController::isGone);
+        for (ServerPlayer player : changed)
+        {
+            if (isGone(player))
+            {
+                continue;
+            }
+            PlayerHud hud = huds.get(player);
+            Component header = scarpet_headers.get(player.getScoreboardName());
+            Component scarpetFooter = scarpet_footers.get(player.getScoreboardName());
+            if (hud == null)
+            {
+                if (header == null && scarpetFooter == null)
+                {
+                    continue;
+                }
+                hud = new PlayerHud();
+                huds.put(player, hud);
+            }
+            List<Component> footer = new ArrayList<>();
+            if (scarpetFooter != null)
+            {
+                footer.add(scarpetFooter);
+            }
+            for (Component[] messages : hud.messages.values())
+            {
+                for (Component message : messages)
+                {
+                    if (!footer.isEmpty()) footer.add(NEW_LINE);
+                    footer.add(message);
+                }
+            }
+            if (Objects.equals(header, hud.sentHeader) && footer.equals(hud.sentFooter))
+            {
+                continue;
+            }
+            hud.sentHeader = header;
+            hud.sentFooter = footer;
+            player_huds.put(player, footer);
             ClientboundTabListPacket packet = new ClientboundTabListPacket(
-                        scarpet_headers.getOrDefault(player.getScoreboardName(), Component.literal("")),
-                        Messenger.c(player_huds.getOrDefault(player, List.of()).toArray(new Object[0]))
+                        header == null ? Component.literal("") : header,
+                        Messenger.c(footer.toArray(new Object[0]))
                     );
             player.connection.send(packet);
+            if (header == null && footer.isEmpty())
+            {
+                // cleared, nothing to keep track of until something shows up again
+                huds.remove(player);
+                player_huds.remove(player);
+            }
         }
+        changed.clear();
     }
     private static Component [] send_tps_display(MinecraftServer server)
     {
@@ -138,12 +311,28 @@ public class HUDController
         }
         return res.toArray(new Component[0]);
     }
-    private static Component [] packetCounter()
+    private static final int TOP_PACKET_SOURCES = 5;
+
+    private static Component [] packetCounter(String option)
     {
-        Component [] ret =  new Component[]{
-                Messenger.c("w I/" + PacketCounter.totalIn + " O/" + PacketCounter.totalOut),
+        List<Component> res = new ArrayList<>();
+        PacketCounter.Traffic total = PacketCounter.lastSecond();
+        res.add(Messenger.c("w I/" + total.packetsIn() + " (" + formatBytes(total.bytesIn()) + ") O/" + total.packetsOut() + " (" + formatBytes(total.bytesOut()) + ")"));
+        List<PacketCounter.Traffic> top = switch (option)
+        {
+            case "types" -> PacketCounter.lastSecondByType();
+            case "players" -> PacketCounter.lastSecondByConnection();
+            default -> List.of();
         };
-        PacketCounter.reset();
-        return ret;
+        for (PacketCounter.Traffic traffic : top.subList(0, Math.min(TOP_PACKET_SOURCES, top.size())))
+        {
+            res.add(Messenger.c("g  " + traffic.name() + ": ", "w I/" + traffic.packetsIn() + " O/" + traffic.packetsOut() + " (" + formatBytes(traffic.bytes()) + ")"));
+        }
+        return res.toArray(new Component[0]);
+    }
+
+    private static String formatBytes(long bytes)
+    {
+        return bytes < 1024 ? bytes + " B" : String.format(Locale.US, "%.1f kB", bytes / 1024.0);
     }
 }
@@ -1,12 +1,25 @@
 package carpet.logging;
 
 import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
+import carpet.CarpetServer;
+import carpet.CarpetSettings;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 
 public class HUDLogger extends Logger
 {
+    private static final Object ALL_PLAYERS = new Object();
+
+    // 0 to follow hudUpdateInterval
+    private int refreshInterval = 0;
+    // messages shared by players, by option or other key, kept for the refresh interval they were made in
+    private final Map<Object, Component[]> shared = new HashMap<>();
+    private long sharedInterval = -1;
+
     static Logger stardardHUDLogger(String logName, String def, String [] options)
     {
         return stardardHUDLogger(logName, def, options, false);
@@ -35,18 +48,66 @@ public class HUDLogger extends Logger
         super(field, logName, def, options, false);
     }
 
+    /**
+     * Sets how often, in ticks, each player gets new messages from this logger, instead of following hudUpdateInterval
+     */
+    public HUDLogger withRefreshInterval(int ticks)
+    {
+        refreshInterval = ticks;
+        return this;
+    }
+
+    public int getRefreshInterval()
+    {
+        return refreshInterval > 0 ? refreshInterval : CarpetSettings.hudUpdateInterval;
+    }
+
+    /**
+     * Messages seen by more than one player, made once per refresh interval and reused for players
+     * refreshed later in the same interval
+     */
+    public Component[] shared(Object key, Supplier<Component[]> messages)
+    {
+        long interval = CarpetServer.minecraft_server.getTickCount() / getRefreshInterval();
+        if (interval != sharedInterval)
+        {
+            shared.clear();
+            sharedInterval = interval;
+        }
+        return shared.computeIfAbsent(key, k -> messages.get());
+    }
+
+    @Override
+    protected boolean shouldLog(ServerPlayer player)
+    {
+        // loggers used by HUD listeners only get to log every round of listeners, so everyone gets them then
+        return HUDController.inListenerRound() || HUDController.isDue(player, getRefreshInterval());
+    }
+
+    @Override
+    public void log(lMessageIgnorePlayer messagePromise)
+    {
+        super.log((lMessageIgnorePlayer) option -> shared(option, () -> messagePromise.get(option)));
+    }
+
+    @Override
+    public void log(Supplier<Component[]> messagePromise)
+    {
+        super.log(() -> shared(ALL_PLAYERS, messagePromise));
+    }
+
     @Override
     public void removePlayer(String playerName)
     {
         ServerPlayer player = playerFromName(playerName);
-        if (player != null) HUDController.clearPlayer(player);
+        if (player != null) HUDController.removeMessages(player, this);
         super.removePlayer(playerName);
     }
 
     @Override
     public void sendPlayerMessage(ServerPlayer player, Component... messages)
     {
-        for (Component m:messages) HUDController.addMessage(player, m);
+        HUDController.setMessages(player, this, messages);
     }
 
 
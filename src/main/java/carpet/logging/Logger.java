@@ -137,7 +137,7 @@ public class Logger
         for (Map.Entry<String,String> en : subscribedOnlinePlayers.entrySet())
         {
             ServerPlayer player = playerFromName(en.getKey());
-            if (player != null)
+            if (player != null && shouldLog(player))
             {
                 Component [] messages = messagePromise.get(en.getValue(),player);
                 if (messages != null)
@@ -158,7 +158,7 @@ public class Logger
         for (Map.Entry<String,String> en : subscribedOnlinePlayers.entrySet())
         {
             ServerPlayer player = playerFromName(en.getKey());
-            if (player != null)
+            if (player != null && shouldLog(player))
             {
                 String option = en.getValue();
                 if (!cannedMessages.containsKey(option))
@@ -180,7 +180,7 @@ public class Logger
         for (Map.Entry<String,String> en : subscribedOnlinePlayers.entrySet())
         {
             ServerPlayer player = playerFromName(en.getKey());
-            if (player != null)
+            if (player != null && shouldLog(player))
             {
                 if (cannedMessages == null) cannedMessages = messagePromise.get();
                 sendPlayerMessage(player, cannedMessages);
@@ -188,6 +188,14 @@ public class Logger
         }
     }
 
+    /**
+     * @return whether messages logged now go to the subscribed player, always for regular loggers
+     */
+    protected boolean shouldLog(ServerPlayer player)
+    {
+        return true;
+    }
+
     public void sendPlayerMessage(ServerPlayer player, Component ... messages)
     {
         Arrays.stream(messages).forEach(player::sendSystemMessage);
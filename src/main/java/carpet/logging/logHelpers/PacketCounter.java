@@ -1,8 +1,192 @@
 package carpet.logging.logHelpers;
 
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import net.minecraft.network.Connection;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.PacketFlow;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Network traffic of the server by packet type and by connection. Counted from the netty threads with striped counters,
+ * and collected once a second by {@link #rotate()} into the traffic of the last second.
+ * Packets are counted where they are encoded and decoded, so with their size on the wire before compression,
+ * except on in-memory connections of the integrated server, which never encode them.
+ */
 public class PacketCounter
 {
-    public static long totalOut=0;
-    public static long totalIn=0;
-    public static void reset() {totalIn = 0L; totalOut = 0L; }
+    /**
+     * Traffic of a packet type or a connection over the last second
+     */
+    public record Traffic(String name, long packetsIn, long bytesIn, long packetsOut, long bytesOut)
+    {
+        public long packets()
+        {
+            return packetsIn + packetsOut;
+        }
+
+        public long bytes()
+        {
+            return bytesIn + bytesOut;
+        }
+    }
+
+    private static final class Counter
+    {
+        private final LongAdder packetsIn = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder packetsOut = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+
+        private void add(boolean in, int bytes)
+        {
+            (in ? packetsIn : packetsOut).increment();
+            (in ? bytesIn : bytesOut).add(bytes);
+        }
+
+        private Traffic collect(String name)
+        {
+            return new Traffic(name, packetsIn.sumThenReset(), bytesIn.sumThenReset(), packetsOut.sumThenReset(), bytesOut.sumThenReset());
+        }
+    }
+
+    private static final AttributeKey<Counter> CONNECTION_COUNTER = AttributeKey.valueOf("carpet_packet_counter");
+    // name of the handler vanilla installs the connection itself as in the channel pipeline
+    private static final String PACKET_HANDLER = "packet_handler";
+
+    private static final Counter total = new Counter();
+    private static final Map<String, Counter> byType = new ConcurrentHashMap<>();
+    private static final Map<Connection, Counter> byConnection = new ConcurrentHashMap<>();
+
+    private static volatile Traffic lastTotal = new Traffic("total", 0, 0, 0, 0);
+    private static volatile List<Traffic> lastTypes = List.of();
+    private static volatile List<Traffic> lastConnections = List.of();
+
+    /**
+     * @deprecated Use {@link #lastSecond()}, packets received in the last second, set by {@link #rotate()}
+     */
+    @Deprecated(forRemoval = true)
+    public static long totalIn = 0;
+    /**
+     * @deprecated Use {@link #lastSecond()}, packets sent in the last second, set by {@link #rotate()}
+     */
+    @Deprecated(forRemoval = true)
+    public static long totalOut = 0;
+
+    /**
+     * @deprecated Traffic is collected by {@link #rotate()}, this only clears {@link #totalIn} and {@link #totalOut}
+     */
+    @Deprecated(forRemoval = true)
+    public static void reset()
+    {
+        totalIn = 0L;
+        totalOut = 0L;
+    }
+
+    /**
+     * Counts a packet encoded to be sent on the channel, ignoring the client side of connections
+     */
+    public static void countEncoded(Channel channel, Packet<?> packet, int bytes)
+    {
+        if (packet.type().flow() == PacketFlow.CLIENTBOUND)
+        {
+            count(channel, packet, false, bytes);
+        }
+    }
+
+    /**
+     * Counts a packet decoded from the channel, ignoring the client side of connections
+     */
+    public static void countDecoded(Channel channel, Packet<?> packet, int bytes)
+    {
+        if (packet.type().flow() == PacketFlow.SERVERBOUND)
+        {
+            count(channel, packet, true, bytes);
+        }
+    }
+
+    /**
+     * Counts a packet of the server passed around in memory without being encoded, in the integrated server
+     */
+    public static void countInMemory(Connection connection, Packet<?> packet, boolean in)
+    {
+        total.add(in, 0);
+        byType.computeIfAbsent(packet.type().id().getPath(), k -> new Counter()).add(in, 0);
+        byConnection.computeIfAbsent(connection, c -> new Counter()).add(in, 0);
+    }
+
+    private static void count(Channel channel, Packet<?> packet, boolean in, int bytes)
+    {
+        total.add(in, bytes);
+        byType.computeIfAbsent(packet.type().id().getPath(), k -> new Counter()).add(in, bytes);
+        Counter connectionCounter = channel.attr(CONNECTION_COUNTER).get();
+        if (connectionCounter == null)
+        {
+            if (!(channel.pipeline().get(PACKET_HANDLER) instanceof Connection connection))
+            {
+                return;
+            }
+            connectionCounter = byConnection.computeIfAbsent(connection, c -> new Counter());
+            channel.attr(CONNECTION_COUNTER).set(connectionCounter);
+        }
+        connectionCounter.add(in, bytes);
+    }
+
+    /**
+     * Collects traffic counted since the last call as the traffic of the last second, called once a second
+     */
+    public static void rotate()
+    {
+        lastTotal = total.collect("total");
+        totalIn = lastTotal.packetsIn();
+        totalOut = lastTotal.packetsOut();
+        List<Traffic> types = new ArrayList<>(byType.size());
+        byType.forEach((type, counter) -> types.add(counter.collect(type)));
+        types.removeIf(t -> t.packets() == 0);
+        types.sort(Comparator.comparingLong(Traffic::packets).reversed());
+        lastTypes = types;
+        List<Traffic> connections = new ArrayList<>(byConnection.size());
+        byConnection.forEach((connection, counter) -> connections.add(counter.collect(nameOf(connection))));
+        byConnection.keySet().removeIf(connection -> !connection.isConnected());
+        connections.removeIf(t -> t.packets() == 0);
+        connections.sort(Comparator.comparingLong(Traffic::packets).reversed());
+        lastConnections = connections;
+    }
+
+    private static String nameOf(Connection connection)
+    {
+        if (connection.getPacketListener() instanceof ServerGamePacketListenerImpl listener)
+        {
+            return listener.player.getScoreboardName();
+        }
+        return String.valueOf(connection.getRemoteAddress());
+    }
+
+    public static Traffic lastSecond()
+    {
+        return lastTotal;
+    }
+
+    /**
+     * @return packet types with traffic in the last second, most packets first
+     */
+    public static List<Traffic> lastSecondByType()
+    {
+        return lastTypes;
+    }
+
+    /**
+     * @return players, or addresses of connections not in game yet, with traffic in the last second, most packets first
+     */
+    public static List<Traffic> lastSecondByConnection()
+    {
+        return lastConnections;
+    }
 }
@@ -0,0 +1,564 @@
+package carpet.logging.logHelpers;
+
+import carpet.script.utils.ShapeDispatcher;
+import carpet.script.value.ListValue;
+import carpet.script.value.NumericValue;
+import carpet.script.value.StringValue;
+import carpet.script.value.Value;
+import carpet.utils.Messenger;
+import carpet.utils.VarInts;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.Util;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraft.world.phys.Vec3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tick by tick positions and velocities of TNT, projectiles and falling blocks, captured into flat columns
+ * instead of being formatted into chat as they move, and written to the world folder when the capture stops.
+ * Captured files can be summarized, or replayed as lines for players to look at.
+ * <p>
+ * While capturing, each tick of each entity costs a few array stores. Samples go into shared columns in the order
+ * they come, and are grouped by entity only when written. Once the capture holds {@link #MAX_SAMPLES},
+ * further samples are counted as dropped.
+ */
+public class TrajectoryCapture
+{
+    public enum Kind
+    {
+        TNT("tnt", 0xFF3030FF),
+        PROJECTILES("projectiles", 0x30FFFFFF),
+        FALLING_BLOCKS("fallingBlocks", 0xFFD030FF);
+
+        public final String name;
+        private final int color;
+
+        Kind(String name, int color)
+        {
+            this.name = name;
+            this.color = color;
+        }
+
+        public static Kind byName(String name)
+        {
+            return Arrays.stream(values()).filter(k -> k.name.equals(name)).findFirst().orElse(null);
+        }
+    }
+
+    public static final String FOLDER = "trajectories";
+    public static final String EXTENSION = ".trj";
+    private static final int FORMAT = 1;
+    private static final int MAX_SAMPLES = 1 << 21;
+    private static final int MAX_REPLAY_LINES = 20000;
+    private static final byte EXPLODED = 1;
+
+    private static TrajectoryCapture current;
+
+    private final EnumSet<Kind> kinds;
+    private final long startTick;
+    private long dropped;
+
+    // entity types and dimensions, referred to by index
+    private final List<String> names = new ArrayList<>();
+    private final Object2IntOpenHashMap<String> nameIndex = new Object2IntOpenHashMap<>();
+    // tracks by network id of their entity, while they are still moving
+    private final Int2IntOpenHashMap openTracks = new Int2IntOpenHashMap();
+
+    private int tracks;
+    private byte[] trackKind = new byte[256];
+    private byte[] trackFlags = new byte[256];
+    private int[] trackType = new int[256];
+    private int[] trackDimension = new int[256];
+    // samples of track t, once grouped, are the ones from trackStart[t] to trackStart[t + 1]
+    private int[] trackStart;
+
+    private int samples;
+    private int[] sampleTrack = new int[4096];
+    private int[] sampleTick = new int[4096];
+    private double[] x = new double[4096];
+    private double[] y = new double[4096];
+    private double[] z = new double[4096];
+    private double[] vx = new double[4096];
+    private double[] vy = new double[4096];
+    private double[] vz = new double[4096];
+
+    private TrajectoryCapture(EnumSet<Kind> kinds, long startTick)
+    {
+        this.kinds = kinds;
+        this.startTick = startTick;
+        openTracks.defaultReturnValue(-1);
+    }
+
+    public static boolean isCapturing()
+    {
+        return current != null;
+    }
+
+    public static boolean isCapturing(Kind kind)
+    {
+        return current != null && current.kinds.contains(kind);
+    }
+
+    public static void start(MinecraftServer server, EnumSet<Kind> kinds)
+    {
+        current = new TrajectoryCapture(kinds, server.overworld().getGameTime());
+    }
+
+    /**
+     * Stops capturing and writes what was captured on the IO executor, the capture isn't touched by the game anymore
+     *
+     * @return future of the file the capture was written to, completing with null if nothing was captured,
+     * or with an {@link UncheckedIOException} if it couldn't be written
+     */
+    public static CompletableFuture<Path> stop(MinecraftServer server)
+    {
+        TrajectoryCapture capture = current;
+        current = null;
+        if (capture == null || capture.samples == 0)
+        {
+            return CompletableFuture.completedFuture(null);
+        }
+        Path folder = folder(server);
+        Path file = folder.resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss")) + EXTENSION);
+        return CompletableFuture.supplyAsync(() -> {
+            try
+            {
+                capture.group();
+                Files.createDirectories(folder);
+                capture.write(file);
+                return file;
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }, Util.ioPool());
+    }
+
+    /**
+     * Records where the entity is and where it goes at the start of its tick
+     */
+    public static void record(Kind kind, Entity entity)
+    {
+        TrajectoryCapture capture = current;
+        if (capture != null && capture.kinds.contains(kind))
+        {
+            capture.add(capture.track(kind, entity), entity);
+        }
+    }
+
+    /**
+     * Ends the track of the entity, with its last position if it exploded there
+     */
+    public static void finish(Entity entity, boolean exploded)
+    {
+        TrajectoryCapture capture = current;
+        if (capture == null)
+        {
+            return;
+        }
+        int track = capture.openTracks.remove(entity.getId());
+        if (track >= 0 && exploded)
+        {
+            capture.trackFlags[track] |= EXPLODED;
+            capture.add(track, entity);
+        }
+    }
+
+    private int track(Kind kind, Entity entity)
+    {
+        int track = openTracks.get(entity.getId());
+        if (track >= 0)
+        {
+            return track;
+        }
+        if (tracks == trackKind.length)
+        {
+            int size = tracks * 2;
+            trackKind = Arrays.copyOf(trackKind, size);
+            trackFlags = Arrays.copyOf(trackFlags, size);
+            trackType = Arrays.copyOf(trackType, size);
+            trackDimension = Arrays.copyOf(trackDimension, size);
+        }
+        track = tracks++;
+        trackKind[track] = (byte) kind.ordinal();
+        trackType[track] = name(BuiltInRegistries.ENTITY_TYPE.getKey(entity.getType()).toString());
+        trackDimension[track] = name(entity.level().dimension().location().toString());
+        openTracks.put(entity.getId(), track);
+        return track;
+    }
+
+    private int name(String name)
+    {
+        return nameIndex.computeIfAbsent(name, n -> {
+            names.add(name);
+            return names.size() - 1;
+        });
+    }
+
+    private void add(int track, Entity entity)
+    {
+        if (samples == MAX_SAMPLES)
+        {
+            dropped++;
+            return;
+        }
+        if (samples == x.length)
+        {
+            int size = Math.min(MAX_SAMPLES, samples * 2);
+            sampleTrack = Arrays.copyOf(sampleTrack, size);
+            sampleTick = Arrays.copyOf(sampleTick, size);
+            x = Arrays.copyOf(x, size);
+            y = Arrays.copyOf(y, size);
+            z = Arrays.copyOf(z, size);
+            vx = Arrays.copyOf(vx, size);
+            vy = Arrays.copyOf(vy, size);
+            vz = Arrays.copyOf(vz, size);
+        }
+        Vec3 motion = entity.getDeltaMovement();
+        int i = samples++;
+        sampleTrack[i] = track;
+        sampleTick[i] = (int) (entity.level().getGameTime() - startTick);
+        x[i] = entity.getX();
+        y[i] = entity.getY();
+        z[i] = entity.getZ();
+        vx[i] = motion.x;
+        vy[i] = motion.y;
+        vz[i] = motion.z;
+    }
+
+    /**
+     * Reorders samples by track, keeping their order within each track
+     */
+    private void group()
+    {
+        trackStart = new int[tracks + 1];
+        for (int i = 0; i < samples; i++)
+        {
+            trackStart[sampleTrack[i] + 1]++;
+        }
+        for (int t = 0; t < tracks; t++)
+        {
+            trackStart[t + 1] += trackStart[t];
+        }
+        int[] next = Arrays.copyOf(trackStart, tracks);
+        int[] order = new int[samples];
+        for (int i = 0; i < samples; i++)
+        {
+            order[next[sampleTrack[i]]++] = i;
+        }
+        sampleTrack = permute(sampleTrack, order);
+        sampleTick = permute(sampleTick, order);
+        x = permute(x, order);
+        y = permute(y, order);
+        z = permute(z, order);
+        vx = permute(vx, order);
+        vy = permute(vy, order);
+        vz = permute(vz, order);
+    }
+
+    private static int[] permute(int[] column, int[] order)
+    {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private static double[] permute(double[] column, int[] order)
+    {
+        double[] result = new double[order.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private void write(Path file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))))
+        {
+            out.writeByte(FORMAT);
+            out.writeLong(startTick);
+            VarInts.writeVarLong(out, dropped);
+            VarInts.writeVarLong(out, names.size());
+            for (String name : names)
+            {
+                out.writeUTF(name);
+            }
+            VarInts.writeVarLong(out, tracks);
+            for (int t = 0; t < tracks; t++)
+            {
+                out.writeByte(trackKind[t]);
+                out.writeByte(trackFlags[t]);
+                VarInts.writeVarLong(out, trackType[t]);
+                VarInts.writeVarLong(out, trackDimension[t]);
+                VarInts.writeVarLong(out, trackStart[t + 1] - trackStart[t]);
+            }
+            // ticks of a track mostly go up by one, so deltas take a byte each
+            for (int t = 0; t < tracks; t++)
+            {
+                int previous = 0;
+                for (int i = trackStart[t]; i < trackStart[t + 1]; i++)
+                {
+                    VarInts.writeVarLong(out, sampleTick[i] - previous);
+                    previous = sampleTick[i];
+                }
+            }
+            for (double[] column : List.of(x, y, z, vx, vy, vz))
+            {
+                for (int i = 0; i < samples; i++)
+                {
+                    out.writeDouble(column[i]);
+                }
+            }
+        }
+    }
+
+    public static TrajectoryCapture read(Path file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)))))
+        {
+            int format = in.readUnsignedByte();
+            if (format != FORMAT)
+            {
+                throw new IOException("Unknown trajectory capture format " + format);
+            }
+            TrajectoryCapture capture = new TrajectoryCapture(EnumSet.noneOf(Kind.class), in.readLong());
+            capture.dropped = VarInts.readVarLong(in);
+            int names = (int) VarInts.readVarLong(in);
+            for (int n = 0; n < names; n++)
+            {
+                capture.name(in.readUTF());
+            }
+            int tracks = (int) VarInts.readVarLong(in);
+            capture.tracks = tracks;
+            capture.trackKind = new byte[tracks];
+            capture.trackFlags = new byte[tracks];
+            capture.trackType = new int[tracks];
+            capture.trackDimension = new int[tracks];
+            capture.trackStart = new int[tracks + 1];
+            for (int t = 0; t < tracks; t++)
+            {
+                capture.trackKind[t] = in.readByte();
+                capture.trackFlags[t] = in.readByte();
+                capture.trackType[t] = (int) VarInts.readVarLong(in);
+                capture.trackDimension[t] = (int) VarInts.readVarLong(in);
+                capture.trackStart[t + 1] = capture.trackStart[t] + (int) VarInts.readVarLong(in);
+            }
+            int samples = capture.trackStart[tracks];
+            capture.samples = samples;
+            capture.sampleTrack = new int[samples];
+            capture.sampleTick = new int[samples];
+            for (int t = 0; t < tracks; t++)
+            {
+                int tick = 0;
+                for (int i = capture.trackStart[t]; i < capture.trackStart[t + 1]; i++)
+                {
+                    tick += (int) VarInts.readVarLong(in);
+                    capture.sampleTrack[i] = t;
+                    capture.sampleTick[i] = tick;
+                }
+            }
+            double[][] columns = new double[6][samples];
+            for (double[] column : columns)
+            {
+                for (int i = 0; i < samples; i++)
+                {
+                    column[i] = in.readDouble();
+                }
+            }
+            capture.x = columns[0];
+            capture.y = columns[1];
+            capture.z = columns[2];
+            capture.vx = columns[3];
+            capture.vy = columns[4];
+            capture.vz = columns[5];
+            return capture;
+        }
+    }
+
+    public static Path folder(MinecraftServer server)
+    {
+        return server.getWorldPath(LevelResource.ROOT).resolve(FOLDER);
+    }
+
+    /**
+     * @return names of captures in the world folder, newest first
+     */
+    public static List<String> list(MinecraftServer server)
+    {
+        Path folder = folder(server);
+        if (!Files.isDirectory(folder))
+        {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(folder))
+        {
+            return files.map(f -> f.getFileName().toString())
+                    .filter(f -> f.endsWith(EXTENSION))
+                    .map(f -> f.substring(0, f.length() - EXTENSION.length()))
+                    .sorted((a, b) -> b.compareTo(a)).toList();
+        }
+        catch (IOException e)
+        {
+            return List.of();
+        }
+    }
+
+    public static TrajectoryCapture load(MinecraftServer server, String name) throws IOException
+    {
+        if (!name.matches("[a-zA-Z0-9_.\\-]+"))
+        {
+            throw new IOException("Invalid capture name: " + name);
+        }
+        Path file = folder(server).resolve(name + EXTENSION);
+        if (!Files.exists(file))
+        {
+            throw new IOException("No capture " + name + " in " + FOLDER);
+        }
+        return read(file);
+    }
+
+    /**
+     * @return status of the running capture
+     */
+    public static Component status()
+    {
+        TrajectoryCapture capture = current;
+        if (capture == null)
+        {
+            return Messenger.c("g Not capturing");
+        }
+        return Messenger.c("w Capturing ", "wb " + capture.tracks, "w  trajectories, ", "wb " + capture.samples, "w  ticks",
+                capture.dropped > 0 ? "r , " + capture.dropped + " dropped" : "w ");
+    }
+
+    /**
+     * Per entity type: how many entities were captured, how long they flew, how fast they went,
+     * and where the ones that exploded ended up
+     */
+    public List<Component> summary()
+    {
+        record Stats(int[] count, long[] ticks, double[] maxSpeed, int[] exploded, double[] sum, double[] sumSq) {}
+        Map<String, Stats> byType = new TreeMap<>();
+        for (int t = 0; t < tracks; t++)
+        {
+            if (trackStart[t] == trackStart[t + 1])
+            {
+                // started after the capture was full
+                continue;
+            }
+            Stats stats = byType.computeIfAbsent(names.get(trackType[t]),
+                    k -> new Stats(new int[1], new long[1], new double[1], new int[1], new double[3], new double[3]));
+            int first = trackStart[t];
+            int last = trackStart[t + 1] - 1;
+            stats.count[0]++;
+            stats.ticks[0] += sampleTick[last] - sampleTick[first];
+            for (int i = first; i <= last; i++)
+            {
+                stats.maxSpeed[0] = Math.max(stats.maxSpeed[0], Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i]));
+            }
+            if ((trackFlags[t] & EXPLODED) != 0)
+            {
+                stats.exploded[0]++;
+                double[] at = {x[last], y[last], z[last]};
+                for (int axis = 0; axis < 3; axis++)
+                {
+                    stats.sum[axis] += at[axis];
+                    stats.sumSq[axis] += at[axis] * at[axis];
+                }
+            }
+        }
+        List<Component> lines = new ArrayList<>();
+        lines.add(Messenger.c("w Captured ", "wb " + tracks, "w  trajectories, ", "wb " + samples, "w  ticks",
+                dropped > 0 ? "r , " + dropped + " dropped" : "w "));
+        byType.forEach((type, stats) -> {
+            int count = stats.count[0];
+            lines.add(Messenger.c("w  - ", "wb " + type, "w : " + count + ", ",
+                    String.format(Locale.ROOT, "w %.1f ticks on average, up to %.3f m/t", (double) stats.ticks[0] / count, stats.maxSpeed[0])));
+            int exploded = stats.exploded[0];
+            if (exploded > 0)
+            {
+                double[] mean = new double[3];
+                double[] deviation = new double[3];
+                for (int axis = 0; axis < 3; axis++)
+                {
+                    mean[axis] = stats.sum[axis] / exploded;
+                    deviation[axis] = Math.sqrt(Math.max(0, stats.sumSq[axis] / exploded - mean[axis] * mean[axis]));
+                }
+                lines.add(Messenger.c("w    " + exploded + " exploded at ", Messenger.dblt("r", mean[0], mean[1], mean[2]),
+                        "w  +/- ", Messenger.dblt("g", deviation[0], deviation[1], deviation[2])));
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * Draws captured trajectories for the players as lines, skipping whole trajectories evenly
+     * when there are too many to draw
+     *
+     * @return number of trajectories drawn
+     */
+    public int replay(MinecraftServer server, Collection<ServerPlayer> players, int duration)
+    {
+        int stride = Math.max(1, (samples - tracks + MAX_REPLAY_LINES - 1) / MAX_REPLAY_LINES);
+        List<ShapeDispatcher.ShapeWithConfig> shapes = new ArrayList<>();
+        int drawn = 0;
+        for (int t = 0; t < tracks; t += stride)
+        {
+            drawn++;
+            Value color = new NumericValue(Kind.values()[trackKind[t]].color);
+            Value dimension = new StringValue(names.get(trackDimension[t]));
+            for (int i = trackStart[t] + 1; i < trackStart[t + 1]; i++)
+            {
+                Map<String, Value> params = new HashMap<>();
+                params.put("from", ListValue.fromTriple(x[i - 1], y[i - 1], z[i - 1]));
+                params.put("to", ListValue.fromTriple(x[i], y[i], z[i]));
+                params.put("color", color);
+                params.put("dim", dimension);
+                params.put("duration", new NumericValue(duration));
+                shapes.add(new ShapeDispatcher.ShapeWithConfig(ShapeDispatcher.create(server, "line", params), params));
+            }
+        }
+        ShapeDispatcher.sendShape(players, shapes, server.registryAccess());
+        return drawn;
+    }
+
+    public static void reset()
+    {
+        current = null;
+    }
+}
@@ -1,6 +1,7 @@
 package carpet.mixins;
 
 import carpet.logging.LoggerRegistry;
+import carpet.logging.logHelpers.TrajectoryCapture;
 import carpet.logging.logHelpers.TrajectoryLogHelper;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityType;
@@ -10,6 +11,7 @@ import net.minecraft.world.level.Level;
 import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.EntityHitResult;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -17,6 +19,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 @Mixin(AbstractArrow.class)
 public abstract class AbstractArrowMixin extends Entity
 {
+    @Shadow protected boolean inGround;
     private TrajectoryLogHelper logHelper;
     public AbstractArrowMixin(EntityType<?> entityType_1, Level world_1) { super(entityType_1, world_1); }
 
@@ -32,6 +35,9 @@ public abstract class AbstractArrowMixin extends Entity
     {
         if (LoggerRegistry.__projectiles && logHelper != null)
             logHelper.onTick(getX(), getY(), getZ(), getDeltaMovement());
+        // arrows keep ticking once stuck, their trajectory ends when they hit something
+        if (TrajectoryCapture.isCapturing(TrajectoryCapture.Kind.PROJECTILES) && !level().isClientSide && !inGround)
+            TrajectoryCapture.record(TrajectoryCapture.Kind.PROJECTILES, this);
     }
 
     // todo should be moved on one place this is acceessed from
@@ -48,6 +54,8 @@ public abstract class AbstractArrowMixin extends Entity
     @Inject(method = "onHitBlock", at = @At("RETURN"))
     private void removeOnBlock(BlockHitResult blockHitResult, CallbackInfo ci)
     {
+        if (TrajectoryCapture.isCapturing())
+            TrajectoryCapture.finish(this, false);
         if (LoggerRegistry.__projectiles && logHelper != null)
         {
             logHelper.onFinish();
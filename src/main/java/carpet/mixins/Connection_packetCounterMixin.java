@@ -9,8 +9,10 @@ import io.netty.util.concurrent.GenericFutureListener;
 import net.minecraft.network.Connection;
 import net.minecraft.network.PacketSendListener;
 import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.PacketFlow;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.gen.Accessor;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -19,18 +21,28 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 @Mixin(Connection.class)
 public abstract class Connection_packetCounterMixin implements ClientConnectionInterface
 {
-    // Add to the packet counter whenever a packet is received.
+    @Shadow public abstract boolean isMemoryConnection();
+
+    @Shadow public abstract PacketFlow getReceiving();
+
+    // Packets on network connections are counted with their size when encoded, see PacketEncoder_packetCounterMixin.
+    // In-memory connections of the integrated server never encode them, so they are counted here.
     @Inject(method = "channelRead0", at = @At("HEAD"))
     private void packetInCount(ChannelHandlerContext channelHandlerContext_1, Packet<?> packet_1, CallbackInfo ci)
     {
-        PacketCounter.totalIn++;
+        if (isMemoryConnection() && getReceiving() == PacketFlow.SERVERBOUND)
+        {
+            PacketCounter.countInMemory((Connection) (Object) this, packet_1, true);
+        }
     }
-    
-    // Add to the packet counter whenever a packet is sent.
+
     @Inject(method = "sendPacket", at = @At("HEAD"))
     private void packetOutCount(final Packet<?> packet, final PacketSendListener packetSendListener, final boolean bl, final CallbackInfo ci)
     {
-        PacketCounter.totalOut++;
+        if (isMemoryConnection() && getReceiving() == PacketFlow.SERVERBOUND)
+        {
+            PacketCounter.countInMemory((Connection) (Object) this, packet, false);
+        }
     }
 
     @Override
@@ -1,6 +1,7 @@
 package carpet.mixins;
 
 import carpet.fakes.EntityInterface;
+import carpet.logging.logHelpers.TrajectoryCapture;
 import carpet.patches.EntityPlayerMPFake;
 import net.minecraft.util.Mth;
 import net.minecraft.world.entity.Entity;
@@ -11,6 +12,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(Entity.class)
@@ -37,4 +39,12 @@ public abstract class EntityMixin implements EntityInterface
     {
         if (getControllingPassenger() instanceof EntityPlayerMPFake) cir.setReturnValue(!level.isClientSide);
     }
+
+    // every way out of the world ends up here, so picked up arrows or killed and unloaded entities don't leave tracks open
+    @Inject(method = "setRemoved", at = @At("RETURN"))
+    private void finishTrajectory(Entity.RemovalReason reason, CallbackInfo ci)
+    {
+        if (TrajectoryCapture.isCapturing() && !level.isClientSide)
+            TrajectoryCapture.finish((Entity) (Object) this, false);
+    }
 }
@@ -1,6 +1,7 @@
 package carpet.mixins;
 
 import carpet.logging.LoggerRegistry;
+import carpet.logging.logHelpers.TrajectoryCapture;
 import carpet.logging.logHelpers.TrajectoryLogHelper;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityType;
@@ -30,6 +31,8 @@ public abstract class FallingBlockEntityMixin extends Entity
     {
         if (LoggerRegistry.__fallingBlocks && logHelper != null)
             logHelper.onTick(getX(), getY(), getZ(), getDeltaMovement());
+        if (TrajectoryCapture.isCapturing(TrajectoryCapture.Kind.FALLING_BLOCKS) && !level().isClientSide)
+            TrajectoryCapture.record(TrajectoryCapture.Kind.FALLING_BLOCKS, this);
     }
 
     @Override
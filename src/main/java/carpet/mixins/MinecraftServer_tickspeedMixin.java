@@ -29,7 +29,7 @@ public abstract class MinecraftServer_tickspeedMixin extends ReentrantBlockableE
             target = "Lnet/minecraft/server/MinecraftServer;startMetricsRecordingTick()V"))
     private void modifiedRunLoop(CallbackInfo ci)
     {
-        if (CarpetProfiler.tick_health_requested != 0L)
+        if (CarpetProfiler.is_profiling())
         {
             CarpetProfiler.start_tick_profiling();
         }
@@ -88,7 +88,7 @@ public abstract class MinecraftServer_tickspeedMixin extends ReentrantBlockableE
     ))
     private void stopAsync(CallbackInfo ci)
     {
-        if (CarpetProfiler.tick_health_requested != 0L)
+        if (CarpetProfiler.is_profiling())
         {
             CarpetProfiler.end_current_section(currentSection);
             CarpetProfiler.end_tick_profiling((MinecraftServer) (Object)this);
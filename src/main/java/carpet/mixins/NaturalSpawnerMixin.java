@@ -3,7 +3,6 @@ package carpet.mixins;
 import carpet.CarpetSettings;
 import carpet.fakes.LevelInterface;
 import carpet.utils.SpawnReporter;
-import org.apache.commons.lang3.tuple.Pair;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -11,11 +10,11 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.util.Map;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.tags.BlockTags;
 import net.minecraft.util.Mth;
@@ -30,10 +29,13 @@ import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.NaturalSpawner;
 import net.minecraft.world.level.ServerLevelAccessor;
+import net.minecraft.world.level.StructureManager;
+import net.minecraft.world.level.biome.MobSpawnSettings;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.FenceGateBlock;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.ChunkGenerator;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.shapes.Shapes;
@@ -131,6 +133,16 @@ public class NaturalSpawnerMixin
         return true;
     }
 
+    @Inject(method = "isValidSpawnPostitionForType", at = @At("RETURN"))
+    private static void onSpawnAttempt(ServerLevel world, MobCategory category, StructureManager structureManager, ChunkGenerator generator,
+                                       MobSpawnSettings.SpawnerData spawnEntry, BlockPos.MutableBlockPos pos, double squaredDistance, CallbackInfoReturnable<Boolean> cir)
+    {
+        if (SpawnReporter.trackingHeatmap())
+        {
+            SpawnReporter.registerSpawnAttempt(world, pos);
+        }
+    }
+
     @Redirect(method = "getMobForSpawn", at = @At(
             value = "INVOKE",
             target = "Lnet/minecraft/world/entity/EntityType;create(Lnet/minecraft/world/level/Level;)Lnet/minecraft/world/entity/Entity;"
@@ -161,7 +173,7 @@ public class NaturalSpawnerMixin
             // we used the mob - next time we will create a new one when needed
             ((LevelInterface) world).getPrecookedMobs().remove(entity_1.getType());
 
-        if (SpawnReporter.trackingSpawns() && SpawnReporter.local_spawns != null)
+        if (SpawnReporter.trackingSpawns() && SpawnReporter.inSpawnCycle())
         {
             SpawnReporter.registerSpawn(
                     //world.method_27983(), // getDimensionType //dimension.getType(), // getDimensionType
@@ -209,7 +221,8 @@ public class NaturalSpawnerMixin
     // inject our repeat of spawns if more spawn ticks per tick are chosen.
     private static void spawnMultipleTimes(MobCategory category, ServerLevel world, LevelChunk chunk, NaturalSpawner.SpawnPredicate checker, NaturalSpawner.AfterSpawnCallback runner)
     {
-        for (int i = 0; i < SpawnReporter.spawn_tries.get(category); i++)
+        int tries = SpawnReporter.getSpawnTries(category);
+        for (int i = 0; i < tries; i++)
         {
             NaturalSpawner.spawnCategoryForChunk(category, world, chunk, checker, runner);
         }
@@ -273,7 +286,7 @@ public class NaturalSpawnerMixin
     private static void checkSpawns(ServerLevel world, LevelChunk chunk, NaturalSpawner.SpawnState info,
                                     boolean spawnAnimals, boolean spawnMonsters, boolean shouldSpawnAnimals, CallbackInfo ci)
     {
-        if (SpawnReporter.trackingSpawns())
+        if (SpawnReporter.trackingSpawns() && SpawnReporter.inSpawnCycle())
         {
             MobCategory[] var6 = SPAWNING_CATEGORIES;
             int var7 = var6.length;
@@ -282,35 +295,14 @@ public class NaturalSpawnerMixin
                 MobCategory entityCategory = var6[var8];
                 if ((spawnAnimals || !entityCategory.isFriendly()) && (spawnMonsters || entityCategory.isFriendly()) && (shouldSpawnAnimals || !entityCategory.isPersistent()) )
                 {
-                    ResourceKey<Level> dim = world.dimension(); // getDimensionType;
                     int newCap = entityCategory.getMaxInstancesPerChunk();  //(int) ((double)entityCategory.getCapacity()*(Math.pow(2.0,(SpawnReporter.mobcap_exponent/4))));
-                    int int_2 = SpawnReporter.chunkCounts.get(dim); // eligible chunks for spawning
+                    int int_2 = SpawnReporter.getChunkCount(world.dimension()); // eligible chunks for spawning
                     int int_3 = newCap * int_2 / MAGIC_NUMBER; //current spawning limits
                     int mobCount = info.getMobCategoryCounts().getInt(entityCategory);
 
-                    if (SpawnReporter.trackingSpawns() && !SpawnReporter.first_chunk_marker.contains(entityCategory))
-                    {
-                        SpawnReporter.first_chunk_marker.add(entityCategory);
-                        //first chunk with spawn eligibility for that category
-                        Pair<ResourceKey<Level>, MobCategory> key = Pair.of(dim, entityCategory);
-
-                        int spawnTries = SpawnReporter.spawn_tries.get(entityCategory);
-
-                        SpawnReporter.spawn_attempts.addTo(key, spawnTries);
-
-                        SpawnReporter.spawn_cap_count.addTo(key, mobCount);
-                    }
-
-                    if (mobCount <= int_3 || SpawnReporter.mockSpawns) //TODO this will not float with player based mobcaps
-                    {
-                        //place 0 to indicate there were spawn attempts for a category
-                        //if (entityCategory != EntityCategory.CREATURE || world.getServer().getTicks() % 400 == 0)
-                        // this will only be called once every 400 ticks anyways
-                        SpawnReporter.local_spawns.putIfAbsent(entityCategory, 0L);
-
-                        //else
-                        //full mobcaps - and key in local_spawns will be missing
-                    }
+                    //TODO this will not float with player based mobcaps
+                    //full mobcaps - and category will be missing from this cycle's spawns
+                    SpawnReporter.registerCategoryCheck(entityCategory, mobCount, mobCount <= int_3 || SpawnReporter.mockSpawns);
                 }
             }
         }
@@ -0,0 +1,39 @@
+package carpet.mixins;
+
+import carpet.logging.logHelpers.PacketCounter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import net.minecraft.network.PacketDecoder;
+import net.minecraft.network.protocol.Packet;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.List;
+
+@Mixin(PacketDecoder.class)
+public class PacketDecoder_packetCounterMixin
+{
+    // decoders belong to a single channel, so a single netty thread
+    @Unique private int bytesBefore;
+    @Unique private int decodedBefore;
+
+    // input buffer is a single frame, so it holds just the packet to decode
+    @Inject(method = "decode", at = @At("HEAD"))
+    private void measurePacket(ChannelHandlerContext ctx, ByteBuf in, List<Object> out, CallbackInfo ci)
+    {
+        bytesBefore = in.readableBytes();
+        decodedBefore = out.size();
+    }
+
+    @Inject(method = "decode", at = @At("RETURN"))
+    private void countDecoded(ChannelHandlerContext ctx, ByteBuf in, List<Object> out, CallbackInfo ci)
+    {
+        if (out.size() > decodedBefore && out.get(out.size() - 1) instanceof Packet<?> packet)
+        {
+            PacketCounter.countDecoded(ctx.channel(), packet, bytesBefore - in.readableBytes());
+        }
+    }
+}
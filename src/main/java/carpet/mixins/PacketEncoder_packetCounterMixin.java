@@ -0,0 +1,22 @@
+package carpet.mixins;
+
+import carpet.logging.logHelpers.PacketCounter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import net.minecraft.network.PacketEncoder;
+import net.minecraft.network.protocol.Packet;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(PacketEncoder.class)
+public class PacketEncoder_packetCounterMixin
+{
+    // output buffer is allocated for each packet, so it holds just the encoded packet
+    @Inject(method = "encode(Lio/netty/channel/ChannelHandlerContext;Lnet/minecraft/network/protocol/Packet;Lio/netty/buffer/ByteBuf;)V", at = @At("RETURN"))
+    private void countEncoded(ChannelHandlerContext ctx, Packet<?> packet, ByteBuf out, CallbackInfo ci)
+    {
+        PacketCounter.countEncoded(ctx.channel(), packet, out.readableBytes());
+    }
+}
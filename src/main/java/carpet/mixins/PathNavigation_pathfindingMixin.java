@@ -2,6 +2,7 @@ package carpet.mixins;
 
 import carpet.logging.LoggerRegistry;
 import carpet.logging.logHelpers.PathfindingVisualizer;
+import carpet.utils.PathfindingProfiler;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
@@ -31,11 +32,16 @@ public abstract class PathNavigation_pathfindingMixin
     ))
     private Path pathToBlock(PathNavigation entityNavigation, Set<BlockPos> set_1, int int_1, boolean boolean_1, int int_2)
     {
-        if (!LoggerRegistry.__pathfinding)
+        boolean profiled = PathfindingProfiler.sample(mob);
+        if (!LoggerRegistry.__pathfinding && !profiled)
             return createPath(set_1, int_1, boolean_1, int_2);
         long start = System.nanoTime();
         Path path = createPath(set_1, int_1, boolean_1, int_2);
         long finish = System.nanoTime();
+        if (profiled)
+            PathfindingProfiler.record(mob, finish - start, path != null);
+        if (!LoggerRegistry.__pathfinding)
+            return path;
         float duration = (1.0F*((finish - start)/1000))/1000;
         set_1.forEach(b -> PathfindingVisualizer.slowPath(mob, Vec3.atBottomCenterOf(b), duration, path != null)); // ground centered position
         return path;
@@ -47,11 +53,16 @@ public abstract class PathNavigation_pathfindingMixin
     ))
     private Path pathToEntity(PathNavigation entityNavigation, Set<BlockPos> set_1, int int_1, boolean boolean_1, int int_2)
     {
-        if (!LoggerRegistry.__pathfinding)
+        boolean profiled = PathfindingProfiler.sample(mob);
+        if (!LoggerRegistry.__pathfinding && !profiled)
             return createPath(set_1, int_1, boolean_1, int_2);
         long start = System.nanoTime();
         Path path = createPath(set_1, int_1, boolean_1, int_2);
         long finish = System.nanoTime();
+        if (profiled)
+            PathfindingProfiler.record(mob, finish - start, path != null);
+        if (!LoggerRegistry.__pathfinding)
+            return path;
         float duration = (1.0F*((finish - start)/1000))/1000;
         set_1.forEach(b -> PathfindingVisualizer.slowPath(mob, Vec3.atBottomCenterOf(b), duration, path != null));
         return path;
@@ -9,6 +9,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import carpet.logging.LoggerRegistry;
 import carpet.logging.logHelpers.TNTLogHelper;
+import carpet.logging.logHelpers.TrajectoryCapture;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.LivingEntity;
@@ -56,6 +57,10 @@ public abstract class PrimedTntMixin extends Entity implements TntEntityInterfac
         {
             logHelper.onPrimed(getX(), getY(), getZ(), getDeltaMovement());
         }
+        if (TrajectoryCapture.isCapturing(TrajectoryCapture.Kind.TNT) && !level().isClientSide)
+        {
+            TrajectoryCapture.record(TrajectoryCapture.Kind.TNT, this);
+        }
     }
 
 
@@ -73,6 +78,8 @@ public abstract class PrimedTntMixin extends Entity implements TntEntityInterfac
     {
         if (LoggerRegistry.__tnt && logHelper != null)
             logHelper.onExploded(getX(), getY(), getZ(), this.level().getGameTime());
+        if (TrajectoryCapture.isCapturing())
+            TrajectoryCapture.finish(this, true);
 
         if (mergedTNT > 1)
             for (int i = 0; i < mergedTNT - 1; i++)
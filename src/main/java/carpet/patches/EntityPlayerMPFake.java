@@ -74,23 +74,39 @@ public class EntityPlayerMPFake extends ServerPlayer
             {
                 current = p.get();
             }
-            EntityPlayerMPFake instance = new EntityPlayerMPFake(server, worldIn, current, ClientInformation.createDefault(), false);
-            instance.fixStartingPosition = () -> instance.moveTo(pos.x, pos.y, pos.z, (float) yaw, (float) pitch);
-            server.getPlayerList().placeNewPlayer(new FakeClientConnection(PacketFlow.SERVERBOUND), instance, new CommonListenerCookie(current, 0, instance.clientInformation(), false));
-            instance.teleportTo(worldIn, pos.x, pos.y, pos.z, (float) yaw, (float) pitch);
-            instance.setHealth(20.0F);
-            instance.unsetRemoved();
-            instance.getAttribute(Attributes.STEP_HEIGHT).setBaseValue(0.6F);
-            instance.gameMode.changeGameModeForPlayer(gamemode);
-            server.getPlayerList().broadcastAll(new ClientboundRotateHeadPacket(instance, (byte) (instance.yHeadRot * 256 / 360)), dimensionId);//instance.dimension);
-            server.getPlayerList().broadcastAll(new ClientboundTeleportEntityPacket(instance), dimensionId);//instance.dimension);
-            //instance.world.getChunkManager(). updatePosition(instance);
-            instance.entityData.set(DATA_PLAYER_MODE_CUSTOMISATION, (byte) 0x7f); // show all model layers (incl. capes)
-            instance.getAbilities().flying = flying;
+            spawn(server, worldIn, current, pos, yaw, pitch, gamemode, flying);
         }, server);
         return true;
     }
 
+    /**
+     * Spawns a fake player right away with an offline profile, skipping profile lookups, for bulk spawning bots
+     */
+    public static EntityPlayerMPFake createBulk(String username, MinecraftServer server, ServerLevel level, Vec3 pos, double yaw, double pitch, GameType gamemode, boolean flying)
+    {
+        GameProfile profile = new GameProfile(UUIDUtil.createOfflinePlayerUUID(username), username);
+        return spawn(server, level, profile, pos, yaw, pitch, gamemode, flying);
+    }
+
+    private static EntityPlayerMPFake spawn(MinecraftServer server, ServerLevel worldIn, GameProfile profile, Vec3 pos, double yaw, double pitch, GameType gamemode, boolean flying)
+    {
+        ResourceKey<Level> dimensionId = worldIn.dimension();
+        EntityPlayerMPFake instance = new EntityPlayerMPFake(server, worldIn, profile, ClientInformation.createDefault(), false);
+        instance.fixStartingPosition = () -> instance.moveTo(pos.x, pos.y, pos.z, (float) yaw, (float) pitch);
+        server.getPlayerList().placeNewPlayer(new FakeClientConnection(PacketFlow.SERVERBOUND), instance, new CommonListenerCookie(profile, 0, instance.clientInformation(), false));
+        instance.teleportTo(worldIn, pos.x, pos.y, pos.z, (float) yaw, (float) pitch);
+        instance.setHealth(20.0F);
+        instance.unsetRemoved();
+        instance.getAttribute(Attributes.STEP_HEIGHT).setBaseValue(0.6F);
+        instance.gameMode.changeGameModeForPlayer(gamemode);
+        server.getPlayerList().broadcastAll(new ClientboundRotateHeadPacket(instance, (byte) (instance.yHeadRot * 256 / 360)), dimensionId);//instance.dimension);
+        server.getPlayerList().broadcastAll(new ClientboundTeleportEntityPacket(instance), dimensionId);//instance.dimension);
+        //instance.world.getChunkManager(). updatePosition(instance);
+        instance.entityData.set(DATA_PLAYER_MODE_CUSTOMISATION, (byte) 0x7f); // show all model layers (incl. capes)
+        instance.getAbilities().flying = flying;
+        return instance;
+    }
+
     private static CompletableFuture<Optional<GameProfile>> fetchGameProfile(final String name) {
         return SkullBlockEntity.fetchGameProfile(name);
     }
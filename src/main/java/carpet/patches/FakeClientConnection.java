@@ -3,10 +3,14 @@ package carpet.patches;
 import carpet.fakes.ClientConnectionInterface;
 import io.netty.channel.embedded.EmbeddedChannel;
 import net.minecraft.network.Connection;
+import net.minecraft.network.PacketSendListener;
 import net.minecraft.network.PacketListener;
 import net.minecraft.network.ProtocolInfo;
+import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.PacketFlow;
 
+import javax.annotation.Nullable;
+
 public class FakeClientConnection extends Connection
 {
     public FakeClientConnection(PacketFlow p)
@@ -17,6 +21,12 @@ public class FakeClientConnection extends Connection
         ((ClientConnectionInterface)this).setChannel(new EmbeddedChannel());
     }
 
+    @Override
+    public void send(Packet<?> packet, @Nullable PacketSendListener listener, boolean flush)
+    {
+        // nobody reads the channel, so packets would only pile up in its outbound buffer
+    }
+
     @Override
     public void setReadOnly()
     {
@@ -1,6 +1,7 @@
 package carpet.patches;
 
 import net.minecraft.network.Connection;
+import net.minecraft.network.PacketSendListener;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.contents.TranslatableContents;
 import net.minecraft.network.protocol.Packet;
@@ -9,6 +10,7 @@ import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.server.network.CommonListenerCookie;
 import net.minecraft.server.network.ServerGamePacketListenerImpl;
 import net.minecraft.world.entity.RelativeMovement;
+import javax.annotation.Nullable;
 import java.util.Set;
 
 public class NetHandlerPlayServerFake extends ServerGamePacketListenerImpl
@@ -23,6 +25,11 @@ public class NetHandlerPlayServerFake extends ServerGamePacketListenerImpl
     {
     }
 
+    @Override
+    public void send(final Packet<?> packetIn, @Nullable final PacketSendListener listener)
+    {
+    }
+
     @Override
     public void disconnect(Component message)
     {
@@ -182,6 +182,20 @@ public class CarpetEventServer
         {
             scriptServer.events.runScheduledCall(ctx.origin(), ctx.source(), host, (CarpetScriptHost) ctx.host, function, parametrizedArgs);
         }
+
+        /**
+         * @return whether the call has to wait for the next tick, since its app used up its time budget for this one
+         */
+        public boolean isDeferred()
+        {
+            CarpetScriptHost callingHost = (CarpetScriptHost) ctx.host;
+            if (!scriptServer.isOverBudget(callingHost))
+            {
+                return false;
+            }
+            callingHost.appHost().deferredCalls++;
+            return true;
+        }
     }
 
     public static class CallbackList
@@ -1385,11 +1399,18 @@ public class CarpetEventServer
                 eventIterator.remove();
             }
         }
+        List<ScheduledCall> deferredCalls = new ArrayList<>();
         for (ScheduledCall call : currentCalls)
         {
+            if (call.isDeferred())
+            {
+                deferredCalls.add(call);
+                continue;
+            }
             call.execute();
         }
-
+        // still due next tick, ahead of calls scheduled later
+        scheduledCalls.addAll(0, deferredCalls);
     }
 
     public void scheduleCall(CarpetContext context, FunctionValue function, List<Value> args, long due)
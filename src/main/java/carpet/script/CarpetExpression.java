@@ -61,6 +61,31 @@ public class CarpetExpression
         Carpet.handleExtensionsAPI(this);
     }
 
+    /**
+     * Wraps code parsed before for another load of the same module, see {@link CarpetScriptServer#expressionFor}
+     */
+    public CarpetExpression(Expression parsed, CommandSourceStack source, BlockPos origin)
+    {
+        this.origin = origin;
+        this.source = source;
+        this.expr = parsed;
+    }
+
+    /**
+     * Parses the code without running it, so syntax errors show up before anything else happens
+     */
+    public void parse(ScriptHost host)
+    {
+        try
+        {
+            expr.parse(new CarpetContext(host, source, origin));
+        }
+        catch (ExpressionException e)
+        {
+            throw new CarpetExpressionException(e.getMessage(), e.stack);
+        }
+    }
+
     public boolean fillAndScanCommand(ScriptHost host, int x, int y, int z)
     {
         CarpetScriptServer scriptServer = (CarpetScriptServer) host.scriptServer();
@@ -14,6 +14,7 @@ import carpet.script.exception.LoadException;
 import carpet.script.external.Carpet;
 import carpet.script.external.Vanilla;
 import carpet.script.utils.AppStoreManager;
+import carpet.script.utils.MemoryEstimate;
 import carpet.script.value.EntityValue;
 import carpet.script.value.FunctionValue;
 import carpet.script.value.ListValue;
@@ -69,6 +70,26 @@ public class CarpetScriptHost extends ScriptHost
     private int saveTimeout;
     public boolean persistenceRequired;
     public double eventPriority;
+    /**
+     * Limit of the memory the app holds in megabytes set in its config, 0 if it didn't set one
+     */
+    public double memoryLimit;
+    boolean memoryWarned;
+    /**
+     * Time in milliseconds the app can spend on the server thread each tick set in its config, 0 if it didn't set one
+     */
+    public double tickBudget;
+    /**
+     * Whether reloading the app keeps the values of its global variables, set in its config
+     */
+    public boolean keepGlobalsOnReload;
+    // time spent on the server thread in nanoseconds, see CarpetScriptServer.runTimed
+    long tickNanos;
+    long lastTickNanos;
+    double averageTickNanos;
+    long peakTickNanos;
+    int deferredCalls;
+    int stoppedCalls;
 
     public Map<Value, Value> appConfig;
     public Map<String, CommandArgument> appArgTypes;
@@ -108,8 +129,7 @@ public class CarpetScriptHost extends ScriptHost
             try
             {
                 host.setChatErrorSnooper(source);
-                CarpetExpression ex = new CarpetExpression(host.main, module.code(), source, new BlockPos(0, 0, 0));
-                ex.getExpr().asATextSource();
+                CarpetExpression ex = scriptServer.expressionFor(module, source, new BlockPos(0, 0, 0));
                 host.storeSource = storeSource;
                 ex.scriptRunCommand(host, BlockPos.containing(source.getPosition()));
             }
@@ -319,6 +339,9 @@ public class CarpetScriptHost extends ScriptHost
             persistenceRequired = config.getOrDefault(new StringValue("stay_loaded"), Value.TRUE).getBoolean();
             strict = config.getOrDefault(StringValue.of("strict"), Value.FALSE).getBoolean();
             eventPriority = config.getOrDefault(new StringValue("event_priority"), Value.ZERO).readDoubleNumber();
+            memoryLimit = Math.max(0, config.getOrDefault(StringValue.of("memory_limit"), Value.ZERO).readDoubleNumber());
+            tickBudget = Math.max(0, config.getOrDefault(StringValue.of("tick_budget"), Value.ZERO).readDoubleNumber());
+            keepGlobalsOnReload = config.getOrDefault(StringValue.of("keep_globals_on_reload"), Value.FALSE).getBoolean();
             // check requires
             Value loadRequirements = config.get(new StringValue("requires"));
             if (loadRequirements instanceof final FunctionValue functionValue)
@@ -629,8 +652,7 @@ public class CarpetScriptHost extends ScriptHost
     protected void runModuleCode(Context c, Module module)
     {
         CarpetContext cc = (CarpetContext) c;
-        CarpetExpression ex = new CarpetExpression(module, module.code(), cc.source(), cc.origin());
-        ex.getExpr().asATextSource();
+        CarpetExpression ex = scriptServer().expressionFor(module, cc.source(), cc.origin());
         ex.scriptRunCommand(this, cc.origin());
     }
 
@@ -899,10 +921,10 @@ public class CarpetScriptHost extends ScriptHost
         {
             assertAppIntegrity(fun.getModule());
             Context context = new CarpetContext(this, source, origin);
-            return fun.getExpression().evalValue(
+            return scriptServer().runTimed(this, () -> fun.getExpression().evalValue(
                     () -> fun.execute(context, Context.VOID, fun.getExpression(), fun.getToken(), argv, null),
                     context,
-                    Context.VOID);
+                    Context.VOID));
         }
         catch (ExpressionException e)
         {
@@ -1037,6 +1059,21 @@ public class CarpetScriptHost extends ScriptHost
         return fdesc.findPathAndApply(main, action);
     }
 
+    /**
+     * @return host of the app, shared by its player instances
+     */
+    public CarpetScriptHost appHost()
+    {
+        return parent == null ? this : (CarpetScriptHost) parent;
+    }
+
+    @Override
+    public void estimateMemory(MemoryEstimate estimate)
+    {
+        super.estimateMemory(estimate);
+        estimate.add(globalState);
+    }
+
     public void tick()
     {
         if (this.saveTimeout > 0)
@@ -7,6 +7,7 @@ import carpet.script.api.Entities;
 import carpet.script.api.Inventories;
 import carpet.script.api.Scoreboards;
 import carpet.script.api.WorldAccess;
+import carpet.script.exception.CarpetExpressionException;
 import carpet.script.exception.ExpressionException;
 import carpet.script.exception.LoadException;
 import carpet.script.external.Carpet;
@@ -19,11 +20,14 @@ import carpet.script.language.Loops;
 import carpet.script.language.Sys;
 import carpet.script.language.Threading;
 import carpet.script.utils.AppStoreManager;
+import carpet.script.utils.MemoryEstimate;
 import carpet.script.value.FunctionValue;
+import carpet.script.value.Value;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.tree.CommandNode;
 
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
@@ -39,6 +43,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -47,6 +52,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -57,6 +63,9 @@ public class CarpetScriptServer extends ScriptServer
 {
     //make static for now, but will change that later:
     public static final Logger LOG = LoggerFactory.getLogger("Scarpet");
+    private static final long MEGABYTE = 1 << 20;
+    // how many times its tick budget an app can use before its running code gets stopped
+    private static final int BUDGET_OVERRUN_LIMIT = 10;
     public final MinecraftServer server;
     public CarpetScriptHost globalHost;
     public Map<String, CarpetScriptHost> modules;
@@ -64,6 +73,15 @@ public class CarpetScriptServer extends ScriptServer
     public long tickStart;
     public boolean stopAll;
     public int tickDepth;
+    // parsed code of loaded modules by their content, so apps and libraries don't get parsed again when reloaded without changes
+    private final Map<Module, Expression> parsedModules = new HashMap<>();
+    private boolean parsedWithOptimizations;
+    // app whose code is running on the server thread, charged for the time since runningSince
+    @Nullable
+    private CarpetScriptHost runningApp;
+    @Nullable
+    private CarpetScriptHost runningHost;
+    private long runningSince;
     private Set<String> holyMoly;
     public CarpetEventServer events;
 
@@ -227,6 +245,68 @@ public class CarpetScriptServer extends ScriptServer
         return moduleNames;
     }
 
+    /**
+     * @return expression for the code of the module, parsed already if the same code was loaded before
+     */
+    public CarpetExpression expressionFor(Module module, CommandSourceStack source, BlockPos origin)
+    {
+        boolean optimizations = Vanilla.ScriptServer_scriptOptimizations(server);
+        synchronized (parsedModules)
+        {
+            if (optimizations != parsedWithOptimizations)
+            {
+                parsedModules.clear();
+                parsedWithOptimizations = optimizations;
+            }
+            Expression parsed = parsedModules.get(module);
+            if (parsed != null)
+            {
+                return new CarpetExpression(parsed, source, origin);
+            }
+            CarpetExpression expression = new CarpetExpression(module, module.code(), source, origin);
+            expression.getExpr().asATextSource();
+            // previous versions of the module won't be loaded again
+            parsedModules.keySet().removeIf(m -> m.name().equals(module.name()) && m.library() == module.library());
+            parsedModules.put(module, expression.getExpr());
+            return expression;
+        }
+    }
+
+    /**
+     * Parses the module and the libraries it imports by name, so syntax errors in any of them show up before anything
+     * gets unloaded
+     */
+    private void parseWithImports(Module module, CarpetScriptHost host, CommandSourceStack source, Set<Module> parsed)
+    {
+        if (!parsed.add(module))
+        {
+            return;
+        }
+        CarpetExpression expression = expressionFor(module, source, BlockPos.ZERO);
+        expression.parse(host);
+        for (String name : expression.getExpr().getImports())
+        {
+            Module library = getModule(name, true);
+            if (library == null)
+            {
+                throw new CarpetExpressionException("Unable to locate package: " + name, null);
+            }
+            parseWithImports(library, host, source, parsed);
+        }
+    }
+
+    /**
+     * Drops parsed code of modules that no loaded app uses anymore
+     */
+    private void evictParsedModules()
+    {
+        Set<Module> used = modules.values().stream().flatMap(ScriptHost::loadedModules).collect(Collectors.toSet());
+        synchronized (parsedModules)
+        {
+            parsedModules.keySet().retainAll(used);
+        }
+    }
+
     public CarpetScriptHost getAppHostByName(String name)
     {
         return name == null ? globalHost : modules.get(name);
@@ -234,6 +314,16 @@ public class CarpetScriptServer extends ScriptServer
 
     public boolean addScriptHost(CommandSourceStack source, String name, @Nullable Predicate<CommandSourceStack> commandValidator,
                                  boolean perPlayer, boolean autoload, boolean isRuleApp, AppStoreManager.StoreNode installer)
+    {
+        return addScriptHost(source, name, commandValidator, perPlayer, autoload, isRuleApp, installer, null);
+    }
+
+    /**
+     * @param unloadedHost instance of the app unloaded already for a full reload, to keep the globals of if the app asks for it
+     */
+    private boolean addScriptHost(CommandSourceStack source, String name, @Nullable Predicate<CommandSourceStack> commandValidator,
+                                  boolean perPlayer, boolean autoload, boolean isRuleApp, AppStoreManager.StoreNode installer,
+                                  @Nullable CarpetScriptHost unloadedHost)
     {
         Runnable token = Carpet.startProfilerSection("Scarpet load");
         if (commandValidator == null)
@@ -242,15 +332,10 @@ public class CarpetScriptServer extends ScriptServer
         }
         long start = System.nanoTime();
         name = name.toLowerCase(Locale.ROOT);
-        boolean reload = false;
-        if (modules.containsKey(name))
+        CarpetScriptHost previousHost = modules.get(name);
+        if (previousHost != null && isRuleApp)
         {
-            if (isRuleApp)
-            {
-                return false;
-            }
-            removeScriptHost(source, name, false, isRuleApp);
-            reload = true;
+            return false;
         }
         Module module = isRuleApp ? getRuleModule(name) : getModule(name, false);
         if (module == null)
@@ -258,6 +343,21 @@ public class CarpetScriptServer extends ScriptServer
             Carpet.Messenger_message(source, "r Failed to add " + name + " app: App not found");
             return false;
         }
+        boolean reload = previousHost != null;
+        if (reload)
+        {
+            // code that doesn't parse doesn't take down the running version of the app
+            try
+            {
+                parseWithImports(module, previousHost, source, new HashSet<>());
+            }
+            catch (CarpetExpressionException e)
+            {
+                Carpet.Messenger_message(source, "r Failed to reload " + name + " app, keeping the running one: " + e.getMessage());
+                return false;
+            }
+            unloadScriptHost(source, name, false, isRuleApp);
+        }
         CarpetScriptHost newHost;
         try
         {
@@ -268,12 +368,21 @@ public class CarpetScriptServer extends ScriptServer
             Carpet.Messenger_message(source, "r Failed to add " + name + " app" + (e.getMessage() == null ? "" : ": " + e.getMessage()));
             return false;
         }
+        CarpetScriptHost replacedHost = reload ? previousHost : unloadedHost;
+        if (replacedHost != null && newHost.keepGlobalsOnReload)
+        {
+            newHost.keepGlobalsOf(replacedHost);
+        }
 
         modules.put(name, newHost);
         if (!isRuleApp)
         {
             unloadableModules.add(name);
         }
+        if (reload)
+        {
+            evictParsedModules();
+        }
 
         if (autoload && !newHost.persistenceRequired)
         {
@@ -340,6 +449,19 @@ public class CarpetScriptServer extends ScriptServer
 
 
     public boolean removeScriptHost(CommandSourceStack source, String name, boolean notifySource, boolean isRuleApp)
+    {
+        boolean removed = unloadScriptHost(source, name, notifySource, isRuleApp);
+        if (removed)
+        {
+            evictParsedModules();
+        }
+        return removed;
+    }
+
+    /**
+     * Unloads the app, keeping the parsed code of its modules for the reload to follow
+     */
+    private boolean unloadScriptHost(CommandSourceStack source, String name, boolean notifySource, boolean isRuleApp)
     {
         name = name.toLowerCase(Locale.ROOT);
         if (!modules.containsKey(name) || (!isRuleApp && !unloadableModules.contains(name)))
@@ -411,9 +533,157 @@ public class CarpetScriptServer extends ScriptServer
         {
             host.tick();
         }
+        if (server.getTickCount() % 100 == 0)
+        {
+            checkAppMemory();
+        }
+        for (CarpetScriptHost host : modules.values())
+        {
+            host.lastTickNanos = host.tickNanos;
+            host.averageTickNanos += (host.tickNanos - host.averageTickNanos) / 100;
+            host.peakTickNanos = Math.max(host.peakTickNanos, host.tickNanos);
+            host.tickNanos = 0;
+        }
         token.run();
     }
 
+    /**
+     * @return time in nanoseconds the app can spend on the server thread each tick, 0 if it is not limited
+     */
+    public long tickBudget(CarpetScriptHost app)
+    {
+        long budget = Vanilla.ScriptServer_appTickBudget(server) * 1000000L;
+        if (app.tickBudget > 0)
+        {
+            long appBudget = (long) (app.tickBudget * 1000000L);
+            budget = budget == 0 ? appBudget : Math.min(budget, appBudget);
+        }
+        return app.isDefaultApp() ? 0 : budget;
+    }
+
+    /**
+     * @return whether the app used up its time budget already this tick, so its scheduled calls can wait for the next one
+     */
+    public boolean isOverBudget(CarpetScriptHost host)
+    {
+        CarpetScriptHost app = host.appHost();
+        long budget = tickBudget(app);
+        return budget > 0 && app.tickNanos > budget;
+    }
+
+    /**
+     * Runs a call of the app, charging the time spent on the server thread to the app rather than to any app
+     * that caused the call, and stopping it once the app used {@link #BUDGET_OVERRUN_LIMIT} times its budget this tick
+     */
+    public Value runTimed(CarpetScriptHost host, Supplier<Value> call)
+    {
+        if (!server.isSameThread())
+        {
+            return call.get();
+        }
+        CarpetScriptHost app = host.appHost();
+        CarpetScriptHost caller = runningApp;
+        CarpetScriptHost callerHost = runningHost;
+        long start = System.nanoTime();
+        if (caller != null)
+        {
+            caller.tickNanos += start - runningSince;
+        }
+        runningApp = app;
+        runningHost = host;
+        runningSince = start;
+        long outerDeadline = host.deadline;
+        long budget = tickBudget(app);
+        if (budget > 0 && outerDeadline == 0)
+        {
+            host.deadline = start + Math.max(1, BUDGET_OVERRUN_LIMIT * budget - app.tickNanos);
+        }
+        try
+        {
+            return call.get();
+        }
+        catch (RuntimeException e)
+        {
+            if (host.deadline != 0 && outerDeadline == 0 && System.nanoTime() > host.deadline)
+            {
+                app.stoppedCalls++;
+            }
+            throw e;
+        }
+        finally
+        {
+            long end = System.nanoTime();
+            app.tickNanos += end - runningSince;
+            host.deadline = outerDeadline;
+            // the calling app doesn't run out of time while waiting for this one
+            if (callerHost != null && callerHost != host && callerHost.deadline != 0)
+            {
+                callerHost.deadline += end - start;
+            }
+            runningApp = caller;
+            runningHost = callerHost;
+            runningSince = end;
+        }
+    }
+
+    /**
+     * Warns owners of apps holding more values than {@code scriptsAppMemoryWarning} allows,
+     * and unloads apps going over {@code scriptsAppMemoryLimit} or the lower limit they set for themselves
+     */
+    private void checkAppMemory()
+    {
+        long warning = Vanilla.ScriptServer_appMemoryWarning(server) * MEGABYTE;
+        long globalLimit = Vanilla.ScriptServer_appMemoryLimit(server) * MEGABYTE;
+        for (CarpetScriptHost host : new ArrayList<>(modules.values()))
+        {
+            long limit = globalLimit;
+            if (host.memoryLimit > 0)
+            {
+                long appLimit = (long) (host.memoryLimit * MEGABYTE);
+                limit = limit == 0 ? appLimit : Math.min(limit, appLimit);
+            }
+            if (warning == 0 && limit == 0)
+            {
+                continue;
+            }
+            MemoryEstimate estimate = new MemoryEstimate(limit > 0 ? limit : warning);
+            try
+            {
+                host.estimateMemory(estimate);
+            }
+            catch (ConcurrentModificationException ignored)
+            {
+                continue; // a task changed the values while they were counted, next check will tell
+            }
+            String name = host.getName();
+            if (limit > 0 && estimate.exceeded())
+            {
+                LOG.warn("App " + name + " holds more than " + limit / MEGABYTE + "MB of values, unloading it");
+                if (host.responsibleSource != null)
+                {
+                    Carpet.Messenger_message(host.responsibleSource, "r App ", "rb " + name, "r  holds more than " + limit / MEGABYTE + "MB of values and got unloaded");
+                }
+                removeScriptHost(server.createCommandSourceStack(), name, false, !unloadableModules.contains(name));
+            }
+            else if (warning > 0 && estimate.bytes() > warning)
+            {
+                if (!host.memoryWarned)
+                {
+                    host.memoryWarned = true;
+                    LOG.warn("App " + name + " holds about " + estimate.bytes() / MEGABYTE + "MB of values");
+                    if (host.responsibleSource != null)
+                    {
+                        Carpet.Messenger_message(host.responsibleSource, "y App ", "yb " + name, "y  holds about " + estimate.bytes() / MEGABYTE + "MB of values");
+                    }
+                }
+            }
+            else
+            {
+                host.memoryWarned = false;
+            }
+        }
+    }
+
     public void onClose()
     {
         CarpetEventServer.Event.SHUTDOWN.onTick(server);
@@ -458,11 +728,11 @@ public class CarpetScriptServer extends ScriptServer
     }
 
     private record TransferData(boolean perUser, Predicate<CommandSourceStack> commandValidator,
-                                boolean isRuleApp)
+                                boolean isRuleApp, CarpetScriptHost host)
     {
         private TransferData(CarpetScriptHost host)
         {
-            this(host.perUser, host.commandValidator, host.isRuleApp);
+            this(host.perUser, host.commandValidator, host.isRuleApp, host);
         }
     }
 
@@ -470,10 +740,11 @@ public class CarpetScriptServer extends ScriptServer
     {
         Map<String, TransferData> apps = new HashMap<>();
         modules.forEach((s, h) -> apps.put(s, new TransferData(h)));
-        apps.keySet().forEach(s -> removeScriptHost(server.createCommandSourceStack(), s, false, false));
+        apps.keySet().forEach(s -> unloadScriptHost(server.createCommandSourceStack(), s, false, false));
         CarpetEventServer.Event.clearAllBuiltinEvents();
         init();
-        apps.forEach((s, data) -> addScriptHost(server.createCommandSourceStack(), s, data.commandValidator, data.perUser, false, data.isRuleApp, null));
+        apps.forEach((s, data) -> addScriptHost(server.createCommandSourceStack(), s, data.commandValidator, data.perUser, false, data.isRuleApp, null, data.host));
+        evictParsedModules();
     }
 
     public void reAddCommands()
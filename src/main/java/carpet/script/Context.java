@@ -4,6 +4,7 @@ import carpet.script.exception.InternalExpressionException;
 import carpet.script.value.ThreadValue;
 import carpet.script.value.Value;
 
+import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -27,12 +28,18 @@ public class Context
     public static final Type LVALUE = Type.LVALUE;
     public static final Type MAPDEF = Type.MAPDEF;
 
+    // upper bound of the number of variables set by initialize(), to size new frames
+    private static final int SPECIAL_VARIABLES = 6;
+
     public Map<String, LazyValue> variables = new HashMap<>();
 
     public final ScriptHost host;
 
     private ThreadValue threadContext = null;
 
+    // frames of functions entered through trampoline(), which hand their tail calls back to it
+    private boolean trampolined = false;
+
     public Context(ScriptHost host)
     {
         this.host = host;
@@ -77,6 +84,24 @@ public class Context
         return ctx;
     }
 
+    /**
+     * Creates a new call frame with the given variables set, sized to take {@code extraVariables} more without growing
+     *
+     * @param frame variables to set in the new frame, like captured outer variables, can be {@code null}
+     */
+    public Context recreate(@Nullable Map<String, LazyValue> frame, int extraVariables)
+    {
+        Context ctx = duplicate();
+        ctx.threadContext = threadContext;
+        ctx.variables = HashMap.newHashMap(SPECIAL_VARIABLES + extraVariables + (frame == null ? 0 : frame.size()));
+        ctx.initialize();
+        if (frame != null)
+        {
+            ctx.variables.putAll(frame);
+        }
+        return ctx;
+    }
+
     public void setThreadContext(ThreadValue callingThread)
     {
         this.threadContext = callingThread;
@@ -87,6 +112,20 @@ public class Context
         return threadContext;
     }
 
+    /**
+     * Trampolined frames are not inherited, only the function called directly by the trampoline
+     * returns its tail calls instead of making them
+     */
+    public void setTrampolined(boolean trampolined)
+    {
+        this.trampolined = trampolined;
+    }
+
+    public boolean isTrampolined()
+    {
+        return trampolined;
+    }
+
     protected void initialize()
     {
         //special variables for second order functions so we don't need to check them all the time
@@ -184,6 +223,13 @@ public class Context
             return null;
         }
 
+        @Override
+        public Context recreate(@Nullable Map<String, LazyValue> frame, int extraVariables)
+        {
+            badProgrammer();
+            return null;
+        }
+
         @Override
         protected void initialize()
         {
@@ -30,6 +30,7 @@ import carpet.script.language.Sys;
 import carpet.script.language.Threading;
 import carpet.script.value.FunctionValue;
 import carpet.script.value.NumericValue;
+import carpet.script.value.SignalValue;
 import carpet.script.value.StringValue;
 import carpet.script.value.Value;
 import it.unimi.dsi.fastutil.Stack;
@@ -37,11 +38,14 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
+import javax.annotation.Nullable;
+
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
@@ -90,6 +94,10 @@ public class Expression
      * Cached AST (Abstract Syntax Tree) (root) of the expression
      */
     private LazyValue ast = null;
+    /**
+     * Modules the code imports with a constant name, known once parsed
+     */
+    private final List<String> imports = new ArrayList<>();
 
     /**
      * script specific operatos and built-in functions
@@ -317,11 +325,17 @@ public class Expression
 
             @Override
             public LazyValue lazyEval(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<LazyValue> lv)
+            {
+                Value res = evalValue(c, type, e, t, lv);
+                return (cc, tt) -> res;
+            }
+
+            @Override
+            public Value evalValue(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<LazyValue> lv)
             {
                 try
                 {
-                    Value res = fun.apply(c, type, e, t, unpackArgs(lv, c, Context.NONE));
-                    return (cc, tt) -> res;
+                    return fun.apply(c, type, e, t, unpackArgs(lv, c, Context.NONE));
                 }
                 catch (RuntimeException exc)
                 {
@@ -677,12 +691,18 @@ public class Expression
 
             @Override
             public LazyValue lazyEval(Context c, Context.Type i, Expression e, Tokenizer.Token t, List<LazyValue> lazyParams)
+            {
+                Value ret = evalValue(c, i, e, t, lazyParams);
+                return (cc, tt) -> ret;
+            }
+
+            @Override
+            public Value evalValue(Context c, Context.Type i, Expression e, Tokenizer.Token t, List<LazyValue> lazyParams)
             {
                 ILazyFunction.checkInterrupts();
                 try
                 {
-                    Value ret = fun.apply(c, i, unpackArgs(lazyParams, c, Context.NONE));
-                    return (cc, tt) -> ret;
+                    return fun.apply(c, i, unpackArgs(lazyParams, c, Context.NONE));
                 }
                 catch (RuntimeException exc)
                 {
@@ -716,11 +736,17 @@ public class Expression
 
             @Override
             public LazyValue lazyEval(Context c, Context.Type i, Expression e, Tokenizer.Token t, List<LazyValue> lazyParams)
+            {
+                Value ret = evalValue(c, i, e, t, lazyParams);
+                return (cc, tt) -> ret;
+            }
+
+            @Override
+            public Value evalValue(Context c, Context.Type i, Expression e, Tokenizer.Token t, List<LazyValue> lazyParams)
             {
                 try
                 {
-                    Value ret = fun.apply(c, i, unpackArgs(lazyParams, c, reqType));
-                    return (cc, tt) -> ret;
+                    return fun.apply(c, i, unpackArgs(lazyParams, c, reqType));
                 }
                 catch (RuntimeException exc)
                 {
@@ -1018,6 +1044,25 @@ public class Expression
         }
     }
 
+    /**
+     * Builds the syntax tree ahead of the first evaluation
+     */
+    public void parse(Context c)
+    {
+        if (ast == null)
+        {
+            ast = getAST(c);
+        }
+    }
+
+    /**
+     * @return names of the modules the code imports with a constant name, empty until it is parsed
+     */
+    public List<String> getImports()
+    {
+        return imports;
+    }
+
     public Value eval(Context c)
     {
         if (ast == null)
@@ -1061,6 +1106,27 @@ public class Expression
         public List<ExpressionNode> args;
         public Tokenizer.Token token;
         public List<Tokenizer.Token> range;
+        /**
+         * Function call whose value is returned by the enclosing function body as is, see {@link FunctionValue#tailCall}
+         */
+        public boolean tailCall;
+        /**
+         * Tail call to the function the body belongs to, by name
+         */
+        public boolean selfCall;
+        /**
+         * 'return', 'break' or 'continue' whose value reaches the function or loop it controls, see {@link SignalValue}
+         */
+        public boolean signal;
+        /**
+         * Statement sequence passing on signals of its statements
+         */
+        public boolean forwardsSignals;
+        /**
+         * 'map' or 'filter' whose list goes straight into another loop, so it is evaluated with {@link Context#ITERATOR}
+         * and hands out its elements as they are needed instead of collecting them into a list
+         */
+        public boolean streamed;
         /**
          * The Value representation of the left parenthesis, used for parsing
          * varying numbers of function parameters.
@@ -1145,7 +1211,7 @@ public class Expression
                     }
                     List<LazyValue> params = p.stream().map(n -> n.op).collect(Collectors.toList());
                     nodeStack.push(new ExpressionNode(
-                            (c, t) -> f.lazyEval(c, t, this, token, params).evalValue(c, t),
+                            (c, t) -> f.evalValue(c, t, this, token, params),
                             p, token
                     ));
                 }
@@ -1165,7 +1231,7 @@ public class Expression
                 }
                 case STRINGPARAM -> {
                     token.morph(Tokenizer.Token.TokenType.CONSTANT, token.surface);
-                    nodeStack.push(ExpressionNode.ofConstant(new StringValue(token.surface), token));
+                    nodeStack.push(ExpressionNode.ofConstant(StringValue.intern(token.surface), token));
                 }
                 case HEX_LITERAL -> {
                     Value hexNumber;
@@ -1191,12 +1257,14 @@ public class Expression
         List<Tokenizer.Token> rpn = shuntingYard(context);
         validate(context, rpn);
         ExpressionNode root = RPNToParseTree(rpn, context);
+        imports.clear();
+        collectImports(root);
+        Context optimizeOnlyContext = new Context.ContextForErrorReporting(context);
         if (!Vanilla.ScriptServer_scriptOptimizations(((CarpetScriptServer)context.scriptServer()).server))
         {
             return root.op;
         }
 
-        Context optimizeOnlyContext = new Context.ContextForErrorReporting(context);
         boolean scriptsDebugging = Vanilla.ScriptServer_scriptDebugging(((CarpetScriptServer)context.scriptServer()).server);
         if (scriptsDebugging)
         {
@@ -1248,9 +1316,175 @@ public class Expression
                 }
             }
         }
+        // after compacting, so removed tail returns expose their calls
+        markTailPositions(root, Context.Type.NONE, null, false, false, false);
         return extractOp(optimizeOnlyContext, root, Context.Type.NONE);
     }
 
+    /**
+     * Marks nodes whose value is handed over as is to the function or loop whose body they are in.
+     * Function calls in tail position of function bodies become tail calls (see {@link FunctionValue#tailCall}),
+     * and 'return', 'break' and 'continue' whose value reaches the function or loop they control return
+     * a {@link SignalValue} instead of throwing, while statement sequences on the way pass signals on.
+     * Values reach their function or loop from the body itself, from any statement of a sequence, from the
+     * branches of an 'if' (not conditions), and, for calls, from the argument of a 'return' that is reached that way.
+     * Nested function definitions are bodies of their own. Statements in any other place still throw, and calls there
+     * aren't tail calls, since a 'try', loop or call around them still has work to do with what they return or throw.
+     * Also marks 'map' and 'filter' calls given as the list of another loop as {@link ExpressionNode#streamed}.
+     * Only runs with script optimizations enabled, unoptimized code evaluates everything eagerly, as parsed.
+     *
+     * @param function name of the function whose body the node is in, or {@code null} outside of function bodies
+     * @param tail     whether the value of the node is returned by the function as is
+     * @param returns  whether the value of the node reaches the function, as is or through statement sequences
+     * @param loops    whether the value of the node reaches the loop whose body it is in
+     * @return whether anything was marked
+     */
+    private boolean markTailPositions(ExpressionNode node, Context.Type expectedType, @Nullable String function, boolean tail, boolean returns, boolean loops)
+    {
+        Tokenizer.Token.TokenType token = node.token.type;
+        if (!token.isFunctional() || node.op instanceof LazyValue.ContextFreeLazyValue)
+        {
+            return false;
+        }
+        String symbol = node.token.surface;
+        Fluff.EvalNode operation = ((token == Tokenizer.Token.TokenType.FUNCTION) ? functions : operators).get(symbol);
+        Context.Type requestedType = operation.staticType(expectedType);
+        boolean marked = false;
+        if (expectedType != Context.Type.MAPDEF && symbol.equals("->") && node.args.size() == 2)
+        {
+            // signature is not evaluated as calls, only the body is
+            return markTailPositions(node.args.get(1), requestedType, definedName(node.args.get(0)), true, true, false);
+        }
+        boolean sequence = symbol.equals(";") || symbol.equals("then");
+        if (sequence && (returns || loops))
+        {
+            node.forwardsSignals = true;
+            marked = true;
+        }
+        if (token == Tokenizer.Token.TokenType.FUNCTION)
+        {
+            switch (symbol)
+            {
+                case "call" ->
+                {
+                    if (function != null && tail && !node.args.isEmpty())
+                    {
+                        String callee = constantName(node.args.get(0));
+                        node.tailCall = true;
+                        node.selfCall = callee != null && callee.equals(function) && !function.equals("_");
+                        marked = true;
+                    }
+                }
+                case "return" ->
+                {
+                    if (function != null && returns && node.args.size() <= 1)
+                    {
+                        node.signal = true;
+                        marked = true;
+                    }
+                }
+                case "break", "continue" ->
+                {
+                    if (loops && node.args.size() <= 1)
+                    {
+                        node.signal = true;
+                        marked = true;
+                    }
+                }
+            }
+        }
+        int loopBody = token == Tokenizer.Token.TokenType.FUNCTION ? loopBodyIndex(symbol, node.args.size()) : -1;
+        if (token == Tokenizer.Token.TokenType.FUNCTION && takesStream(symbol, node.args.size()) && isStreamable(node.args.get(0)))
+        {
+            node.args.get(0).streamed = true;
+            marked = true;
+        }
+        int last = node.args.size() - 1;
+        for (int i = 0; i <= last; i++)
+        {
+            // branches, not conditions, including the trailing else
+            boolean branch = symbol.equals("if") && (i % 2 == 1 || i == last);
+            boolean argTail = tail && (branch || sequence && i == last) || symbol.equals("return") && function != null && returns && token == Tokenizer.Token.TokenType.FUNCTION;
+            boolean passed = branch || sequence;
+            if (markTailPositions(node.args.get(i), requestedType, function, argTail, returns && passed, loops && passed || i == loopBody))
+            {
+                marked = true;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * @return whether the function only iterates once over the list in its first argument
+     */
+    private static boolean takesStream(String function, int arguments)
+    {
+        return switch (function)
+        {
+            case "map", "filter", "first", "all", "for" -> arguments == 2;
+            case "reduce" -> arguments == 3;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return whether the node is a 'map' or 'filter' call that can hand out its elements one by one
+     */
+    private static boolean isStreamable(ExpressionNode node)
+    {
+        return node.token.type == Tokenizer.Token.TokenType.FUNCTION
+                && (node.token.surface.equals("map") || node.token.surface.equals("filter"))
+                && node.args.size() == 2
+                && !(node.op instanceof LazyValue.Constant);
+    }
+
+    /**
+     * @return index of the argument evaluated as the body of a loop that handles 'break' and 'continue', or -1
+     */
+    private static int loopBodyIndex(String function, int arguments)
+    {
+        return switch (function)
+        {
+            case "loop", "map", "filter", "first", "for", "reduce" -> 1;
+            case "while" -> arguments - 1;
+            case "c_for" -> 3;
+            default -> -1;
+        };
+    }
+
+    @Nullable
+    private static String definedName(ExpressionNode signature)
+    {
+        if (signature.token.type == Tokenizer.Token.TokenType.FUNCTION && signature.token.surface.equals("call") && !signature.args.isEmpty())
+        {
+            String name = constantName(signature.args.get(0));
+            if (name != null)
+            {
+                return name;
+            }
+        }
+        return "_";
+    }
+
+    private void collectImports(ExpressionNode node)
+    {
+        if (node.token.type == Tokenizer.Token.TokenType.FUNCTION && node.token.surface.equals("import") && !node.args.isEmpty())
+        {
+            String name = constantName(node.args.get(0));
+            if (name != null)
+            {
+                imports.add(name);
+            }
+        }
+        node.args.forEach(this::collectImports);
+    }
+
+    @Nullable
+    private static String constantName(ExpressionNode node)
+    {
+        return node.token.type.isConstant() && node.op instanceof LazyValue.Constant constant ? constant.get().getString() : null;
+    }
+
     private int treeSize(ExpressionNode node)
     {
         return node.op instanceof LazyValue.ContextFreeLazyValue ? 1 : node.args.stream().mapToInt(this::treeSize).sum() + 1;
@@ -1501,6 +1735,10 @@ public class Expression
                 Context.Type requestedType = op.staticType(expectedType);
                 LazyValue arg = extractOp(ctx, node.args.get(0), requestedType);
                 LazyValue arh = extractOp(ctx, node.args.get(1), requestedType);
+                if (node.forwardsSignals)
+                {
+                    return forwardingSequence(List.of(arg, arh));
+                }
                 return (c, t) -> op.lazyEval(c, t, this, token, arg, arh).evalValue(c, t);
             }
             case VARIABLE:
@@ -1510,7 +1748,26 @@ public class Expression
                 ILazyFunction f = functions.get(token.surface);
                 Context.Type requestedType = f.staticType(expectedType);
                 List<LazyValue> params = node.args.stream().map(n -> extractOp(ctx, n, requestedType)).collect(Collectors.toList());
-                return (c, t) -> f.lazyEval(c, t, this, token, params).evalValue(c, t);
+                if (node.tailCall)
+                {
+                    boolean self = node.selfCall;
+                    return (c, t) -> FunctionValue.tailCall(c, t, module, params, self);
+                }
+                if (node.signal)
+                {
+                    SignalValue.Kind kind = SignalValue.Kind.valueOf(token.surface.toUpperCase(Locale.ROOT));
+                    LazyValue arg = params.isEmpty() ? null : params.get(0);
+                    return (c, t) -> SignalValue.of(kind, arg == null ? null : arg.evalValue(c, Context.NONE));
+                }
+                if (node.forwardsSignals)
+                {
+                    return forwardingSequence(params);
+                }
+                if (node.streamed)
+                {
+                    return (c, t) -> f.evalValue(c, Context.ITERATOR, this, token, params);
+                }
+                return (c, t) -> f.evalValue(c, t, this, token, params);
             }
             case CONSTANT:
                 return node.op;
@@ -1520,6 +1777,25 @@ public class Expression
         }
     }
 
+    /**
+     * Statement sequence like ';' and 'then' that stops at the first statement returning a {@link SignalValue} and returns it
+     */
+    private static LazyValue forwardingSequence(List<LazyValue> statements)
+    {
+        int last = statements.size() - 1;
+        return (c, t) -> {
+            for (int i = 0; i < last; i++)
+            {
+                Value value = statements.get(i).evalValue(c, Context.VOID);
+                if (value instanceof SignalValue)
+                {
+                    return value;
+                }
+            }
+            return statements.get(last).evalValue(c, t);
+        };
+    }
+
     private void validate(Context c, List<Tokenizer.Token> rpn)
     {
         /*-
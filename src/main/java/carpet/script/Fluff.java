@@ -72,6 +72,15 @@ public abstract class Fluff
 
         LazyValue lazyEval(Context c, Context.Type type, Expression expr, Tokenizer.Token token, List<LazyValue> lazyParams);
 
+        /**
+         * Evaluates the function call right away. Functions that always compute their result eagerly can override it
+         * to skip wrapping the result in a {@link LazyValue}
+         */
+        default Value evalValue(Context c, Context.Type type, Expression expr, Tokenizer.Token token, List<LazyValue> lazyParams)
+        {
+            return lazyEval(c, type, expr, token, lazyParams).evalValue(c, type);
+        }
+
         static void checkInterrupts()
         {
             if (ScriptHost.mainThread != Thread.currentThread() && Thread.currentThread().isInterrupted())
@@ -223,6 +232,21 @@ public abstract class Fluff
                 }
             };
         }
+
+        @Override
+        public Value evalValue(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<LazyValue> lazyParams)
+        {
+            // same as evaluating the result of lazyEval right away, without creating it first
+            ILazyFunction.checkInterrupts();
+            try
+            {
+                return eval(unpackArgs(lazyParams, c, Context.Type.NONE));
+            }
+            catch (RuntimeException exc)
+            {
+                throw Expression.handleCodeException(c, exc, e, t);
+            }
+        }
     }
 
     public abstract static class AbstractLazyOperator implements ILazyOperator
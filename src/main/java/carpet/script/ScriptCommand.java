@@ -3,6 +3,7 @@ package carpet.script;
 import carpet.script.external.Carpet;
 import carpet.script.external.Vanilla;
 import carpet.script.utils.AppStoreManager;
+import carpet.script.utils.MemoryEstimate;
 import carpet.script.exception.CarpetExpressionException;
 import carpet.script.value.FunctionValue;
 import carpet.script.value.Value;
@@ -20,8 +21,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
@@ -358,10 +361,14 @@ public class ScriptCommand
                             boolean success = ss(cc).uninstallApp(cc.getSource(), StringArgumentType.getString(cc, "app"));
                             return success ? 1 : 0;
                         }));
+        LiteralArgumentBuilder<CommandSourceStack> m = literal("memory").requires(Vanilla::ServerPlayer_canScriptACE).
+                executes(ScriptCommand::listMemory);
+        LiteralArgumentBuilder<CommandSourceStack> p = literal("apps").requires(Vanilla::ServerPlayer_canScriptACE).
+                executes(ScriptCommand::listAppTimes);
 
         dispatcher.register(literal("script").
                 requires(Vanilla::ServerPlayer_canScriptGeneral).
-                then(b).then(u).then(o).then(l).then(s).then(c).then(h).then(i).then(e).then(t).then(a).then(f).then(q).then(d).then(r));
+                then(b).then(u).then(o).then(l).then(s).then(c).then(h).then(i).then(e).then(t).then(a).then(f).then(q).then(d).then(r).then(m).then(p));
         dispatcher.register(literal("script").
                 requires(Vanilla::ServerPlayer_canScriptGeneral).
                 then(literal("in").
@@ -457,6 +464,52 @@ public class ScriptCommand
         return 1;
     }
 
+    private static int listMemory(CommandContext<CommandSourceStack> context)
+    {
+        CommandSourceStack source = context.getSource();
+        CarpetScriptServer scriptServer = ss(context);
+        Carpet.Messenger_message(source, "lb Approximate memory held by apps:");
+        for (String name : scriptServer.modules.keySet().stream().filter(Objects::nonNull).sorted().toList())
+        {
+            CarpetScriptHost host = scriptServer.modules.get(name);
+            MemoryEstimate estimate = new MemoryEstimate();
+            host.estimateMemory(estimate);
+            String limit = host.memoryLimit > 0 ? String.format(Locale.ROOT, " (limit %.0f MB)", host.memoryLimit) : "";
+            Carpet.Messenger_message(source, "wb " + name + ": ", String.format(Locale.ROOT, "w %.2f MB", estimate.bytes() / 1048576.0) + limit);
+        }
+        return 1;
+    }
+
+    private static int listAppTimes(CommandContext<CommandSourceStack> context)
+    {
+        CommandSourceStack source = context.getSource();
+        CarpetScriptServer scriptServer = ss(context);
+        Carpet.Messenger_message(source, "lb Time apps spend on the server thread per tick:");
+        List<CarpetScriptHost> apps = scriptServer.modules.values().stream().
+                sorted(Comparator.comparingDouble((CarpetScriptHost app) -> app.averageTickNanos).reversed()).toList();
+        for (CarpetScriptHost app : apps)
+        {
+            List<Object> line = new ArrayList<>();
+            line.add("wb " + app.getName() + ": ");
+            line.add(String.format(Locale.ROOT, "w avg %.2f ms, last %.2f ms, peak %.2f ms", app.averageTickNanos / 1e6, app.lastTickNanos / 1e6, app.peakTickNanos / 1e6));
+            long budget = scriptServer.tickBudget(app);
+            if (budget > 0)
+            {
+                line.add(String.format(Locale.ROOT, "g , budget %.2f ms", budget / 1e6));
+            }
+            if (app.deferredCalls > 0)
+            {
+                line.add("y , " + app.deferredCalls + " scheduled calls deferred");
+            }
+            if (app.stoppedCalls > 0)
+            {
+                line.add("r , " + app.stoppedCalls + " calls stopped");
+            }
+            Carpet.Messenger_message(source, line.toArray());
+        }
+        return 1;
+    }
+
     public static int handleCall(CommandSourceStack source, CarpetScriptHost host, Supplier<Value> call)
     {
         try
@@ -3,6 +3,7 @@ package carpet.script;
 import carpet.script.exception.ExpressionException;
 import carpet.script.exception.IntegrityException;
 import carpet.script.exception.InternalExpressionException;
+import carpet.script.utils.MemoryEstimate;
 import carpet.script.value.FunctionValue;
 import carpet.script.value.Value;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -17,6 +18,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -117,6 +119,10 @@ public abstract class ScriptHost
     protected boolean perUser;
     public String user;
 
+    // nanoTime after which code running on the main thread gets stopped, 0 when there is no time limit
+    long deadline;
+    private int checkpoints;
+
     public String getName()
     {
         return main == null ? null : main.name();
@@ -158,6 +164,14 @@ public abstract class ScriptHost
         mainThread = Thread.currentThread();
     }
 
+    /**
+     * @return modules loaded by the app, its own and the imported ones, including those of its player instances
+     */
+    public Stream<Module> loadedModules()
+    {
+        return Stream.concat(modules.values().stream(), userHosts.values().stream().flatMap(ScriptHost::loadedModules)).filter(Objects::nonNull);
+    }
+
     void initializeModuleGlobals(ModuleData md)
     {
     }
@@ -419,6 +433,61 @@ public abstract class ScriptHost
         getModuleData(module).globalVariables.put(name, lv);
     }
 
+    /**
+     * Carries global variables over from the previous instance of a reloaded app, over the values the new code set.
+     * Variables of modules the app doesn't import anymore are dropped.
+     */
+    public void keepGlobalsOf(ScriptHost previous)
+    {
+        for (Map.Entry<Module, ModuleData> entry : moduleData.entrySet())
+        {
+            if (entry.getKey() == null)
+            {
+                continue;
+            }
+            ModuleData previousData = previous.moduleData.get(previous.modules.get(entry.getKey().name()));
+            if (previousData != null)
+            {
+                entry.getValue().globalVariables.putAll(previousData.globalVariables);
+            }
+        }
+    }
+
+    /**
+     * Called on each loop iteration and function call, stopping code on the main thread once it runs past the deadline.
+     * Time is only looked up every 256 checkpoints, to keep tight loops cheap.
+     */
+    public void checkpoint()
+    {
+        if (deadline != 0 && (++checkpoints & 255) == 0 && Thread.currentThread() == mainThread && System.nanoTime() > deadline)
+        {
+            throw new InternalExpressionException("App " + getVisualName() + " ran over its time budget for the tick and got stopped");
+        }
+    }
+
+    /**
+     * Counts values held by the app: global variables of all its modules, variables captured by its functions
+     * and the same for all its player instances. Values only referenced by running tasks are not counted.
+     */
+    public void estimateMemory(MemoryEstimate estimate)
+    {
+        for (ModuleData data : moduleData.values())
+        {
+            for (LazyValue variable : data.globalVariables.values())
+            {
+                estimate.add(variable);
+            }
+            for (FunctionValue function : data.globalFunctions.values())
+            {
+                estimate.add(function);
+            }
+        }
+        for (ScriptHost userHost : userHosts.values())
+        {
+            userHost.estimateMemory(estimate);
+        }
+    }
+
     public Stream<String> globalVariableNames(Module module, Predicate<String> predicate)
     {
         return Stream.concat(Stream.concat(
@@ -7,6 +7,7 @@ import carpet.api.settings.RuleHelper;
 import carpet.api.settings.SettingsManager;
 import carpet.fakes.MinecraftServerInterface;
 import carpet.logging.HUDController;
+import carpet.logging.logHelpers.PacketCounter;
 import carpet.network.ServerNetworkHandler;
 import carpet.patches.EntityPlayerMPFake;
 import carpet.script.CarpetEventServer;
@@ -16,10 +17,15 @@ import carpet.script.CarpetScriptServer;
 import carpet.script.Module;
 import carpet.script.exception.InternalExpressionException;
 import carpet.script.exception.LoadException;
+import carpet.script.value.ListValue;
 import carpet.script.value.MapValue;
+import carpet.script.value.NumericValue;
 import carpet.script.value.StringValue;
+import carpet.script.value.Value;
+import carpet.script.value.ValueConversions;
 import carpet.utils.CarpetProfiler;
 import carpet.utils.Messenger;
+import carpet.utils.SpatialProfiler;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.loader.api.ModContainer;
@@ -28,19 +34,23 @@ import net.fabricmc.loader.api.Version;
 import net.fabricmc.loader.api.VersionParsingException;
 import net.fabricmc.loader.api.metadata.version.VersionPredicate;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.ChunkPos;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -79,6 +89,52 @@ public class Carpet
         return CarpetSettings.impendingFillSkipUpdates;
     }
 
+    public static Value getLagHotspots(boolean blockEntities)
+    {
+        List<Value> hotspots = new ArrayList<>();
+        for (SpatialProfiler.Hotspot hotspot : SpatialProfiler.top(blockEntities, 100))
+        {
+            Map<Value, Value> entry = new HashMap<>();
+            entry.put(StringValue.of("dimension"), ValueConversions.of(hotspot.dimension()));
+            if (blockEntities)
+            {
+                entry.put(StringValue.of("pos"), ValueConversions.of(BlockPos.of(hotspot.position())));
+            }
+            else
+            {
+                ChunkPos chunk = new ChunkPos(hotspot.position());
+                entry.put(StringValue.of("chunk"), ListValue.of(new NumericValue(chunk.x), new NumericValue(chunk.z)));
+            }
+            entry.put(StringValue.of("time"), new NumericValue(hotspot.msPerTick()));
+            entry.put(StringValue.of("error"), new NumericValue(hotspot.errorMsPerTick()));
+            entry.put(StringValue.of("ticks"), new NumericValue(hotspot.callsPerTick()));
+            hotspots.add(MapValue.wrap(entry));
+        }
+        return ListValue.wrap(hotspots);
+    }
+
+    public static Value getNetworkTraffic()
+    {
+        Map<Value, Value> traffic = trafficEntry(PacketCounter.lastSecond());
+        Map<Value, Value> types = new HashMap<>();
+        PacketCounter.lastSecondByType().forEach(t -> types.put(StringValue.of(t.name()), MapValue.wrap(trafficEntry(t))));
+        traffic.put(StringValue.of("types"), MapValue.wrap(types));
+        Map<Value, Value> players = new HashMap<>();
+        PacketCounter.lastSecondByConnection().forEach(t -> players.put(StringValue.of(t.name()), MapValue.wrap(trafficEntry(t))));
+        traffic.put(StringValue.of("players"), MapValue.wrap(players));
+        return MapValue.wrap(traffic);
+    }
+
+    private static Map<Value, Value> trafficEntry(PacketCounter.Traffic traffic)
+    {
+        Map<Value, Value> entry = new HashMap<>();
+        entry.put(StringValue.of("packets_in"), new NumericValue(traffic.packetsIn()));
+        entry.put(StringValue.of("bytes_in"), new NumericValue(traffic.bytesIn()));
+        entry.put(StringValue.of("packets_out"), new NumericValue(traffic.packetsOut()));
+        entry.put(StringValue.of("bytes_out"), new NumericValue(traffic.bytesOut()));
+        return entry;
+    }
+
     public static Runnable startProfilerSection(String name)
     {
         CarpetProfiler.ProfilerToken token = CarpetProfiler.start_section(null, name, CarpetProfiler.TYPE.GENERAL);
@@ -166,6 +222,11 @@ public class Carpet
         return null;
     }
 
+    public static Path getAppStoreCacheFolder()
+    {
+        return FabricLoader.getInstance().getConfigDir().resolve("carpet/appstore_cache");
+    }
+
     public static void addGlobalModules(final List<String> moduleNames, boolean includeBuiltIns) throws IOException
     {
         if (includeBuiltIns && (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT))
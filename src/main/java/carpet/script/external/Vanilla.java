@@ -333,6 +333,21 @@ public class Vanilla
         return CarpetSettings.scriptsDebugging;
     }
 
+    public static int ScriptServer_appMemoryWarning(MinecraftServer server)
+    {
+        return CarpetSettings.scriptsAppMemoryWarning;
+    }
+
+    public static int ScriptServer_appMemoryLimit(MinecraftServer server)
+    {
+        return CarpetSettings.scriptsAppMemoryLimit;
+    }
+
+    public static int ScriptServer_appTickBudget(MinecraftServer server)
+    {
+        return CarpetSettings.scriptsAppTickBudget;
+    }
+
     public static boolean ServerPlayer_canScriptACE(CommandSourceStack player)
     {
         return CommandHelper.canUseCommand(player, CarpetSettings.commandScriptACE);
@@ -13,6 +13,7 @@ import carpet.script.value.LContainerValue;
 import carpet.script.value.LazyListValue;
 import carpet.script.value.ListValue;
 import carpet.script.value.MapValue;
+import carpet.script.value.NumericList;
 import carpet.script.value.NumericValue;
 import carpet.script.value.StringValue;
 import carpet.script.value.Value;
@@ -96,12 +97,19 @@ public class DataStructures
 
         expression.addFunction("sort", lv ->
         {
-            List<Value> toSort = lv;
-            if (lv.size() == 1 && lv.get(0) instanceof final ListValue llv)
+            List<Value> items = lv.size() == 1 && lv.get(0) instanceof final ListValue llv ? llv.getItems() : lv;
+            // lists of numbers get sorted unboxed
+            NumericList toSort;
+            if (items instanceof final NumericList numbers)
             {
-                toSort = new ArrayList<>(llv.getItems());
+                toSort = numbers.copy();
             }
-            Collections.sort(toSort);
+            else
+            {
+                toSort = new NumericList(items.size());
+                toSort.addAll(items);
+            }
+            toSort.sort();
             return ListValue.wrap(toSort);
         });
 
@@ -13,6 +13,7 @@ import carpet.script.value.FunctionValue;
 import carpet.script.value.FunctionAnnotationValue;
 import carpet.script.value.ListValue;
 import carpet.script.value.StringValue;
+import carpet.script.value.TailCallValue;
 import carpet.script.value.Value;
 
 import java.util.ArrayList;
@@ -95,6 +96,19 @@ public class Functions
                 return (cc, tt) -> retval;
             }
 
+            @Override
+            public Value evalValue(Context c, Context.Type t, Expression expr, Tokenizer.Token tok, List<LazyValue> lv)
+            {
+                if (t == Context.SIGNATURE || lv.isEmpty())
+                {
+                    return lazyEval(c, t, expr, tok, lv).evalValue(c, t);
+                }
+                // plain function call, returns the result directly
+                List<Value> args = Fluff.AbstractFunction.unpackLazy(lv, c, Context.NONE);
+                FunctionArgument functionArgument = FunctionArgument.findIn(c, expression.module, args, 0, false, true);
+                return functionArgument.function.callValueInContext(c, t, functionArgument.args);
+            }
+
             @Override
             public boolean pure()
             {
@@ -115,6 +129,22 @@ public class Functions
         });
 
 
+        // runs mutually recursive functions in a loop: functions it calls return their tail calls to it instead of making them
+        expression.addContextFunction("trampoline", -1, (c, t, lv) ->
+        {
+            if (lv.isEmpty())
+            {
+                throw new InternalExpressionException("'trampoline' expects at least function to call");
+            }
+            FunctionArgument functionArgument = FunctionArgument.findIn(c, expression.module, lv, 0, false, true);
+            Value ret = functionArgument.function.callTrampolinedInContext(c, t, functionArgument.args);
+            while (ret instanceof final TailCallValue tailCall)
+            {
+                ret = tailCall.function.callTrampolinedInContext(tailCall.context, t, tailCall.args);
+            }
+            return ret;
+        });
+
         expression.addContextFunction("outer", 1, (c, t, lv) ->
         {
             if (t != Context.LOCALIZATION)
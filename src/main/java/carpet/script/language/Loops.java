@@ -7,13 +7,17 @@ import carpet.script.exception.BreakStatement;
 import carpet.script.exception.ContinueStatement;
 import carpet.script.exception.InternalExpressionException;
 import carpet.script.value.AbstractListValue;
+import carpet.script.value.LazyListValue;
 import carpet.script.value.ListValue;
+import carpet.script.value.SignalValue;
+import carpet.script.value.NumericList;
 import carpet.script.value.NumericValue;
 import carpet.script.value.Value;
 
-import java.util.ArrayList;
+import javax.annotation.Nullable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public class Loops
 {
@@ -61,20 +65,12 @@ public class Loops
                 c.setVariable("_", (cc, tt) -> new NumericValue(0).bindTo("_"));
                 while (condition.evalValue(c, Context.BOOLEAN).getBoolean())
                 {
-                    try
+                    c.host.checkpoint();
+                    Value result = SignalValue.evalLoopBody(expr, c, t);
+                    lastOne = SignalValue.loopValue(result, lastOne);
+                    if (SignalValue.breaksLoop(result))
                     {
-                        lastOne = expr.evalValue(c, t);
-                    }
-                    catch (BreakStatement | ContinueStatement stmt)
-                    {
-                        if (stmt.retval != null)
-                        {
-                            lastOne = stmt.retval;
-                        }
-                        if (stmt instanceof BreakStatement)
-                        {
-                            break;
-                        }
+                        break;
                     }
                     i++;
                     long seriously = i;
@@ -95,20 +91,12 @@ public class Loops
             c.setVariable("_", (cc, tt) -> new NumericValue(0).bindTo("_"));
             while (i < limit && condition.evalValue(c, Context.BOOLEAN).getBoolean())
             {
-                try
+                c.host.checkpoint();
+                Value result = SignalValue.evalLoopBody(expr, c, t);
+                lastOne = SignalValue.loopValue(result, lastOne);
+                if (SignalValue.breaksLoop(result))
                 {
-                    lastOne = expr.evalValue(c, t);
-                }
-                catch (BreakStatement | ContinueStatement stmt)
-                {
-                    if (stmt.retval != null)
-                    {
-                        lastOne = stmt.retval;
-                    }
-                    if (stmt instanceof BreakStatement)
-                    {
-                        break;
-                    }
+                    break;
                 }
                 i++;
                 long seriously = i;
@@ -131,22 +119,14 @@ public class Loops
             LazyValue defaultVal = c.getVariable("_");
             for (long i = 0; i < limit; i++)
             {
+                c.host.checkpoint();
                 long whyYouAsk = i;
                 c.setVariable("_", (cc, tt) -> new NumericValue(whyYouAsk).bindTo("_"));
-                try
-                {
-                    lastOne = expr.evalValue(c, t);
-                }
-                catch (BreakStatement | ContinueStatement stmt)
+                Value result = SignalValue.evalLoopBody(expr, c, t);
+                lastOne = SignalValue.loopValue(result, lastOne);
+                if (SignalValue.breaksLoop(result))
                 {
-                    if (stmt.retval != null)
-                    {
-                        lastOne = stmt.retval;
-                    }
-                    if (stmt instanceof BreakStatement)
-                    {
-                        break;
-                    }
+                    break;
                 }
             }
             //revering scope
@@ -168,38 +148,40 @@ public class Loops
             {
                 throw new InternalExpressionException("First argument of 'map' function should be a list or iterator");
             }
+            if (t == Context.ITERATOR)
+            {
+                // goes straight into another loop, which takes the elements one by one
+                Value stream = new LoopStream(c, alv, lv.get(1), false);
+                return (cc, tt) -> stream;
+            }
             Iterator<Value> iterator = alv.iterator();
             LazyValue expr = lv.get(1);
             //scoping
             LazyValue defaultVal = c.getVariable("_");
             LazyValue iterVal = c.getVariable("_i");
-            List<Value> result = new ArrayList<>();
+            List<Value> result = new NumericList();
             for (int i = 0; iterator.hasNext(); i++)
             {
-                Value next = iterator.next();
-                if(next == Value.EOL) {
+                c.host.checkpoint();
+                Value current = iterator.next();
+                if(current == Value.EOL) {
                     continue;
                 }
-                String variable = next.boundVariable;
-                next.bindTo("_");
+                String variable = current.boundVariable;
+                Value next = current.bindTo("_");
                 int doYouReally = i;
                 c.setVariable("_", (cc, tt) -> next);
                 c.setVariable("_i", (cc, tt) -> new NumericValue(doYouReally).bindTo("_i"));
-                try
+                Value mapped = SignalValue.evalLoopBody(expr, c, t);
+                Value element = SignalValue.loopValue(mapped, null);
+                if (element != null)
                 {
-                    result.add(expr.evalValue(c, t));
+                    result.add(element);
                 }
-                catch (BreakStatement | ContinueStatement stmt)
+                if (SignalValue.breaksLoop(mapped))
                 {
-                    if (stmt.retval != null)
-                    {
-                        result.add(stmt.retval);
-                    }
-                    if (stmt instanceof BreakStatement)
-                    {
-                        next.boundVariable = variable;
-                        break;
-                    }
+                    next.boundVariable = variable;
+                    break;
                 }
                 next.boundVariable = variable;
             }
@@ -225,41 +207,40 @@ public class Loops
             {
                 throw new InternalExpressionException("First argument of 'filter' function should be a list or iterator");
             }
+            if (t == Context.ITERATOR)
+            {
+                // goes straight into another loop, which takes the elements one by one
+                Value stream = new LoopStream(c, alv, lv.get(1), true);
+                return (cc, tt) -> stream;
+            }
             Iterator<Value> iterator = alv.iterator();
             LazyValue expr = lv.get(1);
             //scoping
             LazyValue defaultVal = c.getVariable("_");
             LazyValue iterVal = c.getVariable("_i");
-            List<Value> result = new ArrayList<>();
+            List<Value> result = new NumericList();
             for (int i = 0; iterator.hasNext(); i++)
             {
-                Value next = iterator.next();
-                if(next == Value.EOL) {
+                c.host.checkpoint();
+                Value current = iterator.next();
+                if(current == Value.EOL) {
                     continue;
                 }
-                String veriable = next.boundVariable;
-                next.bindTo("_");
+                String veriable = current.boundVariable;
+                Value next = current.bindTo("_");
                 int seriously = i;
                 c.setVariable("_", (cc, tt) -> next);
                 c.setVariable("_i", (cc, tt) -> new NumericValue(seriously).bindTo("_i"));
-                try
+                Value test = SignalValue.evalLoopBody(expr, c, Context.BOOLEAN);
+                Value passed = SignalValue.loopValue(test, null);
+                if (passed != null && passed.getBoolean())
                 {
-                    if (expr.evalValue(c, Context.BOOLEAN).getBoolean())
-                    {
-                        result.add(next);
-                    }
+                    result.add(next);
                 }
-                catch (BreakStatement | ContinueStatement stmt)
+                if (SignalValue.breaksLoop(test))
                 {
-                    if (stmt.retval != null && stmt.retval.getBoolean())
-                    {
-                        result.add(next);
-                    }
-                    if (stmt instanceof BreakStatement)
-                    {
-                        next.boundVariable = veriable;
-                        break;
-                    }
+                    next.boundVariable = veriable;
+                    break;
                 }
                 next.boundVariable = veriable;
             }
@@ -293,34 +274,33 @@ public class Loops
             Value result = Value.NULL;
             for (int i = 0; iterator.hasNext(); i++)
             {
-                Value next = iterator.next();
-                if(next == Value.EOL) {
+                c.host.checkpoint();
+                Value current = iterator.next();
+                if(current == Value.EOL) {
                     continue;
                 }
-                String variable = next.boundVariable;
-                next.bindTo("_");
+                String variable = current.boundVariable;
+                Value next = current.bindTo("_");
                 int seriously = i;
                 c.setVariable("_", (cc, tt) -> next);
                 c.setVariable("_i", (cc, tt) -> new NumericValue(seriously).bindTo("_i"));
-                try
+                Value test = SignalValue.evalLoopBody(expr, c, Context.BOOLEAN);
+                if (SignalValue.breaksLoop(test))
                 {
-                    if (expr.evalValue(c, Context.BOOLEAN).getBoolean())
-                    {
-                        result = next;
-                        next.boundVariable = variable;
-                        break;
-                    }
-                }
-                catch (BreakStatement stmt)
-                {
-                    result = stmt.retval == null ? next : stmt.retval;
+                    result = SignalValue.loopValue(test, next);
                     next.boundVariable = variable;
                     break;
                 }
-                catch (ContinueStatement ignored)
+                if (test instanceof SignalValue)
                 {
                     throw new InternalExpressionException("'continue' inside 'first' function has no sense");
                 }
+                if (test.getBoolean())
+                {
+                    result = next;
+                    next.boundVariable = variable;
+                    break;
+                }
                 next.boundVariable = variable;
             }
             //revering scope
@@ -353,12 +333,13 @@ public class Loops
             LazyValue result = LazyValue.TRUE;
             for (int i = 0; iterator.hasNext(); i++)
             {
-                Value next = iterator.next();
-                if(next == Value.EOL) {
+                c.host.checkpoint();
+                Value current = iterator.next();
+                if(current == Value.EOL) {
                     continue;
                 }
-                String variable = next.boundVariable;
-                next.bindTo("_");
+                String variable = current.boundVariable;
+                Value next = current.bindTo("_");
                 int seriously = i;
                 c.setVariable("_", (cc, tt) -> next);
                 c.setVariable("_i", (cc, tt) -> new NumericValue(seriously).bindTo("_i"));
@@ -387,17 +368,11 @@ public class Loops
             int iterations = 0;
             for (initial.evalValue(c, Context.VOID); condition.evalValue(c, Context.BOOLEAN).getBoolean(); increment.evalValue(c, Context.VOID))
             {
-                try
-                {
-                    body.evalValue(c, Context.VOID);
-                }
-                catch (BreakStatement stmt)
+                c.host.checkpoint();
+                if (SignalValue.breaksLoop(SignalValue.evalLoopBody(body, c, Context.VOID)))
                 {
                     break;
                 }
-                catch (ContinueStatement ignored)
-                {
-                }
                 iterations++;
             }
             int finalIterations = iterations;
@@ -426,32 +401,23 @@ public class Loops
             int successCount = 0;
             for (int i = 0; iterator.hasNext(); i++)
             {
-                Value next = iterator.next();
-                if(next == Value.EOL) {
+                c.host.checkpoint();
+                Value current = iterator.next();
+                if(current == Value.EOL) {
                     continue;
                 }
-                String variable = next.boundVariable;
-                next.bindTo("_");
+                String variable = current.boundVariable;
+                Value next = current.bindTo("_");
                 int seriously = i;
                 c.setVariable("_", (cc, tt) -> next);
                 c.setVariable("_i", (cc, tt) -> new NumericValue(seriously).bindTo("_i"));
-                Value result = Value.FALSE;
-                try
+                Value result = SignalValue.evalLoopBody(expr, c, t);
+                if (SignalValue.breaksLoop(result))
                 {
-                    result = expr.evalValue(c, t);
-                }
-                catch (BreakStatement | ContinueStatement stmt)
-                {
-                    if (stmt.retval != null)
-                    {
-                        result = stmt.retval;
-                    }
-                    if (stmt instanceof BreakStatement)
-                    {
-                        next.boundVariable = variable;
-                        break;
-                    }
+                    next.boundVariable = variable;
+                    break;
                 }
+                result = SignalValue.loopValue(result, Value.FALSE);
                 if (t != Context.VOID && result.getBoolean())
                 {
                     successCount++;
@@ -500,32 +466,24 @@ public class Loops
 
             for (int i = 0; iterator.hasNext(); i++)
             {
-                Value next = iterator.next();
-                if(next == Value.EOL) {
+                c.host.checkpoint();
+                Value current = iterator.next();
+                if(current == Value.EOL) {
                     continue;
                 }
-                String variable = next.boundVariable;
-                next.bindTo("_");
+                String variable = current.boundVariable;
+                Value next = current.bindTo("_");
                 Value promiseWontChangeYou = acc;
                 int seriously = i;
                 c.setVariable("_a", (cc, tt) -> promiseWontChangeYou.bindTo("_a"));
                 c.setVariable("_", (cc, tt) -> next);
                 c.setVariable("_i", (cc, tt) -> new NumericValue(seriously).bindTo("_i"));
-                try
-                {
-                    acc = expr.evalValue(c, t);
-                }
-                catch (BreakStatement | ContinueStatement stmt)
+                Value reduced = SignalValue.evalLoopBody(expr, c, t);
+                acc = SignalValue.loopValue(reduced, acc);
+                if (SignalValue.breaksLoop(reduced))
                 {
-                    if (stmt.retval != null)
-                    {
-                        acc = stmt.retval;
-                    }
-                    if (stmt instanceof BreakStatement)
-                    {
-                        next.boundVariable = variable;
-                        break;
-                    }
+                    next.boundVariable = variable;
+                    break;
                 }
                 next.boundVariable = variable;
             }
@@ -539,4 +497,111 @@ public class Loops
             return (cc, tt) -> hopeItsEnoughPromise;
         });
     }
+
+    /**
+     * Elements of 'map' or 'filter' computed one at a time, as the loop consuming them asks for the next one,
+     * instead of being collected into a list first. Only used where the call is the list argument of another loop,
+     * see {@link Expression.ExpressionNode#streamed}. Restores '_' and '_i' after each element, so the consuming loop
+     * keeps its own.
+     */
+    private static final class LoopStream extends LazyListValue
+    {
+        private final Context context;
+        private final AbstractListValue source;
+        private final Iterator<Value> iterator;
+        private final LazyValue expr;
+        private final boolean filter;
+        private int index;
+        @Nullable
+        private Value pending;
+        // a break was hit, so nothing comes after the pending element
+        private boolean stopped;
+        private boolean finished;
+
+        private LoopStream(Context context, AbstractListValue source, LazyValue expr, boolean filter)
+        {
+            this.context = context;
+            this.source = source;
+            this.iterator = source.iterator();
+            this.expr = expr;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (pending == null && !finished)
+            {
+                advance();
+            }
+            return pending != null;
+        }
+
+        @Override
+        public Value next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            Value next = pending;
+            pending = null;
+            return next;
+        }
+
+        @Override
+        public void reset()
+        {
+            // can't be rewound, just lets go of the source
+            pending = null;
+            finish();
+        }
+
+        private void finish()
+        {
+            if (!finished)
+            {
+                finished = true;
+                source.fatality();
+            }
+        }
+
+        private void advance()
+        {
+            LazyValue outerVal = context.getVariable("_");
+            LazyValue outerIndex = context.getVariable("_i");
+            while (pending == null && !stopped && iterator.hasNext())
+            {
+                context.host.checkpoint();
+                int i = index++;
+                Value current = iterator.next();
+                if (current == Value.EOL)
+                {
+                    continue;
+                }
+                String variable = current.boundVariable;
+                Value next = current.bindTo("_");
+                context.setVariable("_", (cc, tt) -> next);
+                context.setVariable("_i", (cc, tt) -> new NumericValue(i).bindTo("_i"));
+                Value result = SignalValue.evalLoopBody(expr, context, filter ? Context.BOOLEAN : Context.NONE);
+                accept(next, SignalValue.loopValue(result, null));
+                stopped = SignalValue.breaksLoop(result);
+                next.boundVariable = variable;
+            }
+            context.setVariable("_", outerVal);
+            context.setVariable("_i", outerIndex);
+            if (pending == null)
+            {
+                finish();
+            }
+        }
+
+        private void accept(Value element, @Nullable Value result)
+        {
+            if (result != null && (!filter || result.getBoolean()))
+            {
+                pending = filter ? element : result;
+            }
+        }
+    }
 }
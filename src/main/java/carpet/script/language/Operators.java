@@ -12,6 +12,7 @@ import carpet.script.value.FunctionUnpackedArgumentsValue;
 import carpet.script.value.LContainerValue;
 import carpet.script.value.ListValue;
 import carpet.script.value.MapValue;
+import carpet.script.value.NumericList;
 import carpet.script.value.NumericValue;
 import carpet.script.value.Value;
 
@@ -49,7 +50,18 @@ public class Operators
                 return Value.NULL;
             }
             Value accumulator = lv.get(0);
-            for (Value v : lv.subList(1, size))
+            int first = 1;
+            if (size > 1 && accumulator instanceof final ListValue list && list.getItems() instanceof final NumericList numbers && numbers.isNumeric())
+            {
+                // vectors of numbers add up in place, without a list for each partial sum
+                NumericList total = numbers.copy();
+                while (first < size && lv.get(first) instanceof final ListValue next && total.accumulate(next.getItems()))
+                {
+                    first++;
+                }
+                accumulator = ListValue.wrap(total);
+            }
+            for (Value v : lv.subList(first, size))
             {
                 accumulator = accumulator.add(v);
             }
@@ -0,0 +1,193 @@
+package carpet.script.utils;
+
+import carpet.script.CarpetScriptServer;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * On-disk cache of what was fetched from the scarpet app store, shared by all worlds.
+ * Folder listings and other responses are kept with their ETag and revalidated with conditional requests,
+ * which GitHub doesn't count against its rate limit, and are served from disk when the store can't be reached.
+ * File contents with a known git blob hash are kept by that hash and served without asking the store at all.
+ */
+public class AppStoreCache
+{
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 10000;
+
+    private final Path folder;
+
+    public AppStoreCache(Path folder)
+    {
+        this.folder = folder;
+    }
+
+    /**
+     * @param hash git blob hash of the content, if the store told us, to serve a cached copy right away
+     *             and to check the downloaded one
+     */
+    public byte[] get(String url, @Nullable String hash) throws IOException
+    {
+        if (hash != null && !hash.matches("[0-9a-f]{40}"))
+        {
+            throw new IOException("Invalid hash of " + url + ": " + hash);
+        }
+        Path blob = hash == null ? null : folder.resolve("blobs").resolve(hash);
+        if (blob != null && Files.exists(blob))
+        {
+            byte[] content = Files.readAllBytes(blob);
+            if (hash.equals(gitBlobHash(content)))
+            {
+                return content;
+            }
+        }
+        byte[] content = fetch(url);
+        if (blob != null)
+        {
+            String actual = gitBlobHash(content);
+            if (!hash.equals(actual))
+            {
+                throw new IOException("Content of " + url + " doesn't match its hash, expected " + hash + " but got " + actual);
+            }
+            write(blob, content);
+        }
+        return content;
+    }
+
+    public String getText(String url) throws IOException
+    {
+        return new String(get(url, null), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fetches the url, revalidating a cached response with its ETag, or falling back to it when the store can't be
+     * reached. Error statuses from the store are passed on, only the cached responses are accessed under the lock
+     */
+    private byte[] fetch(String url) throws IOException
+    {
+        URLConnection connection = new URL(url).openConnection();
+        if (!(connection instanceof HttpURLConnection http))
+        {
+            // local files, nothing to cache
+            try (InputStream in = connection.getInputStream())
+            {
+                return in.readAllBytes();
+            }
+        }
+        String key = sha1(url.getBytes(StandardCharsets.UTF_8));
+        Path body = folder.resolve("responses").resolve(key);
+        Path etag = folder.resolve("responses").resolve(key + ".etag");
+        byte[] cached = null;
+        String cachedTag = null;
+        synchronized (this)
+        {
+            if (Files.exists(body))
+            {
+                cached = Files.readAllBytes(body);
+                cachedTag = Files.exists(etag) ? Files.readString(etag) : null;
+            }
+        }
+        int code;
+        byte[] content = null;
+        String tag = null;
+        try
+        {
+            http.setConnectTimeout(CONNECT_TIMEOUT);
+            http.setReadTimeout(READ_TIMEOUT);
+            if (cachedTag != null)
+            {
+                http.setRequestProperty("If-None-Match", cachedTag);
+            }
+            code = http.getResponseCode();
+            if (code == HttpURLConnection.HTTP_OK)
+            {
+                try (InputStream in = http.getInputStream())
+                {
+                    content = in.readAllBytes();
+                }
+                tag = http.getHeaderField("ETag");
+            }
+        }
+        catch (IOException e)
+        {
+            if (cached == null)
+            {
+                throw e;
+            }
+            CarpetScriptServer.LOG.warn("Failed to fetch " + url + ", using cached copy: " + e.getMessage());
+            return cached;
+        }
+        finally
+        {
+            http.disconnect();
+        }
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+        {
+            return cached;
+        }
+        if (content == null)
+        {
+            throw new IOException("HTTP " + code + " fetching " + url);
+        }
+        synchronized (this)
+        {
+            write(body, content);
+            if (tag != null)
+            {
+                write(etag, tag.getBytes(StandardCharsets.UTF_8));
+            }
+            else
+            {
+                Files.deleteIfExists(etag);
+            }
+        }
+        return content;
+    }
+
+    private static void write(Path file, byte[] content) throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Hash git gives to files, which GitHub reports as their sha and {@code git hash-object} prints
+     */
+    public static String gitBlobHash(byte[] content)
+    {
+        MessageDigest digest = sha1Digest();
+        digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(content));
+    }
+
+    private static String sha1(byte[] content)
+    {
+        return HexFormat.of().formatHex(sha1Digest().digest(content));
+    }
+
+    private static MessageDigest sha1Digest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
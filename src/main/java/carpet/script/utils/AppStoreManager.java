@@ -18,20 +18,17 @@ import net.minecraft.world.level.storage.LevelResource;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-
-import org.apache.commons.io.IOUtils;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
@@ -48,23 +45,206 @@ public class AppStoreManager
     private static long storeErrorTime = 0;
 
     /**
-     * This is the base link to the scarpet app repo from the github api.
+     * Name of the prebuilt index of a mirror or local app store, in its root folder. It maps paths of all files
+     * in the store to their git blob hashes, as printed by {@code git hash-object}, for example
+     * {@code {"files": {"survival/camera.sc": "3b18e5..."}}}
+     */
+    public static final String INDEX_FILE = "index.json";
+
+    /**
+     * Where the app store is, the scarpet app repo from the github api by default.
      */
-    private static String scarpetRepoLink = "https://api.github.com/repos/gnembon/scarpet/contents/programs/";
+    @Nullable
+    private static Source source = new GitHubSource("https://api.github.com/repos/gnembon/scarpet/contents/programs/");
+    @Nullable
+    private static AppStoreCache cache;
 
     public static void setScarpetRepoLink(@Nullable String link)
+    {
+        setSource(link == null ? null : new GitHubSource(link));
+    }
+
+    /**
+     * Points the app store at a github repo, with {@code <user>/<repo>/contents/<path...>}, a http mirror
+     * with a prebuilt index, with its base url, a local folder with {@code file:<path>}, or nowhere with {@code none}
+     */
+    public static void setAppStore(String location)
+    {
+        if (location.equals("none"))
+        {
+            setSource(null);
+        }
+        else if (location.startsWith("http://") || location.startsWith("https://"))
+        {
+            setSource(new MirrorSource(location.endsWith("/") ? location : location + "/"));
+        }
+        else if (location.startsWith("file:"))
+        {
+            setSource(new LocalSource(Path.of(location.substring("file:".length()))));
+        }
+        else
+        {
+            setScarpetRepoLink("https://api.github.com/repos/" + (location.endsWith("/") ? location : location + "/"));
+        }
+    }
+
+    private static void setSource(@Nullable Source newSource)
     {
         APP_STORE_ROOT = AppStoreManager.StoreNode.folder(null, "");
-        scarpetRepoLink = link;
+        storeErrorTime = 0;
+        source = newSource;
     }
 
     public static boolean enabled()
     {
-        return scarpetRepoLink != null;
+        return source != null;
     }
 
-    private record AppInfo(String name, String url, StoreNode source)
+    private static synchronized AppStoreCache cache()
     {
+        if (cache == null)
+        {
+            cache = new AppStoreCache(Carpet.getAppStoreCacheFolder());
+        }
+        return cache;
+    }
+
+    /**
+     * Reads an app store file, from the cache if it has it with the same hash
+     */
+    private static byte[] fetch(String url, @Nullable String hash) throws IOException
+    {
+        return cache().get(url, hash);
+    }
+
+    private record AppInfo(String name, String url, @Nullable String hash, StoreNode source)
+    {
+    }
+
+    /**
+     * Where folders of the app store get their contents from
+     */
+    private interface Source
+    {
+        /**
+         * Adds children of the folder to its node, possibly filling folders below it too
+         */
+        void fill(StoreNode folder) throws IOException;
+    }
+
+    private record GitHubSource(String apiLink) implements Source
+    {
+        @Override
+        public void fill(StoreNode folder) throws IOException
+        {
+            String queryPath = apiLink + folder.getPath();
+            JsonArray files = JsonParser.parseString(cache().getText(queryPath)).getAsJsonArray();
+            for (JsonElement je : files)
+            {
+                JsonObject jo = je.getAsJsonObject();
+                String elementName = jo.get("name").getAsString();
+                if (jo.get("type").getAsString().equals("dir"))
+                {
+                    folder.children.put(elementName, StoreNode.folder(folder, elementName));
+                }
+                else// if (name.matches("(\\w+\\.scl?)"))
+                {
+                    String url = jo.get("download_url").getAsString();
+                    String hash = jo.has("sha") ? jo.get("sha").getAsString() : null;
+                    folder.children.put(elementName, StoreNode.scriptFile(folder, elementName, url, hash));
+                }
+            }
+        }
+    }
+
+    /**
+     * Plain file server mirroring an app store, which can't list folders, so everything comes from its index at once
+     */
+    private record MirrorSource(String baseUrl) implements Source
+    {
+        @Override
+        public void fill(StoreNode folder) throws IOException
+        {
+            fillFromIndex(folder, cache().getText(baseUrl + INDEX_FILE), path -> baseUrl + path);
+        }
+    }
+
+    /**
+     * App store in a local folder, listed as it is unless it has an index
+     */
+    private record LocalSource(Path root) implements Source
+    {
+        @Override
+        public void fill(StoreNode folder) throws IOException
+        {
+            Path index = root.resolve(INDEX_FILE);
+            if (folder == APP_STORE_ROOT && Files.exists(index))
+            {
+                fillFromIndex(folder, Files.readString(index), path -> root.resolve(path).toUri().toString());
+                return;
+            }
+            Path dir = root.resolve(folder.getPath());
+            if (!Files.isDirectory(dir))
+            {
+                throw new IOException("No app store folder at " + dir);
+            }
+            try (Stream<Path> files = Files.list(dir))
+            {
+                for (Path file : (Iterable<Path>) files::iterator)
+                {
+                    String elementName = file.getFileName().toString();
+                    if (Files.isDirectory(file))
+                    {
+                        folder.children.put(elementName, StoreNode.folder(folder, elementName));
+                    }
+                    else if (!(folder == APP_STORE_ROOT && elementName.equals(INDEX_FILE)))
+                    {
+                        folder.children.put(elementName, StoreNode.scriptFile(folder, elementName, file.toUri().toString(), null));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the whole tree below the root from an index, sealing all folders in it
+     */
+    private static void fillFromIndex(StoreNode root, String index, Function<String, String> urlOf) throws IOException
+    {
+        JsonObject files;
+        try
+        {
+            files = JsonParser.parseString(index).getAsJsonObject().getAsJsonObject("files");
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("Invalid app store index: " + e.getMessage(), e);
+        }
+        if (files == null)
+        {
+            throw new IOException("App store index has no files");
+        }
+        for (Map.Entry<String, JsonElement> entry : files.entrySet())
+        {
+            String[] path = entry.getKey().split("/");
+            StoreNode folder = root;
+            for (int i = 0; i < path.length - 1; i++)
+            {
+                StoreNode parent = folder;
+                folder = parent.children.computeIfAbsent(path[i], name -> {
+                    StoreNode child = StoreNode.folder(parent, name);
+                    child.sealed = true;
+                    return child;
+                });
+                if (folder.isLeaf())
+                {
+                    throw new IOException("App store index has " + folder.getPath() + " both as a file and a folder");
+                }
+            }
+            String hash = entry.getValue().isJsonNull() ? null : entry.getValue().getAsString();
+            String name = path[path.length - 1];
+            folder.children.put(name, StoreNode.scriptFile(folder, name, urlOf.apply(entry.getKey()), hash));
+        }
     }
 
     public static class StoreNode
@@ -75,6 +255,9 @@ public class AppStoreManager
         public Map<String, StoreNode> children;
         public boolean sealed;
         public String value;
+        // git blob hash of the file, when the store tells
+        @Nullable
+        public String hash;
 
         public static StoreNode folder(@Nullable StoreNode parent, String name)
         {
@@ -86,10 +269,16 @@ public class AppStoreManager
         }
 
         public static StoreNode scriptFile(StoreNode parent, String name, String value)
+        {
+            return scriptFile(parent, name, value, null);
+        }
+
+        public static StoreNode scriptFile(StoreNode parent, String name, String value, @Nullable String hash)
         {
             StoreNode node = new StoreNode(parent, name);
             node.children = null;
             node.value = value;
+            node.hash = hash;
             node.sealed = true;
             return node;
         }
@@ -140,11 +329,9 @@ public class AppStoreManager
                 return;
             }
 
-            String queryPath = scarpetRepoLink + getPath();
-            String response;
             try
             {
-                response = IOUtils.toString(new URL(queryPath), StandardCharsets.UTF_8);
+                AppStoreManager.source.fill(this);
             }
             catch (IOException e)
             {
@@ -153,23 +340,9 @@ public class AppStoreManager
                     Carpet.Messenger_message(source, "r Scarpet app store is not available at the moment, try in a minute");
                 }
                 storeErrorTime = System.currentTimeMillis();
+                children.clear();
                 // Not sealing to allow retrying
-                throw new IOException("Problems fetching " + queryPath, e);
-            }
-            JsonArray files = JsonParser.parseString(response).getAsJsonArray();
-            for (JsonElement je : files)
-            {
-                JsonObject jo = je.getAsJsonObject();
-                String elementName = jo.get("name").getAsString();
-                if (jo.get("type").getAsString().equals("dir"))
-                {
-                    children.put(elementName, folder(this, elementName));
-                }
-                else// if (name.matches("(\\w+\\.scl?)"))
-                {
-                    String url = jo.get("download_url").getAsString();
-                    children.put(elementName, scriptFile(this, elementName, url));
-                }
+                throw new IOException("Problems fetching " + getPath() + " from the app store", e);
             }
             sealed = true;
         }
@@ -273,7 +446,7 @@ public class AppStoreManager
         String code;
         try
         {
-            code = IOUtils.toString(new URL(nodeInfo.url()), StandardCharsets.UTF_8);
+            code = new String(fetch(nodeInfo.url(), nodeInfo.hash()), StandardCharsets.UTF_8);
         }
         catch (IOException e)
         {
@@ -309,8 +482,12 @@ public class AppStoreManager
                 appKiosk = appKiosk.drillDown(pathElement, source);
             }
             String appName = path[path.length - 1];
-            appKiosk.getValue(appName, source);
-            return new AppInfo(appName, appKiosk.getValue(appName, source), appKiosk);
+            StoreNode app = appKiosk.drillDown(appName, source);
+            if (!app.isLeaf())
+            {
+                throw new IOException(appName + " is not a file");
+            }
+            return new AppInfo(appName, app.value, app.hash, appKiosk);
         }
         catch (IOException e)
         {
@@ -358,10 +535,7 @@ public class AppStoreManager
 
     public static void writeUrlToFile(String url, Path destination) throws IOException
     {
-        try (InputStream in = new URL(url).openStream())
-        {
-            Files.copy(in, destination, StandardCopyOption.REPLACE_EXISTING);
-        }
+        Files.write(destination, fetch(url, null));
     }
 
     private static String getFullContentUrl(String original, StoreNode storeSource, CommandSourceStack source)
@@ -465,7 +639,7 @@ public class AppStoreManager
         }
         try
         {
-            downloadScript(carpetScriptHost.responsibleSource, target, new AppInfo(target, contentUrl, getNewStoreNode(carpetScriptHost.responsibleSource, storeSource, source, contentUrl)), true);
+            downloadScript(carpetScriptHost.responsibleSource, target, new AppInfo(target, contentUrl, null, getNewStoreNode(carpetScriptHost.responsibleSource, storeSource, source, contentUrl)), true);
         }
         catch (CommandRuntimeException e)
         {
@@ -0,0 +1,171 @@
+package carpet.script.utils;
+
+import carpet.script.LazyValue;
+import carpet.script.value.FunctionValue;
+import carpet.script.value.ListValue;
+import carpet.script.value.MapValue;
+import carpet.script.value.NBTSerializableValue;
+import carpet.script.value.NumericList;
+import carpet.script.value.NumericValue;
+import carpet.script.value.StringValue;
+import carpet.script.value.Value;
+import net.minecraft.nbt.Tag;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rough estimate of the heap held by scarpet values, used to account the memory of apps.
+ * Sizes assume a 64-bit VM with compressed references, and each object is counted once no matter
+ * how many times it is referenced. Walking stops as soon as the estimate goes over the cap,
+ * so a runaway app costs no more to check than a well-behaved one.
+ */
+public class MemoryEstimate
+{
+    private static final int OBJECT = 16;
+    private static final int REFERENCE = 4;
+    private static final int MAP_ENTRY = 32;
+
+    private final long cap;
+    private final Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ArrayDeque<Value> pending = new ArrayDeque<>();
+    private long bytes;
+
+    public MemoryEstimate()
+    {
+        this(Long.MAX_VALUE);
+    }
+
+    public MemoryEstimate(long cap)
+    {
+        this.cap = cap;
+    }
+
+    /**
+     * @return estimated bytes counted so far
+     */
+    public long bytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return whether counting stopped early because the estimate went over the cap
+     */
+    public boolean exceeded()
+    {
+        return bytes > cap;
+    }
+
+    public void add(@Nullable LazyValue value)
+    {
+        if (value != null)
+        {
+            add(value.evalValue(null));
+        }
+    }
+
+    public void add(@Nullable Tag tag)
+    {
+        if (tag != null && !exceeded() && counted.add(tag))
+        {
+            bytes += tag.sizeInBytes();
+        }
+    }
+
+    public void add(@Nullable Value value)
+    {
+        if (value == null)
+        {
+            return;
+        }
+        pending.push(value);
+        // iterative, so deeply nested values can't overflow the stack
+        while (!pending.isEmpty() && !exceeded())
+        {
+            Value next = pending.pop();
+            if (counted.add(next))
+            {
+                bytes += shallowSize(next);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return size of the value itself, queuing the values it holds to be counted separately
+     */
+    private long shallowSize(Value value)
+    {
+        if (value instanceof NumericValue)
+        {
+            return 32;
+        }
+        if (value instanceof StringValue)
+        {
+            // value, String and its latin-1 backing array
+            return 3 * OBJECT + 8 + value.getString().length();
+        }
+        if (value instanceof ListValue list)
+        {
+            List<Value> items = list.getItems();
+            int size = items.size();
+            if (items instanceof NumericList numbers && numbers.isNumeric())
+            {
+                return 3 * OBJECT + 8L * size;
+            }
+            for (Value item : items)
+            {
+                queue(item);
+            }
+            return 3 * OBJECT + (long) REFERENCE * size;
+        }
+        if (value instanceof MapValue map)
+        {
+            Map<Value, Value> entries = map.getMap();
+            for (Map.Entry<Value, Value> entry : entries.entrySet())
+            {
+                queue(entry.getKey());
+                queue(entry.getValue());
+            }
+            return 3 * OBJECT + (long) MAP_ENTRY * entries.size();
+        }
+        if (value instanceof NBTSerializableValue nbt)
+        {
+            // tags of entities and blocks that were never read are not held by the value
+            if (nbt.isTagLoaded())
+            {
+                add(nbt.getTag());
+            }
+            return 2 * OBJECT;
+        }
+        if (value instanceof FunctionValue function)
+        {
+            Map<String, LazyValue> outerState = function.getOuterState();
+            if (outerState != null)
+            {
+                for (LazyValue captured : outerState.values())
+                {
+                    queue(captured.evalValue(null));
+                }
+                return 4 * OBJECT + (long) MAP_ENTRY * outerState.size();
+            }
+            return 4 * OBJECT;
+        }
+        return 2 * OBJECT;
+    }
+
+    private void queue(@Nullable Value value)
+    {
+        // values can be changed by running tasks while they are counted
+        if (value != null)
+        {
+            pending.push(value);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package carpet.script.utils;
+
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Bit-partitioned vector trie with structural sharing, usable as a regular mutable {@link java.util.List}.
+ * {@link #copy()} is O(1): both lists share the trie, and an update on either copies only the path to the changed
+ * element (O(log32 n)). Appending and removing at the end are amortised O(1) thanks to a separate tail block.
+ * Nodes a list created since it last shared its trie are changed in place, so a list that isn't copied updates
+ * about as cheaply as an {@link java.util.ArrayList}. Inserting or removing anywhere else rebuilds the list in O(n).
+ * Iterators are fail-fast like the ones of {@link java.util.ArrayList}, iterate over a {@link #copy()} to change the list
+ * while iterating.
+ */
+public class PersistentVector<E> extends AbstractList<E> implements RandomAccess
+{
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private int size;
+    private int shift = BITS;
+    private Node root;
+    private Object[] tail;
+    // whether the tail is not shared with another list or iterator
+    private boolean tailOwned;
+    // marks nodes that no other list or iterator can see, so they can be changed in place
+    private Object owner = new Object();
+
+    public PersistentVector()
+    {
+        root = new Node(owner, new Object[WIDTH]);
+        tail = new Object[WIDTH];
+        tailOwned = true;
+    }
+
+    public PersistentVector(Collection<? extends E> other)
+    {
+        this();
+        addAll(other);
+    }
+
+    /**
+     * @return list with the elements of the collection, sharing the structure if it is a {@link PersistentVector} already
+     */
+    public static <E> PersistentVector<E> copyOf(Collection<? extends E> other)
+    {
+        if (other instanceof PersistentVector<? extends E> vector)
+        {
+            @SuppressWarnings("unchecked")
+            PersistentVector<E> copy = (PersistentVector<E>) vector.copy();
+            return copy;
+        }
+        return new PersistentVector<>(other);
+    }
+
+    /**
+     * @return independent list with the same elements, sharing the structure with this one
+     */
+    public PersistentVector<E> copy()
+    {
+        PersistentVector<E> copy = new PersistentVector<>(size, shift, root, tail);
+        owner = new Object();
+        tailOwned = false;
+        return copy;
+    }
+
+    private PersistentVector(int size, int shift, Node root, Object[] tail)
+    {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        this.tailOwned = false;
+    }
+
+    private int tailOffset()
+    {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leaf(int index)
+    {
+        if (index >= tailOffset())
+        {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+        {
+            node = (Node) node.array[(index >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return (E) leaf(index)[index & MASK];
+    }
+
+    @Override
+    public E set(int index, E element)
+    {
+        E previous = get(index);
+        if (index >= tailOffset())
+        {
+            ownTail();
+            tail[index & MASK] = element;
+        }
+        else
+        {
+            root = set(shift, root, index, element);
+        }
+        return previous;
+    }
+
+    private Node set(int level, Node node, int index, E element)
+    {
+        Node editable = editable(node);
+        if (level == 0)
+        {
+            editable.array[index & MASK] = element;
+        }
+        else
+        {
+            int child = (index >>> level) & MASK;
+            editable.array[child] = set(level - BITS, (Node) node.array[child], index, element);
+        }
+        return editable;
+    }
+
+    @Override
+    public boolean add(E element)
+    {
+        int inTail = size - tailOffset();
+        if (inTail < WIDTH)
+        {
+            ownTail();
+            tail[inTail] = element;
+        }
+        else
+        {
+            Node full = new Node(tailOwned ? owner : null, tail);
+            if ((size >>> BITS) > (1 << shift))
+            {
+                Node grown = new Node(owner, new Object[WIDTH]);
+                grown.array[0] = root;
+                grown.array[1] = path(shift, full);
+                root = grown;
+                shift += BITS;
+            }
+            else
+            {
+                root = pushTail(shift, root, full);
+            }
+            tail = new Object[WIDTH];
+            tail[0] = element;
+            tailOwned = true;
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    private Node pushTail(int level, Node parent, Node full)
+    {
+        Node editable = editable(parent);
+        int child = ((size - 1) >>> level) & MASK;
+        if (level == BITS)
+        {
+            editable.array[child] = full;
+        }
+        else
+        {
+            Node existing = (Node) parent.array[child];
+            editable.array[child] = existing == null ? path(level - BITS, full) : pushTail(level - BITS, existing, full);
+        }
+        return editable;
+    }
+
+    private Node path(int level, Node node)
+    {
+        if (level == 0)
+        {
+            return node;
+        }
+        Node parent = new Node(owner, new Object[WIDTH]);
+        parent.array[0] = path(level - BITS, node);
+        return parent;
+    }
+
+    @Override
+    public void add(int index, E element)
+    {
+        if (index == size)
+        {
+            add(element);
+            return;
+        }
+        if (index < 0 || index > size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        Object[] elements = toArray();
+        clear();
+        rebuild(elements, 0, index);
+        add(element);
+        rebuild(elements, index, elements.length);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> elements)
+    {
+        if (index == size)
+        {
+            return addAll(elements);
+        }
+        if (index < 0 || index > size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        Object[] current = toArray();
+        clear();
+        rebuild(current, 0, index);
+        addAll(elements);
+        rebuild(current, index, current.length);
+        return !elements.isEmpty();
+    }
+
+    @Override
+    public E remove(int index)
+    {
+        E removed = get(index);
+        if (index == size - 1)
+        {
+            removeLast();
+        }
+        else
+        {
+            Object[] elements = toArray();
+            clear();
+            rebuild(elements, 0, index);
+            rebuild(elements, index + 1, elements.length);
+        }
+        return removed;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex)
+    {
+        if (fromIndex >= toIndex)
+        {
+            return;
+        }
+        if (toIndex == size)
+        {
+            while (size > fromIndex)
+            {
+                removeLast();
+            }
+            return;
+        }
+        Object[] elements = toArray();
+        clear();
+        rebuild(elements, 0, fromIndex);
+        rebuild(elements, toIndex, elements.length);
+    }
+
+    private void removeLast()
+    {
+        int inTail = size - tailOffset();
+        if (size == 1)
+        {
+            clear();
+            return;
+        }
+        if (inTail > 1)
+        {
+            ownTail();
+            tail[inTail - 1] = null;
+        }
+        else
+        {
+            // the last block of the trie becomes the tail
+            tail = leaf(size - 2).clone();
+            tailOwned = true;
+            Node popped = popTail(shift, root);
+            root = popped == null ? new Node(owner, new Object[WIDTH]) : popped;
+            if (shift > BITS && root.array[1] == null)
+            {
+                root = (Node) root.array[0];
+                shift -= BITS;
+            }
+        }
+        size--;
+        modCount++;
+    }
+
+    @Nullable
+    private Node popTail(int level, Node node)
+    {
+        int child = ((size - 2) >>> level) & MASK;
+        if (level > BITS)
+        {
+            Node popped = popTail(level - BITS, (Node) node.array[child]);
+            if (popped == null && child == 0)
+            {
+                return null;
+            }
+            Node editable = editable(node);
+            editable.array[child] = popped;
+            return editable;
+        }
+        if (child == 0)
+        {
+            return null;
+        }
+        Node editable = editable(node);
+        editable.array[child] = null;
+        return editable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rebuild(Object[] elements, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            add((E) elements[i]);
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        size = 0;
+        shift = BITS;
+        root = new Node(owner, new Object[WIDTH]);
+        tail = new Object[WIDTH];
+        tailOwned = true;
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray()
+    {
+        Object[] result = new Object[size];
+        for (int start = 0; start < size; start += WIDTH)
+        {
+            System.arraycopy(leaf(start), 0, result, start, Math.min(WIDTH, size - start));
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<>()
+        {
+            private final int expectedModCount = modCount;
+            private int index = 0;
+            @Nullable
+            private Object[] block;
+
+            @Override
+            public boolean hasNext()
+            {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next()
+            {
+                if (modCount != expectedModCount)
+                {
+                    throw new ConcurrentModificationException();
+                }
+                if (index >= size)
+                {
+                    throw new NoSuchElementException();
+                }
+                if (block == null || (index & MASK) == 0)
+                {
+                    block = leaf(index);
+                }
+                return (E) block[index++ & MASK];
+            }
+        };
+    }
+
+    private void ownTail()
+    {
+        if (!tailOwned)
+        {
+            tail = tail.clone();
+            tailOwned = true;
+        }
+    }
+
+    private Node editable(Node node)
+    {
+        return node.owner == owner ? node : new Node(owner, node.array.clone());
+    }
+
+    private static final class Node
+    {
+        @Nullable
+        final Object owner;
+        final Object[] array;
+
+        Node(@Nullable Object owner, Object[] array)
+        {
+            this.owner = owner;
+            this.array = array;
+        }
+    }
+}
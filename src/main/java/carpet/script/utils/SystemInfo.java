@@ -43,6 +43,14 @@ public class SystemInfo
         put("app_list", c -> ListValue.wrap(((CarpetScriptHost) c.host).scriptServer().modules.keySet().stream().filter(Objects::nonNull).map(StringValue::new)));
         put("app_scope", c -> StringValue.of((c.host).isPerUser() ? "player" : "global"));
         put("app_players", c -> ListValue.wrap(c.host.getUserList().stream().map(StringValue::new)));
+        put("app_memory", c ->
+        {
+            // player instances are counted with their app
+            CarpetScriptHost app = ((CarpetScriptHost) c.host).scriptServer().modules.get(c.host.getName());
+            MemoryEstimate estimate = new MemoryEstimate();
+            (app == null ? c.host : app).estimateMemory(estimate);
+            return new NumericValue(estimate.bytes());
+        });
 
         put("world_name", c -> new StringValue(c.server().getWorldData().getLevelName()));
         put("world_seed", c -> new NumericValue(c.level().getSeed()));
@@ -134,6 +142,9 @@ public class SystemInfo
             }
             return ListValue.wrap(ticks);
         });
+        put("server_lag_chunks", c -> Carpet.getLagHotspots(false));
+        put("server_lag_block_entities", c -> Carpet.getLagHotspots(true));
+        put("server_network_traffic", c -> Carpet.getNetworkTraffic());
 
         put("java_max_memory", c -> new NumericValue(Runtime.getRuntime().maxMemory()));
         put("java_allocated_memory", c -> new NumericValue(Runtime.getRuntime().totalMemory()));
@@ -7,6 +7,7 @@ import carpet.script.Fluff;
 import carpet.script.LazyValue;
 import carpet.script.Module;
 import carpet.script.Tokenizer;
+import carpet.script.argument.FunctionArgument;
 import carpet.script.exception.BreakStatement;
 import carpet.script.exception.ContinueStatement;
 import carpet.script.exception.ExpressionException;
@@ -72,6 +73,15 @@ public class FunctionValue extends Value implements Fluff.ILazyFunction
         return expression.module;
     }
 
+    /**
+     * @return variables captured from the defining scope with {@code outer}, or null if there are none
+     */
+    @Nullable
+    public Map<String, LazyValue> getOuterState()
+    {
+        return outerState;
+    }
+
     @Override
     public String getPrettyString()
     {
@@ -158,10 +168,16 @@ public class FunctionValue extends Value implements Fluff.ILazyFunction
     }
 
     public LazyValue callInContext(Context c, Context.Type type, List<Value> params)
+    {
+        Value ret = callValueInContext(c, type, params);
+        return (cc, tt) -> ret;
+    }
+
+    public Value callValueInContext(Context c, Context.Type type, List<Value> params)
     {
         try
         {
-            return execute(c, type, expression, token, params, null);
+            return executeValue(c, type, expression, token, params, null);
         }
         catch (ExpressionException exc)
         {
@@ -215,13 +231,74 @@ public class FunctionValue extends Value implements Fluff.ILazyFunction
 
     @Override
     public LazyValue lazyEval(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<LazyValue> lazyParams)
+    {
+        Value ret = evalValue(c, type, e, t, lazyParams);
+        return (cc, tt) -> ret;
+    }
+
+    @Override
+    public Value evalValue(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<LazyValue> lazyParams)
     {
         List<Value> resolvedParams = unpackArgs(lazyParams, c);
-        return execute(c, type, e, t, resolvedParams, null);
+        return executeValue(c, type, e, t, resolvedParams, null);
     }
 
     public LazyValue execute(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<Value> params, @Nullable ThreadValue freshNewCallingThread)
     {
+        Value ret = executeValue(c, type, e, t, params, freshNewCallingThread);
+        return (cc, tt) -> ret;
+    }
+
+    public Value executeValue(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<Value> params, @Nullable ThreadValue freshNewCallingThread)
+    {
+        Value ret = executeFrame(c, type, e, t, params, freshNewCallingThread, false);
+        return ret instanceof TailCallValue tailCall ? tailCall.function.callValueInContext(tailCall.context, type, tailCall.args) : ret;
+    }
+
+    /**
+     * Calls the function as a step of a trampoline: a tail call to another function is not made,
+     * but returned as a {@link TailCallValue} for the caller to make in a loop.
+     */
+    public Value callTrampolinedInContext(Context c, Context.Type type, List<Value> params)
+    {
+        try
+        {
+            return executeFrame(c, type, expression, token, params, null, true);
+        }
+        catch (ExpressionException exc)
+        {
+            exc.stack.add(this);
+            throw exc;
+        }
+        catch (InternalExpressionException exc)
+        {
+            exc.stack.add(this);
+            throw new ExpressionException(c, expression, token, exc.getMessage(), exc.stack);
+        }
+        catch (ArithmeticException exc)
+        {
+            throw new ExpressionException(c, expression, token, "Your math is wrong, " + exc.getMessage(), Collections.singletonList(this));
+        }
+    }
+
+    /**
+     * Evaluates the body, looping over its tail calls to this function instead of recursing into them
+     *
+     * @return result of the call, or a pending tail call to another function
+     */
+    private Value executeFrame(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<Value> params, @Nullable ThreadValue freshNewCallingThread, boolean trampolined)
+    {
+        Value ret = evaluateBody(c, type, e, t, params, freshNewCallingThread, trampolined);
+        while (ret instanceof TailCallValue tailCall && tailCall.function.equals(this))
+        {
+            ret = evaluateBody(c, type, e, t, tailCall.args, freshNewCallingThread, trampolined);
+        }
+        return ret;
+    }
+
+    private Value evaluateBody(Context c, Context.Type type, Expression e, Tokenizer.Token t, List<Value> params, @Nullable ThreadValue freshNewCallingThread, boolean trampolined)
+    {
+        c.host.checkpoint();
         assertArgsOk(params, fixedArgs -> {
             if (fixedArgs)  // wrong number of args for fixed args
             {
@@ -239,25 +316,26 @@ public class FunctionValue extends Value implements Fluff.ILazyFunction
                             ". Should be at least " + args.size() + ", not " + params.size() + " like " + argList
             );
         });
-        Context newFrame = c.recreate();
+        // frame is sized upfront for all arguments and captured outer variables, so it never needs to grow
+        Context newFrame = c.recreate(outerState, args.size() + (varArgs == null ? 0 : 1));
         if (freshNewCallingThread != null)
         {
             newFrame.setThreadContext(freshNewCallingThread);
         }
+        newFrame.setTrampolined(trampolined);
 
-        if (outerState != null)
-        {
-            outerState.forEach(newFrame::setVariable);
-        }
         for (int i = 0; i < args.size(); i++)
         {
             String arg = args.get(i);
-            Value val = params.get(i).reboundedTo(arg); // todo check if we need to copy that
+            Value param = params.get(i);
+            // a value already bound to the same name can be shared: the callee only ever replaces it in its own frame,
+            // so only values bound to other names (or to none) need a copy bound to the argument
+            Value val = arg.equals(param.boundVariable) ? param : param.reboundedTo(arg);
             newFrame.setVariable(arg, (cc, tt) -> val);
         }
         if (varArgs != null)
         {
-            List<Value> extraParams = new ArrayList<>();
+            List<Value> extraParams = new ArrayList<>(params.size() - args.size());
             for (int i = args.size(), mx = params.size(); i < mx; i++)
             {
                 extraParams.add(params.get(i).reboundedTo(null)); // copy by value I guess
@@ -266,10 +344,11 @@ public class FunctionValue extends Value implements Fluff.ILazyFunction
             newFrame.setVariable(varArgs, (cc, tt) -> rest);
 
         }
-        Value retVal;
         try
         {
-            retVal = body.evalValue(newFrame, type); // todo not sure if we need to propagete type / consider boolean context in defined functions - answer seems ye
+            Value ret = body.evalValue(newFrame, type); // todo not sure if we need to propagete type / consider boolean context in defined functions - answer seems ye
+            // 'return' reaching the end of the body without throwing
+            return ret instanceof final SignalValue signal ? signal.retval : ret;
         }
         catch (BreakStatement | ContinueStatement exc)
         {
@@ -277,10 +356,26 @@ public class FunctionValue extends Value implements Fluff.ILazyFunction
         }
         catch (ReturnStatement returnStatement)
         {
-            retVal = returnStatement.retval;
+            return returnStatement.retval;
+        }
+    }
+
+    /**
+     * Evaluates a function call in tail position of a function body. Calls to the function being executed,
+     * and any calls from a function entered through a trampoline, are returned as pending {@link TailCallValue}
+     * instead of being made, so deep recursion runs in a loop instead of on the stack.
+     *
+     * @param self whether the call names the function whose body it is in
+     */
+    public static Value tailCall(Context c, Context.Type type, Module module, List<LazyValue> lazyParams, boolean self)
+    {
+        List<Value> args = Fluff.AbstractFunction.unpackLazy(lazyParams, c, Context.NONE);
+        FunctionArgument functionArgument = FunctionArgument.findIn(c, module, args, 0, false, true);
+        if (self || c.isTrampolined())
+        {
+            return new TailCallValue(functionArgument.function, functionArgument.args, c);
         }
-        Value otherRetVal = retVal;
-        return (cc, tt) -> otherRetVal;
+        return functionArgument.function.callValueInContext(c, type, functionArgument.args);
     }
 
     public Expression getExpression()
@@ -47,6 +47,18 @@ public abstract class LazyListValue extends AbstractListValue implements Iterato
                 current = start;
             }
 
+            @Override
+            public List<Value> unroll()
+            {
+                NumericList result = new NumericList();
+                for (; hasNext(); current += stepp)
+                {
+                    result.addDouble(current);
+                }
+                fatality();
+                return result;
+            }
+
             @Override
             public boolean hasNext()
             {
@@ -95,6 +107,18 @@ public abstract class LazyListValue extends AbstractListValue implements Iterato
                 current = start;
             }
 
+            @Override
+            public List<Value> unroll()
+            {
+                NumericList result = new NumericList();
+                for (; hasNext(); current += stepp)
+                {
+                    result.addLong(current);
+                }
+                fatality();
+                return result;
+            }
+
             @Override
             public boolean hasNext()
             {
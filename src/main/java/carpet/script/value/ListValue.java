@@ -2,6 +2,7 @@ package carpet.script.value;
 
 import carpet.script.LazyValue;
 import carpet.script.exception.InternalExpressionException;
+import carpet.script.utils.PersistentVector;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 
@@ -61,17 +62,38 @@ public class ListValue extends AbstractListValue implements ContainerValueInterf
     @Override
     public Value deepcopy()
     {
-        List<Value> copyItems = new ArrayList<>(items.size());
-        for (Value entry : items)
+        if (items instanceof NumericList numbers && numbers.isNumeric())
         {
-            copyItems.add(entry.deepcopy());
+            return new ListValue(numbers.copy());
+        }
+        // shares the structure, only containers can change in place so only these need copies of their own
+        List<Value> copyItems = PersistentVector.copyOf(items);
+        for (int i = 0, size = copyItems.size(); i < size; i++)
+        {
+            Value entry = copyItems.get(i);
+            if (entry instanceof ContainerValueInterface)
+            {
+                copyItems.set(i, entry.deepcopy());
+            }
         }
         return new ListValue(copyItems);
     }
 
     public ListValue(Collection<? extends Value> list)
     {
-        items = new ArrayList<>(list);
+        // copies of persistent lists share their structure, numbers stay unboxed
+        if (list instanceof NumericList numbers)
+        {
+            items = numbers.copy();
+        }
+        else if (list instanceof PersistentVector<? extends Value> vector)
+        {
+            items = PersistentVector.copyOf(vector);
+        }
+        else
+        {
+            items = new ArrayList<>(list);
+        }
     }
 
     protected ListValue(List<Value> list)
@@ -129,7 +151,12 @@ public class ListValue extends AbstractListValue implements ContainerValueInterf
     @Override
     public Value add(Value other)
     {
-        ListValue output = new ListValue();
+        NumericList numbers = NumericList.combine(items, other, Long::sum, Double::sum);
+        if (numbers != null)
+        {
+            return new ListValue(numbers);
+        }
+        ListValue output = new ListValue(new NumericList(items.size()));
         if (other instanceof ListValue list)
         {
             List<Value> otherItems = list.items;
@@ -164,7 +191,12 @@ public class ListValue extends AbstractListValue implements ContainerValueInterf
     @Override
     public Value subtract(Value other)
     {
-        ListValue output = new ListValue();
+        NumericList numbers = NumericList.combine(items, other, (a, b) -> a - b, (a, b) -> a - b);
+        if (numbers != null)
+        {
+            return new ListValue(numbers);
+        }
+        ListValue output = new ListValue(new NumericList(items.size()));
         if (other instanceof ListValue list)
         {
             List<Value> otherItems = list.items;
@@ -199,7 +231,12 @@ public class ListValue extends AbstractListValue implements ContainerValueInterf
     @Override
     public Value multiply(Value other)
     {
-        ListValue output = new ListValue();
+        NumericList numbers = NumericList.combine(items, other, (a, b) -> a * b, (a, b) -> a * b);
+        if (numbers != null)
+        {
+            return new ListValue(numbers);
+        }
+        ListValue output = new ListValue(new NumericList(items.size()));
         if (other instanceof ListValue list)
         {
             List<Value> otherItems = list.items;
@@ -228,7 +265,12 @@ public class ListValue extends AbstractListValue implements ContainerValueInterf
     @Override
     public Value divide(Value other)
     {
-        ListValue output = new ListValue();
+        NumericList numbers = NumericList.combine(items, other, null, (a, b) -> a / b);
+        if (numbers != null)
+        {
+            return new ListValue(numbers);
+        }
+        ListValue output = new ListValue(new NumericList(items.size()));
         if (other instanceof ListValue list)
         {
             List<Value> otherItems = list.items;
@@ -296,6 +338,12 @@ public class ListValue extends AbstractListValue implements ContainerValueInterf
     @Override
     public Iterator<Value> iterator()
     {
+        // a copy of a persistent list is a snapshot for the price of a path copy on the next update
+        if (items instanceof PersistentVector<Value> vector)
+        {
+            return vector.copy().iterator();
+        }
+        // numbers are boxed into the list itself on the way, so iterating again doesn't box them again
         return new ArrayList<>(items).iterator();
     } // should be thread safe
 
@@ -444,6 +444,14 @@ public class NBTSerializableValue extends Value implements ContainerValueInterfa
         return NBTSerializableValue.parseStringOrFail(v.getString());
     }
 
+    /**
+     * @return whether the tag is held by the value, rather than fetched from its source the first time it is needed
+     */
+    public boolean isTagLoaded()
+    {
+        return nbtTag != null;
+    }
+
     public Tag getTag()
     {
         if (nbtTag == null)
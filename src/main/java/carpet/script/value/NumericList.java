@@ -0,0 +1,485 @@
+package carpet.script.value;
+
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * List of values that keeps plain numbers unboxed, in a {@code long[]} while all of them are integers,
+ * or in a {@code double[]} while all of them are fractions. Values are boxed the first time they are read
+ * with {@link #get(int)}, and later reads return the same value, like a regular list would.
+ * Inserting anything else than a plain {@link NumericValue}, or mixing integers and fractions, switches the list
+ * to regular boxed storage for good, so it can hold any values and integers stay integers.
+ */
+public final class NumericList extends AbstractList<Value> implements RandomAccess
+{
+    // largest magnitude of integers that doubles can represent exactly
+    private static final long EXACT_DOUBLE = 1L << 53;
+
+    // exactly one of these is set, depending on what the list holds
+    @Nullable
+    private long[] longs;
+    @Nullable
+    private double[] doubles;
+    @Nullable
+    private Value[] values;
+    // values already handed out by get(int) for unboxed elements, allocated on the first read
+    @Nullable
+    private Value[] boxed;
+    private int size;
+
+    public NumericList()
+    {
+        this(10);
+    }
+
+    public NumericList(int capacity)
+    {
+        longs = new long[capacity];
+    }
+
+    private NumericList(@Nullable long[] longs, @Nullable double[] doubles, @Nullable Value[] values, int size)
+    {
+        this.longs = longs;
+        this.doubles = doubles;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @return whether all elements are held unboxed
+     */
+    public boolean isNumeric()
+    {
+        return values == null;
+    }
+
+    /**
+     * @return whether all elements are held unboxed as integers
+     */
+    public boolean isIntegral()
+    {
+        return longs != null;
+    }
+
+    /**
+     * @return independent list with the same elements
+     */
+    public NumericList copy()
+    {
+        int capacity = Math.max(size, 1);
+        NumericList copy = new NumericList(
+                longs == null ? null : Arrays.copyOf(longs, capacity),
+                doubles == null ? null : Arrays.copyOf(doubles, capacity),
+                values == null ? null : Arrays.copyOf(values, capacity),
+                size
+        );
+        copy.boxed = boxed == null ? null : Arrays.copyOf(boxed, capacity);
+        return copy;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public Value get(int index)
+    {
+        checkIndex(index, size);
+        if (values != null)
+        {
+            return values[index];
+        }
+        if (boxed == null)
+        {
+            boxed = new Value[capacity()];
+        }
+        Value value = boxed[index];
+        if (value == null)
+        {
+            value = longs != null ? new NumericValue(longs[index]) : new NumericValue(doubles[index]);
+            boxed[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return element at the index as a double, only valid for lists that {@link #isNumeric()}
+     */
+    public double getDouble(int index)
+    {
+        checkIndex(index, size);
+        return longs != null ? (double) longs[index] : doubles[index];
+    }
+
+    /**
+     * @return element at the index as a long, only valid for lists that {@link #isIntegral()}
+     */
+    public long getLong(int index)
+    {
+        checkIndex(index, size);
+        return longs[index];
+    }
+
+    @Override
+    public Value set(int index, Value element)
+    {
+        Value previous = get(index);
+        store(index, element);
+        return previous;
+    }
+
+    @Override
+    public boolean add(Value element)
+    {
+        grow(size + 1);
+        size++;
+        store(size - 1, element);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Value element)
+    {
+        checkIndex(index, size + 1);
+        grow(size + 1);
+        Object array = array();
+        System.arraycopy(array, index, array, index + 1, size - index);
+        if (boxed != null)
+        {
+            System.arraycopy(boxed, index, boxed, index + 1, size - index);
+        }
+        size++;
+        store(index, element);
+        modCount++;
+    }
+
+    public void addLong(long element)
+    {
+        if (longs == null)
+        {
+            add(new NumericValue(element));
+            return;
+        }
+        grow(size + 1);
+        longs[size++] = element;
+        modCount++;
+    }
+
+    public void addDouble(double element)
+    {
+        if (doubles == null)
+        {
+            add(new NumericValue(element));
+            return;
+        }
+        grow(size + 1);
+        doubles[size++] = element;
+        modCount++;
+    }
+
+    @Override
+    public Value remove(int index)
+    {
+        Value removed = get(index);
+        removeRange(index, index + 1);
+        return removed;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex)
+    {
+        Object array = array();
+        System.arraycopy(array, toIndex, array, fromIndex, size - toIndex);
+        if (values != null)
+        {
+            Arrays.fill(values, size - (toIndex - fromIndex), size, null);
+        }
+        if (boxed != null)
+        {
+            System.arraycopy(boxed, toIndex, boxed, fromIndex, size - toIndex);
+            Arrays.fill(boxed, size - (toIndex - fromIndex), size, null);
+        }
+        size -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    @Override
+    public void clear()
+    {
+        longs = new long[10];
+        doubles = null;
+        values = null;
+        boxed = null;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Sorts the list in the natural order of its values
+     */
+    public void sort()
+    {
+        if (longs != null)
+        {
+            Arrays.sort(longs, 0, size);
+        }
+        else if (doubles != null)
+        {
+            // same order as Double.compare, used by NumericValue.compareTo
+            Arrays.sort(doubles, 0, size);
+        }
+        else
+        {
+            Arrays.sort(values, 0, size);
+        }
+        boxed = null;
+        modCount++;
+    }
+
+    /**
+     * Adds the elements of the other list to the elements of this list, in place
+     *
+     * @return false, without changing anything, if either list is not {@link #isNumeric()} or the sizes differ
+     */
+    public boolean accumulate(List<Value> other)
+    {
+        if (!(other instanceof NumericList numbers) || !isNumeric() || !numbers.isNumeric() || numbers.size != size)
+        {
+            return false;
+        }
+        if (longs != null && numbers.longs != null)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                longs[i] += numbers.longs[i];
+            }
+            boxed = null;
+            modCount++;
+            return true;
+        }
+        if (!toDoubles())
+        {
+            return false;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            doubles[i] += numbers.getDouble(i);
+        }
+        boxed = null;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Applies an arithmetic operation element by element on unboxed numbers, with the same rules as {@link NumericValue}:
+     * integers stay integers if there is an operation for them, otherwise the result is a list of fractions.
+     *
+     * @param other list of the same size or a single number
+     * @param longOperation operation on integers, or null if the result is always a fraction
+     * @return list of results, or null if either side has non-numbers and the boxed values need to do the work
+     */
+    @Nullable
+    public static NumericList combine(List<Value> items, Value other, @Nullable LongBinaryOperator longOperation, DoubleBinaryOperator doubleOperation)
+    {
+        if (!(items instanceof NumericList left) || !left.isNumeric())
+        {
+            return null;
+        }
+        int size = left.size;
+        if (other instanceof ListValue list)
+        {
+            if (!(list.getItems() instanceof NumericList right) || !right.isNumeric() || right.size != size)
+            {
+                return null;
+            }
+            if (longOperation != null && left.longs != null && right.longs != null)
+            {
+                long[] result = new long[Math.max(size, 1)];
+                for (int i = 0; i < size; i++)
+                {
+                    result[i] = longOperation.applyAsLong(left.longs[i], right.longs[i]);
+                }
+                return new NumericList(result, null, null, size);
+            }
+            double[] result = new double[Math.max(size, 1)];
+            for (int i = 0; i < size; i++)
+            {
+                result[i] = doubleOperation.applyAsDouble(left.getDouble(i), right.getDouble(i));
+            }
+            return new NumericList(null, result, null, size);
+        }
+        if (other.getClass() != NumericValue.class)
+        {
+            return null;
+        }
+        NumericValue number = (NumericValue) other;
+        if (longOperation != null && left.longs != null && number.hasLongValue())
+        {
+            long operand = number.getLong();
+            long[] result = new long[Math.max(size, 1)];
+            for (int i = 0; i < size; i++)
+            {
+                result[i] = longOperation.applyAsLong(left.longs[i], operand);
+            }
+            return new NumericList(result, null, null, size);
+        }
+        double operand = number.getDouble();
+        double[] result = new double[Math.max(size, 1)];
+        for (int i = 0; i < size; i++)
+        {
+            result[i] = doubleOperation.applyAsDouble(left.getDouble(i), operand);
+        }
+        return new NumericList(null, result, null, size);
+    }
+
+    private void store(int index, Value element)
+    {
+        if (values == null && element.getClass() == NumericValue.class)
+        {
+            NumericValue number = (NumericValue) element;
+            boolean integer = number.hasLongValue();
+            if (size == 1)
+            {
+                // nothing else to convert, the only element picks the storage
+                switchTo(integer);
+            }
+            if (integer && longs != null)
+            {
+                longs[index] = number.getLong();
+                cache(index, element);
+                return;
+            }
+            if (!integer && doubles != null)
+            {
+                doubles[index] = number.getDouble();
+                cache(index, element);
+                return;
+            }
+        }
+        toValues();
+        values[index] = element;
+    }
+
+    private void cache(int index, Value element)
+    {
+        if (boxed != null)
+        {
+            boxed[index] = element;
+        }
+    }
+
+    private void switchTo(boolean integer)
+    {
+        if (integer && longs == null)
+        {
+            longs = new long[capacity()];
+            doubles = null;
+        }
+        else if (!integer && doubles == null)
+        {
+            doubles = new double[capacity()];
+            longs = null;
+        }
+    }
+
+    /**
+     * @return false, leaving the list as is, if the integers can't be represented exactly as doubles
+     */
+    private boolean toDoubles()
+    {
+        if (longs == null)
+        {
+            return doubles != null;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            if (!isExactDouble(longs[i]))
+            {
+                return false;
+            }
+        }
+        double[] converted = new double[longs.length];
+        for (int i = 0; i < size; i++)
+        {
+            converted[i] = longs[i];
+        }
+        doubles = converted;
+        longs = null;
+        boxed = null;
+        return true;
+    }
+
+    private void toValues()
+    {
+        if (values != null)
+        {
+            return;
+        }
+        Value[] boxedValues = new Value[capacity()];
+        for (int i = 0; i < size; i++)
+        {
+            boxedValues[i] = get(i);
+        }
+        values = boxedValues;
+        longs = null;
+        doubles = null;
+        boxed = null;
+    }
+
+    private static boolean isExactDouble(long value)
+    {
+        return value >= -EXACT_DOUBLE && value <= EXACT_DOUBLE;
+    }
+
+    private Object array()
+    {
+        return longs != null ? longs : doubles != null ? doubles : values;
+    }
+
+    private int capacity()
+    {
+        return longs != null ? longs.length : doubles != null ? doubles.length : values.length;
+    }
+
+    private void grow(int capacity)
+    {
+        int current = capacity();
+        if (capacity <= current)
+        {
+            return;
+        }
+        int newCapacity = Math.max(capacity, current + (current >> 1) + 1);
+        if (longs != null)
+        {
+            longs = Arrays.copyOf(longs, newCapacity);
+        }
+        else if (doubles != null)
+        {
+            doubles = Arrays.copyOf(doubles, newCapacity);
+        }
+        else
+        {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        if (boxed != null)
+        {
+            boxed = Arrays.copyOf(boxed, newCapacity);
+        }
+    }
+
+    private static void checkIndex(int index, int length)
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+    }
+}
@@ -320,6 +320,11 @@ public class NumericValue extends Value
         return longValue != null ? new NumericValue(-longValue) : new NumericValue(-value);
     }
 
+    boolean hasLongValue()
+    {
+        return longValue != null;
+    }
+
     public boolean isInteger()
     {
         return longValue != null || getDouble() == getLong();
@@ -0,0 +1,124 @@
+package carpet.script.value;
+
+import carpet.script.Context;
+import carpet.script.LazyValue;
+import carpet.script.exception.BreakStatement;
+import carpet.script.exception.ContinueStatement;
+import carpet.script.exception.InternalExpressionException;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.nbt.Tag;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+
+/**
+ * 'break', 'continue' or 'return' in a position where the value of the statement reaches the loop or function
+ * it controls, returned as a value instead of being thrown as {@link carpet.script.exception.BreakStatement},
+ * {@link carpet.script.exception.ContinueStatement} or {@link carpet.script.exception.ReturnStatement}.
+ * Statement sequences that can contain them stop and pass them on, and loops and functions consume them,
+ * so they never reach the script.
+ */
+public class SignalValue extends Value
+{
+    public enum Kind
+    {
+        BREAK, CONTINUE, RETURN
+    }
+
+    public static final SignalValue BREAK = new SignalValue(Kind.BREAK, null);
+    public static final SignalValue CONTINUE = new SignalValue(Kind.CONTINUE, null);
+
+    public final Kind kind;
+    @Nullable
+    public final Value retval;
+
+    private SignalValue(Kind kind, @Nullable Value retval)
+    {
+        this.kind = kind;
+        this.retval = retval;
+    }
+
+    public static SignalValue of(Kind kind, @Nullable Value retval)
+    {
+        if (retval == null)
+        {
+            return switch (kind)
+            {
+                case BREAK -> BREAK;
+                case CONTINUE -> CONTINUE;
+                case RETURN -> new SignalValue(kind, Value.NULL);
+            };
+        }
+        return new SignalValue(kind, retval);
+    }
+
+    public boolean isBreak()
+    {
+        return kind == Kind.BREAK;
+    }
+
+    /**
+     * Evaluates the body of a loop, turning thrown 'break' and 'continue' into signals, so loops handle
+     * both the same way with {@link #loopValue} and {@link #breaksLoop}
+     */
+    public static Value evalLoopBody(LazyValue body, Context c, Context.Type type)
+    {
+        try
+        {
+            return body.evalValue(c, type);
+        }
+        catch (BreakStatement stmt)
+        {
+            return of(Kind.BREAK, stmt.retval);
+        }
+        catch (ContinueStatement stmt)
+        {
+            return of(Kind.CONTINUE, stmt.retval);
+        }
+    }
+
+    /**
+     * @return what the loop body evaluated to or passed to 'break' or 'continue', or {@code orElse} if they got nothing
+     */
+    @Nullable
+    public static Value loopValue(Value result, @Nullable Value orElse)
+    {
+        if (result instanceof final SignalValue signal)
+        {
+            return signal.retval == null ? orElse : signal.retval;
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the loop body asked to stop the loop
+     */
+    public static boolean breaksLoop(Value result)
+    {
+        return result instanceof final SignalValue signal && signal.isBreak();
+    }
+
+    @Override
+    public String getString()
+    {
+        return kind.name().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean getBoolean()
+    {
+        throw new InternalExpressionException("'" + getString() + "' leaked out of the loop or function it controls");
+    }
+
+    @Override
+    public String getTypeString()
+    {
+        return "null";
+    }
+
+    @Override
+    public Tag toTag(boolean force, RegistryAccess regs)
+    {
+        throw new NBTSerializableValue.IncompatibleTypeException(this);
+    }
+}
@@ -1,16 +1,25 @@
 package carpet.script.value;
 
+import com.google.common.cache.CacheBuilder;
 import net.minecraft.core.RegistryAccess;
 import net.minecraft.nbt.StringTag;
 import net.minecraft.nbt.Tag;
 
 import javax.annotation.Nullable;
+import java.util.Map;
 
 public class StringValue extends Value
 {
     public static Value EMPTY = StringValue.of("");
 
+    // shared values of strings that come up over and over, held weakly so the ones no longer used go away
+    private static final Map<String, StringValue> interned = CacheBuilder.newBuilder().weakValues().<String, StringValue>build().asMap();
+
     private final String str;
+    // strings are mostly hashed as map keys, and Value.hashCode builds a new string each time
+    private int hash;
+    // interned values are handed to every app and thread, so they are never bound in place
+    private boolean shared;
 
     @Override
     public String getString()
@@ -40,6 +49,66 @@ public class StringValue extends Value
         return value == null ? Value.NULL : new StringValue(value);
     }
 
+    /**
+     * @return shared value for a string used all the time, like a registry id or a string literal,
+     * so that its hash is computed once and lookups with it in maps can compare identities
+     */
+    public static StringValue intern(String value)
+    {
+        return interned.computeIfAbsent(value, str -> {
+            StringValue v = new StringValue(str);
+            v.shared = true;
+            return v;
+        });
+    }
+
+    @Override
+    public Value reboundedTo(String value)
+    {
+        StringValue copy = (StringValue) super.reboundedTo(value);
+        copy.shared = false;
+        return copy;
+    }
+
+    /**
+     * Binds interned values as copies, otherwise a variable name set by one app or thread would show up in the others
+     */
+    @Override
+    public Value bindTo(String value)
+    {
+        return shared ? reboundedTo(value) : super.bindTo(value);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        if (str == null)
+        {
+            return super.hashCode();
+        }
+        int h = hash;
+        if (h == 0 && !str.isEmpty())
+        {
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (o == this)
+        {
+            return true;
+        }
+        if (str != null && o instanceof StringValue other && other.str != null)
+        {
+            return (hash == 0 || other.hash == 0 || hash == other.hash) && str.equals(other.str);
+        }
+        return super.equals(o);
+    }
+
     @Override
     public String getTypeString()
     {
@@ -0,0 +1,54 @@
+package carpet.script.value;
+
+import carpet.script.Context;
+import carpet.script.exception.InternalExpressionException;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.nbt.Tag;
+
+import java.util.List;
+
+/**
+ * A function call in tail position of a function body, with its arguments already evaluated but not made yet.
+ * Only ever returned from function bodies, so the function being executed ({@link FunctionValue})
+ * or an enclosing {@code trampoline} can make the call without growing the stack. Never reaches the script.
+ */
+public class TailCallValue extends Value
+{
+    public final FunctionValue function;
+    public final List<Value> args;
+    /**
+     * Frame the call was made from
+     */
+    public final Context context;
+
+    public TailCallValue(FunctionValue function, List<Value> args, Context context)
+    {
+        this.function = function;
+        this.args = args;
+        this.context = context;
+    }
+
+    @Override
+    public String getString()
+    {
+        return function.getString();
+    }
+
+    @Override
+    public boolean getBoolean()
+    {
+        throw new InternalExpressionException("Pending tail call of " + function.fullName() + " leaked out of its function");
+    }
+
+    @Override
+    public String getTypeString()
+    {
+        return "function";
+    }
+
+    @Override
+    public Tag toTag(boolean force, RegistryAccess regs)
+    {
+        throw new NBTSerializableValue.IncompatibleTypeException(this);
+    }
+}
@@ -195,7 +195,7 @@ public class ValueConversions
         {
             return Value.NULL;
         }
-        return new StringValue(simplify(id));
+        return StringValue.intern(simplify(id));
     }
 
     public static String simplify(ResourceLocation id)
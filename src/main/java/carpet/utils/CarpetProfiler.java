@@ -3,6 +3,7 @@ package carpet.utils;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.core.BlockPos;
 import net.minecraft.core.RegistryAccess;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.core.registries.Registries;
@@ -74,14 +75,58 @@ public class CarpetProfiler
         TILEENTITY
     }
 
-    public static record ProfilerToken(TYPE type, Object section, long start, Level world)
+    public static final class ProfilerToken
     {
+        final TYPE type;
+        final Object section;
+        final Level world;
+        long start;
+        // set when the token is handed out by the continuous profiler, which reuses it tick after tick
+        final ContinuousProfiler.Section slot;
+        boolean open;
+        // set for entity and block entity sections while spatial attribution is running
+        BlockPos position;
+
         public ProfilerToken(TYPE type, Object section, Level world)
         {
-            this(type, section, System.nanoTime(), world);
+            this(type, section, world, null);
+            this.start = System.nanoTime();
+        }
+
+        ProfilerToken(TYPE type, Object section, Level world, ContinuousProfiler.Section slot)
+        {
+            this.type = type;
+            this.section = section;
+            this.world = world;
+            this.slot = slot;
+        }
+
+        public TYPE type()
+        {
+            return type;
+        }
+
+        public Object section()
+        {
+            return section;
+        }
+
+        public long start()
+        {
+            return start;
+        }
+
+        public Level world()
+        {
+            return world;
         }
     }
 
+    public static boolean is_profiling()
+    {
+        return tick_health_requested != 0L || ContinuousProfiler.isRunning() || SpatialProfiler.isRunning();
+    }
+
     public static void prepare_tick_report(CommandSourceStack source, int ticks)
     {
         //maybe add so it only spams the sending player, but honestly - all may want to see it
@@ -111,6 +156,12 @@ public class CarpetProfiler
 
     public static ProfilerToken start_section(Level world, String name, TYPE type)
     {
+        if (ContinuousProfiler.isRunning())
+        {
+            ProfilerToken token = ContinuousProfiler.start_section(world, name, type);
+            if (token != null)
+                return token;
+        }
         if (tick_health_requested == 0L || test_type != TYPE.GENERAL || current_tick_start == 0)
             return null;
         return new ProfilerToken(type, name, world);
@@ -118,23 +169,43 @@ public class CarpetProfiler
 
     public static ProfilerToken start_entity_section(Level world, Entity e, TYPE type)
     {
-        if (tick_health_requested == 0L || test_type != TYPE.ENTITY || current_tick_start == 0)
-            return null;
-        return new ProfilerToken(type, e.getType(), world);
+        return start_positioned_section(world, e.getType(), e.blockPosition(), type);
     }
 
     public static ProfilerToken start_block_entity_section(Level world, BlockEntity be, TYPE type)
     {
-        if (tick_health_requested == 0L || test_type != TYPE.ENTITY || current_tick_start == 0)
-            return null;
-        return new ProfilerToken(type, be.getType(), world);
+        return start_positioned_section(world, be.getType(), be.getBlockPos(), type);
+    }
+
+    private static ProfilerToken start_positioned_section(Level world, Object section, BlockPos pos, TYPE type)
+    {
+        ProfilerToken token = null;
+        if (ContinuousProfiler.isRunning())
+            token = ContinuousProfiler.start_section(world, section, type);
+        boolean spatial = SpatialProfiler.isRecording(world);
+        if (token == null)
+        {
+            if (!spatial && (tick_health_requested == 0L || test_type != TYPE.ENTITY || current_tick_start == 0))
+                return null;
+            token = new ProfilerToken(type, section, world);
+        }
+        token.position = spatial ? pos : null;
+        return token;
     }
 
     public static void end_current_section(ProfilerToken tok)
     {
-        if (tick_health_requested == 0L || test_type != TYPE.GENERAL || current_tick_start == 0 || tok == null)
+        if (tok == null)
             return;
         long end_time = System.nanoTime();
+        if (tok.slot != null)
+        {
+            if (!tok.open)
+                return;
+            ContinuousProfiler.end_section(tok, end_time);
+        }
+        if (tick_health_requested == 0L || test_type != TYPE.GENERAL || current_tick_start == 0)
+            return;
         if (tok.type == TYPE.GENERAL)
         {
             Level world = tok.world;
@@ -147,9 +218,19 @@ public class CarpetProfiler
 
     public static void end_current_entity_section(ProfilerToken tok)
     {
-        if (tick_health_requested == 0L || test_type != TYPE.ENTITY || current_tick_start == 0 || tok == null)
+        if (tok == null)
             return;
         long end_time = System.nanoTime();
+        if (tok.slot != null)
+        {
+            if (!tok.open)
+                return;
+            ContinuousProfiler.end_section(tok, end_time);
+        }
+        if (tok.position != null && SpatialProfiler.isRunning())
+            SpatialProfiler.record(tok.world, tok.position, tok.type == TYPE.TILEENTITY, end_time - tok.start);
+        if (tick_health_requested == 0L || test_type != TYPE.ENTITY || current_tick_start == 0)
+            return;
         Pair<Level,Object> section = Pair.of(tok.world, tok.section);
         ENTITY_TIMES.addTo(section, end_time - tok.start);
         ENTITY_COUNT.addTo(section, 1);
@@ -158,13 +239,18 @@ public class CarpetProfiler
     public static void start_tick_profiling()
     {
         current_tick_start = System.nanoTime();
+        ContinuousProfiler.start_tick(current_tick_start);
     }
 
     public static void end_tick_profiling(MinecraftServer server)
     {
-        if (current_tick_start == 0L)
+        long end_time = System.nanoTime();
+        ContinuousProfiler.end_tick(server, end_time);
+        SpatialProfiler.end_tick(server);
+        PathfindingProfiler.end_tick(server);
+        if (tick_health_requested == 0L || current_tick_start == 0L)
             return;
-        SECTION_STATS.addTo("tick", System.nanoTime() - current_tick_start);
+        SECTION_STATS.addTo("tick", end_time - current_tick_start);
         tick_health_elapsed--;
         if (tick_health_elapsed <= 0)
         {
@@ -0,0 +1,470 @@
+package carpet.utils;
+
+import carpet.CarpetSettings;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Always-on counterpart of the one-shot {@code /profile health} and {@code /profile entities} reports.
+ * Every section, entity type and block entity type gets a preallocated {@link Section} with a reusable
+ * {@link CarpetProfiler.ProfilerToken}, per tick totals are folded into a {@link LatencyHistogram}, and
+ * the last N ticks are kept in a ring buffer so lag spikes can be inspected after they happened.
+ * Only sections ticked on the server thread are recorded.
+ */
+public class ContinuousProfiler
+{
+    public static final int DEFAULT_HISTORY = 1200;
+    // only general sections get a column in the tick history, entity types are kept in histograms only
+    private static final int HISTORY_COLUMNS = 64;
+
+    private static boolean running = false;
+    private static Thread serverThread = null;
+    private static long tickStart = 0L;
+    private static long ticksRecorded = 0L;
+
+    private static final Object2ObjectOpenHashMap<Object, Section> GLOBAL_SECTIONS = new Object2ObjectOpenHashMap<>();
+    private static final Reference2ObjectOpenHashMap<Level, Object2ObjectOpenHashMap<Object, Section>> LEVEL_SECTIONS = new Reference2ObjectOpenHashMap<>();
+    private static final List<Section> ALL_SECTIONS = new ArrayList<>();
+    private static final Section[] HISTORY_SECTIONS = new Section[HISTORY_COLUMNS];
+    private static int historyColumns = 0;
+    private static final LatencyHistogram TICK_HISTOGRAM = new LatencyHistogram();
+
+    private static int historySize = 0;
+    private static int historyHead = 0;
+    private static int historyFilled = 0;
+    private static long[] historyTickNumbers = new long[0];
+    private static long[] historyTickTimes = new long[0];
+    private static long[] historySectionTimes = new long[0];
+
+    private static final EventType TICK_EVENT = EventType.getEventType(TickEvent.class);
+    private static final EventType SECTION_EVENT = EventType.getEventType(SectionEvent.class);
+
+    public static class Section
+    {
+        final Level world;
+        final Object key;
+        final CarpetProfiler.TYPE type;
+        final int column;
+        final CarpetProfiler.ProfilerToken token;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        private String name;
+        long tickNanos;
+        int tickCalls;
+        long totalCalls;
+
+        Section(Level world, Object key, CarpetProfiler.TYPE type, int column)
+        {
+            this.world = world;
+            this.key = key;
+            this.type = type;
+            this.column = column;
+            this.token = new CarpetProfiler.ProfilerToken(type, key, world, this);
+        }
+
+        public String name()
+        {
+            if (name == null)
+            {
+                name = sectionName(world, key);
+            }
+            return name;
+        }
+    }
+
+    public static boolean isRunning()
+    {
+        return running;
+    }
+
+    public static void start(MinecraftServer server, int history)
+    {
+        reset();
+        historySize = history;
+        historyTickNumbers = new long[history];
+        historyTickTimes = new long[history];
+        historySectionTimes = new long[history * HISTORY_COLUMNS];
+        serverThread = server.getRunningThread();
+        running = true;
+    }
+
+    public static void stop()
+    {
+        running = false;
+        tickStart = 0L;
+    }
+
+    public static void reset()
+    {
+        stop();
+        GLOBAL_SECTIONS.clear();
+        LEVEL_SECTIONS.clear();
+        ALL_SECTIONS.clear();
+        Arrays.fill(HISTORY_SECTIONS, null);
+        historyColumns = 0;
+        TICK_HISTOGRAM.reset();
+        historySize = 0;
+        historyHead = 0;
+        historyFilled = 0;
+        historyTickNumbers = new long[0];
+        historyTickTimes = new long[0];
+        historySectionTimes = new long[0];
+        ticksRecorded = 0L;
+        serverThread = null;
+    }
+
+    public static CarpetProfiler.ProfilerToken start_section(Level world, Object key, CarpetProfiler.TYPE type)
+    {
+        if (tickStart == 0L || Thread.currentThread() != serverThread)
+        {
+            return null;
+        }
+        Section section = getSection(world, key, type);
+        CarpetProfiler.ProfilerToken token = section.token;
+        if (token.open)
+        {
+            // same section nested in itself, or its previous token got never closed
+            token = new CarpetProfiler.ProfilerToken(type, key, world, section);
+        }
+        token.open = true;
+        token.start = System.nanoTime();
+        return token;
+    }
+
+    public static void end_section(CarpetProfiler.ProfilerToken token, long endTime)
+    {
+        token.open = false;
+        if (!running)
+        {
+            return;
+        }
+        Section section = token.slot;
+        section.tickNanos += endTime - token.start;
+        section.tickCalls++;
+    }
+
+    public static void start_tick(long time)
+    {
+        if (running)
+        {
+            tickStart = time;
+        }
+    }
+
+    public static void end_tick(MinecraftServer server, long time)
+    {
+        if (!running || tickStart == 0L)
+        {
+            return;
+        }
+        long tickTime = time - tickStart;
+        long tickNumber = server.getTickCount();
+        TICK_HISTOGRAM.recordNanos(tickTime);
+        int row = historyHead;
+        historyTickNumbers[row] = tickNumber;
+        historyTickTimes[row] = tickTime;
+        int rowOffset = row * HISTORY_COLUMNS;
+        boolean emitSections = SECTION_EVENT.isEnabled();
+        for (int i = 0, size = ALL_SECTIONS.size(); i < size; i++)
+        {
+            Section section = ALL_SECTIONS.get(i);
+            if (section.column >= 0)
+            {
+                historySectionTimes[rowOffset + section.column] = section.tickNanos;
+            }
+            section.token.open = false;
+            if (section.tickCalls == 0)
+            {
+                continue;
+            }
+            section.histogram.recordNanos(section.tickNanos);
+            section.totalCalls += section.tickCalls;
+            if (emitSections)
+            {
+                SectionEvent event = new SectionEvent();
+                event.tick = tickNumber;
+                event.section = section.name();
+                event.calls = section.tickCalls;
+                event.duration = section.tickNanos;
+                event.commit();
+            }
+            section.tickNanos = 0L;
+            section.tickCalls = 0;
+        }
+        if (TICK_EVENT.isEnabled())
+        {
+            TickEvent event = new TickEvent();
+            event.tick = tickNumber;
+            event.duration = tickTime;
+            event.commit();
+        }
+        historyHead = (historyHead + 1) % historySize;
+        if (historyFilled < historySize)
+        {
+            historyFilled++;
+        }
+        ticksRecorded++;
+        tickStart = 0L;
+    }
+
+    private static Section getSection(Level world, Object key, CarpetProfiler.TYPE type)
+    {
+        Object2ObjectOpenHashMap<Object, Section> sections = GLOBAL_SECTIONS;
+        if (world != null)
+        {
+            sections = LEVEL_SECTIONS.get(world);
+            if (sections == null)
+            {
+                sections = new Object2ObjectOpenHashMap<>();
+                LEVEL_SECTIONS.put(world, sections);
+            }
+        }
+        Section section = sections.get(key);
+        if (section == null)
+        {
+            int column = -1;
+            if (type == CarpetProfiler.TYPE.GENERAL && historyColumns < HISTORY_COLUMNS)
+            {
+                column = historyColumns++;
+            }
+            section = new Section(world, key, type, column);
+            if (column >= 0)
+            {
+                HISTORY_SECTIONS[column] = section;
+            }
+            sections.put(key, section);
+            ALL_SECTIONS.add(section);
+        }
+        return section;
+    }
+
+    private static String sectionName(Level world, Object key)
+    {
+        String name;
+        if (key instanceof EntityType<?> entityType)
+        {
+            name = shortId(world.registryAccess().registryOrThrow(Registries.ENTITY_TYPE).getKey(entityType));
+        }
+        else if (key instanceof BlockEntityType<?> blockEntityType)
+        {
+            name = shortId(world.registryAccess().registryOrThrow(Registries.BLOCK_ENTITY_TYPE).getKey(blockEntityType));
+        }
+        else
+        {
+            name = String.valueOf(key);
+        }
+        return world == null ? name : name + " in " + shortId(world.dimension().location());
+    }
+
+    private static String shortId(ResourceLocation id)
+    {
+        if (id == null)
+        {
+            return "unknown";
+        }
+        return "minecraft".equals(id.getNamespace()) ? id.getPath() : id.toString();
+    }
+
+    private static double ms(long micros)
+    {
+        return micros / 1000.0;
+    }
+
+    public static int report(CommandSourceStack source, boolean entities)
+    {
+        if (ticksRecorded == 0)
+        {
+            Messenger.m(source, "r Continuous profiler has no data, start it with /profile continuous start");
+            return 0;
+        }
+        Messenger.m(source, "w ");
+        Messenger.m(source, "wb Tick times over %d ticks:".formatted(ticksRecorded));
+        Messenger.m(source, "w  mean ", "y %.2fms".formatted(ms((long) TICK_HISTOGRAM.mean())),
+                "w , p50 ", "y %.2fms".formatted(ms(TICK_HISTOGRAM.percentile(50))),
+                "w , p99 ", "y %.2fms".formatted(ms(TICK_HISTOGRAM.percentile(99))),
+                "w , max ", "r %.2fms".formatted(ms(TICK_HISTOGRAM.max())));
+        List<Section> sorted = new ArrayList<>();
+        for (Section section : ALL_SECTIONS)
+        {
+            if (section.histogram.count() > 0 && (section.type != CarpetProfiler.TYPE.GENERAL) == entities)
+            {
+                sorted.add(section);
+            }
+        }
+        sorted.sort(Comparator.comparingLong((Section s) -> s.histogram.percentile(99)).reversed());
+        Messenger.m(source, entities ? "wb Top 10 entity types by p99 tick time:" : "wb Top 10 sections by p99 tick time:");
+        for (int i = 0; i < Math.min(10, sorted.size()); i++)
+        {
+            Section section = sorted.get(i);
+            LatencyHistogram histogram = section.histogram;
+            Messenger.m(source, "w  - %s: ".formatted(section.name()),
+                    "^ %d ticks, %d calls".formatted(histogram.count(), section.totalCalls),
+                    "y p50 %.3fms".formatted(ms(histogram.percentile(50))),
+                    "w , ", "y p99 %.3fms".formatted(ms(histogram.percentile(99))),
+                    "w , ", "r max %.3fms".formatted(ms(histogram.max())));
+        }
+        return 1;
+    }
+
+    public static int spikes(CommandSourceStack source, int count)
+    {
+        if (historyFilled == 0)
+        {
+            Messenger.m(source, "r Continuous profiler has no data, start it with /profile continuous start");
+            return 0;
+        }
+        Integer[] rows = new Integer[historyFilled];
+        for (int i = 0; i < historyFilled; i++)
+        {
+            rows[i] = i;
+        }
+        Arrays.sort(rows, Comparator.comparingLong((Integer r) -> historyTickTimes[r]).reversed());
+        Messenger.m(source, "w ");
+        Messenger.m(source, "wb Worst %d of the last %d ticks:".formatted(Math.min(count, historyFilled), historyFilled));
+        for (int i = 0; i < Math.min(count, historyFilled); i++)
+        {
+            int row = rows[i];
+            int rowOffset = row * HISTORY_COLUMNS;
+            int worst = -1;
+            for (int c = 0; c < historyColumns; c++)
+            {
+                if (worst < 0 || historySectionTimes[rowOffset + c] > historySectionTimes[rowOffset + worst])
+                {
+                    worst = c;
+                }
+            }
+            String culprit = worst < 0 ? "" : " (%s: %.2fms)".formatted(HISTORY_SECTIONS[worst].name(), historySectionTimes[rowOffset + worst] / 1000000.0);
+            Messenger.m(source, "w  - tick %d: ".formatted(historyTickNumbers[row]),
+                    "y %.2fms".formatted(historyTickTimes[row] / 1000000.0),
+                    "g " + culprit);
+        }
+        return 1;
+    }
+
+    public static int export(CommandSourceStack source)
+    {
+        if (ticksRecorded == 0)
+        {
+            Messenger.m(source, "r Continuous profiler has no data, start it with /profile continuous start");
+            return 0;
+        }
+        Path folder = source.getServer().getWorldPath(LevelResource.ROOT).resolve("profiles");
+        String stem = "profile-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path ticksFile = folder.resolve(stem + "-ticks.csv");
+        Path summaryFile = folder.resolve(stem + "-summary.csv");
+        try
+        {
+            Files.createDirectories(folder);
+            try (BufferedWriter writer = Files.newBufferedWriter(ticksFile))
+            {
+                writer.write("tick,tick_ms");
+                for (int c = 0; c < historyColumns; c++)
+                {
+                    writer.write("," + csv(HISTORY_SECTIONS[c].name()));
+                }
+                writer.newLine();
+                for (int i = 0; i < historyFilled; i++)
+                {
+                    int row = (historyHead - historyFilled + i + historySize) % historySize;
+                    writer.write(historyTickNumbers[row] + "," + String.format(Locale.ROOT, "%.4f", historyTickTimes[row] / 1000000.0));
+                    for (int c = 0; c < historyColumns; c++)
+                    {
+                        writer.write(String.format(Locale.ROOT, ",%.4f", historySectionTimes[row * HISTORY_COLUMNS + c] / 1000000.0));
+                    }
+                    writer.newLine();
+                }
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(summaryFile))
+            {
+                writer.write("section,type,ticks,calls,mean_ms,p50_ms,p90_ms,p99_ms,max_ms");
+                writer.newLine();
+                writer.write(summaryLine("tick", "tick", TICK_HISTOGRAM, ticksRecorded));
+                writer.newLine();
+                for (Section section : ALL_SECTIONS)
+                {
+                    if (section.histogram.count() > 0)
+                    {
+                        writer.write(summaryLine(section.name(), section.type.name().toLowerCase(Locale.ROOT), section.histogram, section.totalCalls));
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            CarpetSettings.LOG.error("Failed to export profiler data", e);
+            Messenger.m(source, "r Failed to export profiler data: " + e.getMessage());
+            return 0;
+        }
+        Messenger.m(source, "w Exported profiler data to ", "y " + ticksFile.getFileName(), "w  and ", "y " + summaryFile.getFileName());
+        return 1;
+    }
+
+    private static String summaryLine(String name, String type, LatencyHistogram histogram, long calls)
+    {
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%.4f,%.4f,%.4f,%.4f,%.4f", csv(name), type, histogram.count(), calls,
+                ms((long) histogram.mean()), ms(histogram.percentile(50)), ms(histogram.percentile(90)),
+                ms(histogram.percentile(99)), ms(histogram.max()));
+    }
+
+    private static String csv(String value)
+    {
+        return value.indexOf(',') < 0 && value.indexOf('"') < 0 ? value : '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Name("carpet.ServerTick")
+    @Label("Server Tick")
+    @Category({"Minecraft", "Carpet"})
+    @StackTrace(false)
+    public static class TickEvent extends Event
+    {
+        @Label("Tick")
+        long tick;
+        @Label("Tick Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long duration;
+    }
+
+    @Name("carpet.TickSection")
+    @Label("Tick Section")
+    @Category({"Minecraft", "Carpet"})
+    @StackTrace(false)
+    public static class SectionEvent extends Event
+    {
+        @Label("Tick")
+        long tick;
+        @Label("Section")
+        String section;
+        @Label("Calls")
+        int calls;
+        @Label("Time In Tick")
+        @Timespan(Timespan.NANOSECONDS)
+        long duration;
+    }
+}
@@ -0,0 +1,108 @@
+package carpet.utils;
+
+import java.util.Arrays;
+
+/**
+ * A small fixed-size log-linear histogram (in the spirit of HdrHistogram) of durations, stored in microseconds.
+ * Each power of two is split into {@link #SUB_BUCKETS} linear buckets, so any recorded value is reported
+ * with at most ~6% error, while the whole histogram is a single preallocated {@code int[]} and recording
+ * never allocates.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // 2^34 us is about 4.7 hours, anything longer than that is clamped
+    private static final int MAX_BITS = 34;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final int[] counts = new int[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void recordNanos(long nanos)
+    {
+        record(nanos / 1000);
+    }
+
+    public void record(long micros)
+    {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        if (value > max)
+        {
+            max = value;
+        }
+    }
+
+    public void reset()
+    {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public long max()
+    {
+        return max;
+    }
+
+    public double mean()
+    {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile value between 0 and 100
+     * @return upper bound, in microseconds, of the bucket containing the requested percentile
+     */
+    public long percentile(double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= target)
+            {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,197 @@
+package carpet.utils;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates path finding of mobs by entity type and by the chunk they path from. Every call is counted,
+ * but only one in {@code sampleRate} is timed, so thousands of pathing villagers can be profiled without
+ * adding much to what they already cost. Totals of time are estimated from the timed calls.
+ */
+public class PathfindingProfiler
+{
+    private static final int CAPACITY = 1024;
+
+    private static final class TypeStats
+    {
+        private long calls;
+        private long sampled;
+        private long failures;
+        private long nanos;
+        private final LatencyHistogram durations = new LatencyHistogram();
+    }
+
+    private record Hotspot(Level level, long chunk, double nanos, int timed) {}
+
+    private static final Reference2ObjectOpenHashMap<EntityType<?>, TypeStats> TYPES = new Reference2ObjectOpenHashMap<>();
+    private static final Reference2ObjectOpenHashMap<Level, SpaceSavingSketch> CHUNK_TIMES = new Reference2ObjectOpenHashMap<>();
+
+    private static CommandSourceStack currentRequester = null;
+    private static int ticksRequested = 0;
+    private static int ticksElapsed = 0;
+    private static int ticksCollected = 0;
+    private static int sampleRate = 1;
+    private static long callCounter = 0;
+
+    public static boolean isRunning()
+    {
+        return ticksRequested != 0;
+    }
+
+    public static void prepare_report(CommandSourceStack source, int ticks, int sampling)
+    {
+        TYPES.clear();
+        CHUNK_TIMES.clear();
+        ticksRequested = ticks;
+        ticksElapsed = ticks;
+        ticksCollected = 0;
+        sampleRate = sampling;
+        callCounter = 0;
+        currentRequester = source;
+    }
+
+    /**
+     * Counts a path finding call of the mob
+     *
+     * @return whether this call should be timed and {@link #record}ed
+     */
+    public static boolean sample(Mob mob)
+    {
+        if (ticksRequested == 0)
+        {
+            return false;
+        }
+        stats(mob.getType()).calls++;
+        return ++callCounter % sampleRate == 0;
+    }
+
+    public static void record(Mob mob, long nanos, boolean found)
+    {
+        TypeStats stats = stats(mob.getType());
+        stats.sampled++;
+        stats.nanos += nanos;
+        stats.durations.recordNanos(nanos);
+        if (!found)
+        {
+            stats.failures++;
+        }
+        SpaceSavingSketch chunks = CHUNK_TIMES.get(mob.level());
+        if (chunks == null)
+        {
+            chunks = new SpaceSavingSketch(CAPACITY);
+            CHUNK_TIMES.put(mob.level(), chunks);
+        }
+        BlockPos pos = mob.blockPosition();
+        chunks.add(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4), nanos);
+    }
+
+    private static TypeStats stats(EntityType<?> type)
+    {
+        TypeStats stats = TYPES.get(type);
+        if (stats == null)
+        {
+            stats = new TypeStats();
+            TYPES.put(type, stats);
+        }
+        return stats;
+    }
+
+    public static void end_tick(MinecraftServer server)
+    {
+        if (ticksRequested == 0)
+        {
+            return;
+        }
+        ticksCollected++;
+        ticksElapsed--;
+        if (ticksElapsed <= 0)
+        {
+            finalize_report();
+            reset();
+        }
+    }
+
+    public static void reset()
+    {
+        // levels are only kept while profiling, not to hold on to closed worlds
+        TYPES.clear();
+        CHUNK_TIMES.clear();
+        ticksRequested = 0;
+        ticksElapsed = 0;
+        currentRequester = null;
+    }
+
+    private static void finalize_report()
+    {
+        if (currentRequester == null)
+        {
+            return;
+        }
+        double ticks = ticksCollected;
+        Messenger.m(currentRequester, "w ");
+        Messenger.m(currentRequester, "wb Path finding over " + ticksCollected + " ticks" + (sampleRate > 1 ? ", timing 1 in " + sampleRate + " calls:" : ":"));
+        List<Map.Entry<EntityType<?>, TypeStats>> types = new ArrayList<>(TYPES.entrySet());
+        // estimated total time, heaviest first
+        types.sort((a, b) -> Double.compare(estimatedNanos(b.getValue()), estimatedNanos(a.getValue())));
+        for (Map.Entry<EntityType<?>, TypeStats> entry : types)
+        {
+            TypeStats stats = entry.getValue();
+            if (stats.sampled == 0)
+            {
+                Messenger.m(currentRequester, "w  - %s: %.1f calls/tick, ".formatted(shortId(BuiltInRegistries.ENTITY_TYPE.getKey(entry.getKey())), stats.calls / ticks),
+                        "g none timed");
+                continue;
+            }
+            Messenger.m(currentRequester,
+                    "w  - %s: %.1f calls/tick, ".formatted(shortId(BuiltInRegistries.ENTITY_TYPE.getKey(entry.getKey())), stats.calls / ticks),
+                    "y %.3fms/tick".formatted(estimatedNanos(stats) / ticks / 1000000),
+                    "w , p99 %.3fms, ".formatted(stats.durations.percentile(99) / 1000.0),
+                    (stats.failures * 2 > stats.sampled ? "r " : "w ") + "%.0f%% failed".formatted(100.0 * stats.failures / stats.sampled),
+                    "^ %d timed, mean %.3fms, max %.3fms".formatted(stats.sampled, stats.durations.mean() / 1000, stats.durations.max() / 1000.0));
+        }
+        Messenger.m(currentRequester, "wb Top 10 chunks by path finding time of mobs in them:");
+        List<Hotspot> hotspots = new ArrayList<>();
+        for (Map.Entry<Level, SpaceSavingSketch> entry : CHUNK_TIMES.entrySet())
+        {
+            SpaceSavingSketch sketch = entry.getValue();
+            for (int index : sketch.top(10))
+            {
+                // only timed calls are weighed, scaled up like totals of entity types
+                hotspots.add(new Hotspot(entry.getKey(), sketch.key(index), (double) sketch.weight(index) * sampleRate, sketch.hits(index)));
+            }
+        }
+        hotspots.sort((a, b) -> Double.compare(b.nanos(), a.nanos()));
+        for (Hotspot hotspot : hotspots.subList(0, Math.min(10, hotspots.size())))
+        {
+            ChunkPos chunk = new ChunkPos(hotspot.chunk());
+            BlockPos center = chunk.getMiddleBlockPosition(64);
+            Messenger.m(currentRequester,
+                    "w  - ", Messenger.tp("c", center.getX(), center.getY(), center.getZ()),
+                    "w  chunk [%d, %d] in %s: ".formatted(chunk.x, chunk.z, shortId(hotspot.level().dimension().location())),
+                    "y %.3fms/tick".formatted(hotspot.nanos() / ticks / 1000000),
+                    "^ %d timed calls".formatted(hotspot.timed()));
+        }
+    }
+
+    private static double estimatedNanos(TypeStats stats)
+    {
+        return stats.sampled == 0 ? 0 : (double) stats.nanos * stats.calls / stats.sampled;
+    }
+
+    private static String shortId(ResourceLocation id)
+    {
+        return "minecraft".equals(id.getNamespace()) ? id.getPath() : id.toString();
+    }
+}
@@ -1,8 +1,17 @@
 package carpet.utils;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import javax.annotation.Nullable;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.TickTask;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.tags.FluidTags;
 import net.minecraft.world.entity.AgeableMob;
@@ -14,11 +23,16 @@ import net.minecraft.world.entity.SpawnPlacements;
 import net.minecraft.world.entity.ambient.AmbientCreature;
 import net.minecraft.world.entity.animal.WaterAnimal;
 import net.minecraft.world.entity.monster.Enemy;
+import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.NaturalSpawner;
 import net.minecraft.world.level.biome.MobSpawnSettings;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.material.FluidState;
 
 public class PerimeterDiagnostics
 {
@@ -33,6 +47,11 @@ public class PerimeterDiagnostics
             samples = new ArrayList<>();
         }
     }
+    private static final int RADIUS = 128;
+    // time the server thread spends checking spots for a specific mob before letting the tick go on
+    private static final long SPAWN_CHECK_SLICE_NANOS = 5_000_000;
+    private static final int SPAWN_CHECKS_PER_CLOCK = 64;
+
     private MobSpawnSettings.SpawnerData sle;
     private ServerLevel worldServer;
     private MobCategory ctype;
@@ -45,103 +64,146 @@ public class PerimeterDiagnostics
         this.el = el;
     }
 
+    /**
+     * Counts spawning spaces around the position, all at once on the calling thread
+     */
     public static Result countSpots(ServerLevel worldserver, BlockPos epos, Mob el)
     {
-        BlockPos pos;
-        //List<BlockPos> samples = new ArrayList<BlockPos>();
-        //if (el != null) CarpetSettings.LOG.error(String.format("Got %s to check",el.toString()));
-        int eY = epos.getY();
-        int eX = epos.getX();
-        int eZ = epos.getZ();
-        Result result = new Result();
-
-        //int ground_spawns = 0;
-        //int liquid_spawns = 0;
-        //int specific_spawns = 0;
-        boolean add_water = false;
-        boolean add_ground = false;
-        MobCategory ctype = null;
-
-        if (el != null)
-        {
-            if (el instanceof WaterAnimal)
-            {
-                add_water = true;
-                ctype = MobCategory.WATER_CREATURE;
-            }
-            else if (el instanceof AgeableMob)
-            {
-                add_ground = true;
-                ctype = MobCategory.CREATURE;
-            }
-            else if (el instanceof Enemy)
+        Scan scan = new Scan(worldserver, epos, el);
+        Spots spots = ForkJoinPool.commonPool().invoke(scan.columns(-RADIUS, RADIUS));
+        Result result = spots.toResult();
+        scan.diagnostic.checkCandidates(spots.candidates, 0, spots.candidates.size(), result);
+        return result;
+    }
+
+    /**
+     * Counts spawning spaces around the position without holding up the server. Chunk sections in range are copied
+     * on the server thread, block checks on the copies run in parallel on the common fork-join pool, and checks
+     * of the specific mob, which need the live world, run on the server thread in slices of spare tick time.
+     * Has to be called on the server thread, and the returned future completes on it, with the same result
+     * {@link #countSpots} would give.
+     */
+    public static CompletableFuture<Result> countSpotsAsync(ServerLevel worldserver, BlockPos epos, @Nullable Mob el)
+    {
+        MinecraftServer server = worldserver.getServer();
+        Scan scan = new Scan(worldserver, epos, el);
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> scan.columns(-RADIUS, RADIUS).invoke()).whenComplete((spots, error) -> server.execute(() -> {
+            if (error != null)
             {
-                add_ground = true;
-                ctype = MobCategory.MONSTER;
+                future.completeExceptionally(error);
+                return;
             }
-            else if (el instanceof AmbientCreature)
+            new SpawnCheck(server, scan.diagnostic, spots, future).run();
+        }));
+        return future;
+    }
+
+    /**
+     * Everything a scan needs, captured on the server thread
+     */
+    private static final class Scan
+    {
+        private final PerimeterDiagnostics diagnostic;
+        private final Snapshot snapshot;
+        private final EntityType<?> type;
+        private final int eX, eY, eZ;
+        private final int minY, maxY;
+        private final boolean add_water;
+        private final boolean add_ground;
+
+        private Scan(ServerLevel worldserver, BlockPos epos, @Nullable Mob el)
+        {
+            eY = epos.getY();
+            eX = epos.getX();
+            eZ = epos.getZ();
+            boolean water = false;
+            boolean ground = false;
+            MobCategory ctype = null;
+
+            if (el != null)
             {
-                ctype = MobCategory.AMBIENT;
+                if (el instanceof WaterAnimal)
+                {
+                    water = true;
+                    ctype = MobCategory.WATER_CREATURE;
+                }
+                else if (el instanceof AgeableMob)
+                {
+                    ground = true;
+                    ctype = MobCategory.CREATURE;
+                }
+                else if (el instanceof Enemy)
+                {
+                    ground = true;
+                    ctype = MobCategory.MONSTER;
+                }
+                else if (el instanceof AmbientCreature)
+                {
+                    ctype = MobCategory.AMBIENT;
+                }
             }
+            add_water = water;
+            add_ground = ground;
+            diagnostic = new PerimeterDiagnostics(worldserver, ctype, el);
+            type = el == null ? EntityType.ZOMBIE : el.getType();
+            minY = Math.max(worldserver.getMinBuildHeight(), eY - RADIUS);
+            maxY = Math.min(worldserver.getMaxBuildHeight() - 1, eY + RADIUS);
+            // blocks below and above the checked ones are read as well
+            snapshot = new Snapshot(worldserver, eX - RADIUS, eZ - RADIUS, eX + RADIUS, eZ + RADIUS, minY - 1, maxY + 1);
         }
-        PerimeterDiagnostics diagnostic = new PerimeterDiagnostics(worldserver,ctype,el);
-        EntityType<?> type = EntityType.ZOMBIE;
-        if (el != null) type = el.getType();
-        int minY = worldserver.getMinBuildHeight();
-        int maxY = worldserver.getMaxBuildHeight();
-        for (int x = -128; x <= 128; ++x)
+
+        private ColumnTask columns(int fromX, int toX)
         {
-            for (int z = -128; z <= 128; ++z)
+            return new ColumnTask(this, fromX, toX);
+        }
+
+        /**
+         * Counts spots in the columns of one x offset, in the same order the whole sphere is walked in
+         */
+        private void scanRow(int x, Spots spots)
+        {
+            BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+            BlockPos.MutableBlockPos other = new BlockPos.MutableBlockPos();
+            for (int z = -RADIUS; z <= RADIUS; ++z)
             {
-                if (x*x + z*z > 128*128) // cut out a cyllinder first
+                if (x*x + z*z > RADIUS*RADIUS) // cut out a cyllinder first
                 {
                     continue;
                 }
-                for (int y= minY; y < maxY; ++y)
+                for (int y = minY; y <= maxY; ++y)
                 {
-                    if ((Math.abs(y-eY)>128) )
-                    {
-                        continue;
-                    }
                     int distsq = (x)*(x)+(eY-y)*(eY-y)+(z)*(z);
-                    if (distsq > 128*128 || distsq < 24*24)
+                    if (distsq > RADIUS*RADIUS || distsq < 24*24)
                     {
                         continue;
                     }
-                    pos = new BlockPos(eX+x, y, eZ+z);
+                    pos.set(eX+x, y, eZ+z);
 
-                    BlockState iblockstate = worldserver.getBlockState(pos);
-                    BlockState iblockstate_down = worldserver.getBlockState(pos.below());
-                    BlockState iblockstate_up = worldserver.getBlockState(pos.above());
+                    BlockState iblockstate = snapshot.getBlockState(pos);
+                    BlockState iblockstate_down = snapshot.getBlockState(other.setWithOffset(pos, Direction.DOWN));
+                    BlockState iblockstate_up = snapshot.getBlockState(other.setWithOffset(pos, Direction.UP));
 
-                    if ( iblockstate.getFluidState().is(FluidTags.WATER) && !iblockstate_up.isRedstoneConductor(worldserver, pos)) // isSimpleFUllBLock
+                    if ( iblockstate.getFluidState().is(FluidTags.WATER) && !iblockstate_up.isRedstoneConductor(snapshot, pos)) // isSimpleFUllBLock
                     {
-                        result.liquid++;
-                        if (add_water && diagnostic.check_entity_spawn(pos))
+                        spots.liquid++;
+                        if (add_water)
                         {
-                            result.specific++;
-                            if (result.samples.size() < 10)
-                            {
-                                result.samples.add(pos);
-                            }
+                            spots.candidates.add(pos.asLong());
                         }
                     }
                     else
                     {
-                        if (iblockstate_down.isRedstoneConductor(worldserver, pos)) // isSimpleFUllBLock
+                        if (iblockstate_down.isRedstoneConductor(snapshot, pos)) // isSimpleFUllBLock
                         {
                             Block block = iblockstate_down.getBlock();
                             boolean flag = block != Blocks.BEDROCK && block != Blocks.BARRIER;
-                            if( flag && NaturalSpawner.isValidEmptySpawnBlock(worldserver, pos, iblockstate, iblockstate.getFluidState(), type) && NaturalSpawner.isValidEmptySpawnBlock(worldserver, pos.above(), iblockstate_up, iblockstate_up.getFluidState(), type))
+                            if( flag && NaturalSpawner.isValidEmptySpawnBlock(snapshot, pos, iblockstate, iblockstate.getFluidState(), type) && NaturalSpawner.isValidEmptySpawnBlock(snapshot, other.setWithOffset(pos, Direction.UP), iblockstate_up, iblockstate_up.getFluidState(), type))
                             {
-                                result.ground ++;
-                                if (add_ground && diagnostic.check_entity_spawn(pos))
+                                spots.ground ++;
+                                if (add_ground)
                                 {
-                                    result.specific++;
-                                    if (result.samples.size() < 10)
-                                    {
-                                        result.samples.add(pos);
-                                    }
+                                    spots.candidates.add(pos.asLong());
                                 }
                             }
                         }
@@ -149,13 +211,228 @@ public class PerimeterDiagnostics
                 }
             }
         }
-        //ashMap<String,Integer> result= new HashMap<>();
-        //result.put("Potential in-water spawning spaces", liquid_spawns);
-        //result.put("Potential on-ground spawning spaces", ground_spawns);
-        //if (el != null) result.put(String.format("%s spawning spaces",el.getDisplayName().getUnformattedText()),specific_spawns);
-        return result;
     }
 
+    /**
+     * Spots found by the block checks, with positions left to check for the specific mob, in walking order
+     */
+    private static final class Spots
+    {
+        private int liquid;
+        private int ground;
+        private final LongArrayList candidates = new LongArrayList();
+
+        private Spots merge(Spots after)
+        {
+            liquid += after.liquid;
+            ground += after.ground;
+            candidates.addAll(after.candidates);
+            return this;
+        }
+
+        private Result toResult()
+        {
+            Result result = new Result();
+            result.liquid = liquid;
+            result.ground = ground;
+            return result;
+        }
+    }
+
+    /**
+     * Scans a range of x offsets, splitting it in halves until small enough, and merges the halves back in order,
+     * so the result doesn't depend on how the work got spread over threads
+     */
+    private static final class ColumnTask extends RecursiveTask<Spots>
+    {
+        private static final int ROWS_PER_TASK = 8;
+        private final Scan scan;
+        private final int fromX;
+        private final int toX;
+
+        private ColumnTask(Scan scan, int fromX, int toX)
+        {
+            this.scan = scan;
+            this.fromX = fromX;
+            this.toX = toX;
+        }
+
+        @Override
+        protected Spots compute()
+        {
+            if (toX - fromX < ROWS_PER_TASK)
+            {
+                Spots spots = new Spots();
+                for (int x = fromX; x <= toX; ++x)
+                {
+                    scan.scanRow(x, spots);
+                }
+                return spots;
+            }
+            int middle = (fromX + toX) >> 1;
+            ColumnTask after = new ColumnTask(scan, middle + 1, toX);
+            after.fork();
+            Spots spots = new ColumnTask(scan, fromX, middle).compute();
+            return spots.merge(after.join());
+        }
+    }
+
+    /**
+     * Checks candidate spots for the specific mob on the server thread, a slice of time at a time
+     */
+    private static final class SpawnCheck implements Runnable
+    {
+        private final MinecraftServer server;
+        private final PerimeterDiagnostics diagnostic;
+        private final LongArrayList candidates;
+        private final Result result;
+        private final CompletableFuture<Result> future;
+        private int checked;
+
+        private SpawnCheck(MinecraftServer server, PerimeterDiagnostics diagnostic, Spots spots, CompletableFuture<Result> future)
+        {
+            this.server = server;
+            this.diagnostic = diagnostic;
+            this.candidates = spots.candidates;
+            this.result = spots.toResult();
+            this.future = future;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                long sliceEnd = System.nanoTime() + SPAWN_CHECK_SLICE_NANOS;
+                while (checked < candidates.size() && System.nanoTime() < sliceEnd)
+                {
+                    int to = Math.min(checked + SPAWN_CHECKS_PER_CLOCK, candidates.size());
+                    diagnostic.checkCandidates(candidates, checked, to, result);
+                    checked = to;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                future.completeExceptionally(e);
+                return;
+            }
+            if (checked < candidates.size())
+            {
+                // runs when the server has spare time, or a few ticks later at the latest
+                server.tell(new TickTask(server.getTickCount(), this));
+                return;
+            }
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Read-only copy of the block states of chunk sections in a box, safe to read from any thread
+     */
+    private static final class Snapshot implements BlockGetter
+    {
+        private final int minChunkX, minChunkZ, sizeX, sizeZ;
+        private final int minSection, sectionCount;
+        private final int minBuildHeight, height;
+        private final PalettedContainer<BlockState>[] sections;
+
+        @SuppressWarnings("unchecked")
+        private Snapshot(ServerLevel level, int minX, int minZ, int maxX, int maxZ, int minY, int maxY)
+        {
+            minBuildHeight = level.getMinBuildHeight();
+            height = level.getHeight();
+            minChunkX = SectionPos.blockToSectionCoord(minX);
+            minChunkZ = SectionPos.blockToSectionCoord(minZ);
+            sizeX = SectionPos.blockToSectionCoord(maxX) - minChunkX + 1;
+            sizeZ = SectionPos.blockToSectionCoord(maxZ) - minChunkZ + 1;
+            minSection = level.getSectionIndex(Math.max(minY, minBuildHeight));
+            // nothing to copy for positions too far above or below the world
+            sectionCount = Math.max(0, level.getSectionIndex(Math.min(maxY, minBuildHeight + height - 1)) - minSection + 1);
+            sections = new PalettedContainer[sizeX * sizeZ * sectionCount];
+            for (int cx = 0; cx < sizeX; ++cx)
+            {
+                for (int cz = 0; cz < sizeZ; ++cz)
+                {
+                    // loads chunks that aren't, as reading blocks from the level would
+                    LevelChunkSection[] chunkSections = level.getChunk(minChunkX + cx, minChunkZ + cz).getSections();
+                    for (int s = 0; s < sectionCount; ++s)
+                    {
+                        LevelChunkSection section = chunkSections[minSection + s];
+                        if (!section.hasOnlyAir())
+                        {
+                            sections[(cx * sizeZ + cz) * sectionCount + s] = section.getStates().copy();
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public BlockState getBlockState(BlockPos pos)
+        {
+            if (isOutsideBuildHeight(pos))
+            {
+                return Blocks.VOID_AIR.defaultBlockState();
+            }
+            int cx = SectionPos.blockToSectionCoord(pos.getX()) - minChunkX;
+            int cz = SectionPos.blockToSectionCoord(pos.getZ()) - minChunkZ;
+            int s = getSectionIndex(pos.getY()) - minSection;
+            if (cx < 0 || cx >= sizeX || cz < 0 || cz >= sizeZ || s < 0 || s >= sectionCount)
+            {
+                return Blocks.AIR.defaultBlockState();
+            }
+            PalettedContainer<BlockState> states = sections[(cx * sizeZ + cz) * sectionCount + s];
+            if (states == null)
+            {
+                return Blocks.AIR.defaultBlockState();
+            }
+            return states.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+        }
+
+        @Override
+        public FluidState getFluidState(BlockPos pos)
+        {
+            return getBlockState(pos).getFluidState();
+        }
+
+        @Nullable
+        @Override
+        public BlockEntity getBlockEntity(BlockPos pos)
+        {
+            return null;
+        }
+
+        @Override
+        public int getHeight()
+        {
+            return height;
+        }
+
+        @Override
+        public int getMinBuildHeight()
+        {
+            return minBuildHeight;
+        }
+    }
+
+    /**
+     * Checks positions from the list for the specific mob, adding the ones it can spawn at to the result
+     */
+    private void checkCandidates(LongArrayList candidates, int from, int to, Result result)
+    {
+        for (int i = from; i < to; ++i)
+        {
+            BlockPos pos = BlockPos.of(candidates.getLong(i));
+            if (check_entity_spawn(pos))
+            {
+                result.specific++;
+                if (result.samples.size() < 10)
+                {
+                    result.samples.add(pos);
+                }
+            }
+        }
+    }
 
     private boolean check_entity_spawn(BlockPos pos)
     {
@@ -0,0 +1,186 @@
+package carpet.utils;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * Weighted space-saving top-K tracker over {@code long} keys (packed chunk or block positions).
+ * Keeps at most {@code capacity} counters in a min-heap of weights; an untracked key evicts the lightest counter
+ * and inherits its weight, which is remembered as the maximum overestimation ({@link #error(int)}).
+ * Any key whose true weight exceeds total / capacity is guaranteed to be tracked.
+ */
+public class SpaceSavingSketch
+{
+    private final int capacity;
+    private final long[] keys;
+    private final long[] weights;
+    private final long[] errors;
+    private final int[] hits;
+    private final Long2IntOpenHashMap positions;
+    private int size;
+    private long total;
+
+    public SpaceSavingSketch(int capacity)
+    {
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.weights = new long[capacity];
+        this.errors = new long[capacity];
+        this.hits = new int[capacity];
+        this.positions = new Long2IntOpenHashMap(capacity);
+        this.positions.defaultReturnValue(-1);
+    }
+
+    public void add(long key, long weight)
+    {
+        total += weight;
+        int index = positions.get(key);
+        if (index < 0)
+        {
+            if (size < capacity)
+            {
+                index = size++;
+                keys[index] = key;
+                weights[index] = 0;
+                errors[index] = 0;
+                hits[index] = 0;
+                positions.put(key, index);
+                index = siftUp(index);
+            }
+            else
+            {
+                index = 0;
+                positions.remove(keys[0]);
+                keys[0] = key;
+                errors[0] = weights[0];
+                hits[0] = 0;
+                positions.put(key, 0);
+            }
+        }
+        weights[index] += weight;
+        hits[index]++;
+        siftDown(index);
+    }
+
+    public void clear()
+    {
+        positions.clear();
+        size = 0;
+        total = 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long total()
+    {
+        return total;
+    }
+
+    public long key(int index)
+    {
+        return keys[index];
+    }
+
+    public long weight(int index)
+    {
+        return weights[index];
+    }
+
+    public long error(int index)
+    {
+        return errors[index];
+    }
+
+    public int hits(int index)
+    {
+        return hits[index];
+    }
+
+    /**
+     * @return indices of up to {@code count} heaviest counters, heaviest first
+     */
+    public int[] top(int count)
+    {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            order[i] = i;
+        }
+        int n = Math.min(count, size);
+        // partial selection sort, count is expected to be small
+        for (int i = 0; i < n; i++)
+        {
+            int best = i;
+            for (int j = i + 1; j < size; j++)
+            {
+                if (weights[order[j]] > weights[order[best]])
+                {
+                    best = j;
+                }
+            }
+            int tmp = order[i];
+            order[i] = order[best];
+            order[best] = tmp;
+        }
+        int[] result = new int[n];
+        System.arraycopy(order, 0, result, 0, n);
+        return result;
+    }
+
+    private int siftUp(int index)
+    {
+        while (index > 0)
+        {
+            int parent = (index - 1) >> 1;
+            if (weights[parent] <= weights[index])
+            {
+                break;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+        return index;
+    }
+
+    private void siftDown(int index)
+    {
+        while (true)
+        {
+            int child = 2 * index + 1;
+            if (child >= size)
+            {
+                return;
+            }
+            if (child + 1 < size && weights[child + 1] < weights[child])
+            {
+                child++;
+            }
+            if (weights[index] <= weights[child])
+            {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int a, int b)
+    {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        long weight = weights[a];
+        weights[a] = weights[b];
+        weights[b] = weight;
+        long error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+        int hit = hits[a];
+        hits[a] = hits[b];
+        hits[b] = hit;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
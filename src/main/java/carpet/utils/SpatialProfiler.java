@@ -0,0 +1,196 @@
+package carpet.utils;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attributes entity and block entity tick time to chunks and block entity positions, per dimension.
+ * Each dimension keeps a bounded {@link SpaceSavingSketch} for chunks and one for block entity positions,
+ * so memory stays fixed no matter how many chunks are loaded while the heaviest ones are still found.
+ * Once a report is done only its top locations are kept, so worlds are not held after they are closed.
+ */
+public class SpatialProfiler
+{
+    private static final int CAPACITY = 1024;
+    // locations of a finished report that stay available to scarpet
+    private static final int KEPT = 100;
+
+    private static final Reference2ObjectOpenHashMap<Level, SpaceSavingSketch> CHUNK_TIMES = new Reference2ObjectOpenHashMap<>();
+    private static final Reference2ObjectOpenHashMap<Level, SpaceSavingSketch> BLOCK_ENTITY_TIMES = new Reference2ObjectOpenHashMap<>();
+
+    private static List<Hotspot> lastChunks = List.of();
+    private static List<Hotspot> lastBlockEntities = List.of();
+
+    private static CommandSourceStack currentRequester = null;
+    private static int ticksRequested = 0;
+    private static int ticksElapsed = 0;
+    // ticks the last finished (or current) report covers, for averaging
+    private static int ticksCollected = 0;
+
+    public record Hotspot(ResourceKey<Level> dimension, long position, double msPerTick, double errorMsPerTick, double callsPerTick) {}
+
+    public static boolean isRunning()
+    {
+        return ticksRequested != 0;
+    }
+
+    public static boolean isRecording(Level world)
+    {
+        return ticksRequested != 0 && world != null && !world.isClientSide;
+    }
+
+    public static void prepare_report(CommandSourceStack source, int ticks)
+    {
+        CHUNK_TIMES.clear();
+        BLOCK_ENTITY_TIMES.clear();
+        lastChunks = List.of();
+        lastBlockEntities = List.of();
+        ticksRequested = ticks;
+        ticksElapsed = ticks;
+        ticksCollected = 0;
+        currentRequester = source;
+    }
+
+    public static void record(Level world, BlockPos pos, boolean blockEntity, long nanos)
+    {
+        SpaceSavingSketch chunks = CHUNK_TIMES.get(world);
+        if (chunks == null)
+        {
+            chunks = new SpaceSavingSketch(CAPACITY);
+            CHUNK_TIMES.put(world, chunks);
+        }
+        chunks.add(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4), nanos);
+        if (blockEntity)
+        {
+            SpaceSavingSketch positions = BLOCK_ENTITY_TIMES.get(world);
+            if (positions == null)
+            {
+                positions = new SpaceSavingSketch(CAPACITY);
+                BLOCK_ENTITY_TIMES.put(world, positions);
+            }
+            positions.add(pos.asLong(), nanos);
+        }
+    }
+
+    public static void end_tick(MinecraftServer server)
+    {
+        if (ticksRequested == 0)
+        {
+            return;
+        }
+        ticksCollected++;
+        ticksElapsed--;
+        if (ticksElapsed <= 0)
+        {
+            lastChunks = collect(false, KEPT);
+            lastBlockEntities = collect(true, KEPT);
+            CHUNK_TIMES.clear();
+            BLOCK_ENTITY_TIMES.clear();
+            ticksRequested = 0;
+            finalize_report(server);
+            currentRequester = null;
+        }
+    }
+
+    public static void reset()
+    {
+        CHUNK_TIMES.clear();
+        BLOCK_ENTITY_TIMES.clear();
+        lastChunks = List.of();
+        lastBlockEntities = List.of();
+        ticksRequested = 0;
+        ticksElapsed = 0;
+        ticksCollected = 0;
+        currentRequester = null;
+    }
+
+    /**
+     * @param blockEntities whether to list block entity positions (packed with {@link BlockPos#asLong()})
+     *                      or chunks (packed with {@link ChunkPos#asLong(int, int)})
+     * @return heaviest tracked locations across all dimensions, heaviest first, of the running or the last report
+     */
+    public static List<Hotspot> top(boolean blockEntities, int count)
+    {
+        if (ticksRequested == 0)
+        {
+            List<Hotspot> last = blockEntities ? lastBlockEntities : lastChunks;
+            return last.size() > count ? new ArrayList<>(last.subList(0, count)) : new ArrayList<>(last);
+        }
+        return collect(blockEntities, count);
+    }
+
+    private static List<Hotspot> collect(boolean blockEntities, int count)
+    {
+        List<Hotspot> result = new ArrayList<>();
+        if (ticksCollected == 0)
+        {
+            return result;
+        }
+        double divider = 1.0D / ticksCollected / 1000000;
+        for (Map.Entry<Level, SpaceSavingSketch> entry : (blockEntities ? BLOCK_ENTITY_TIMES : CHUNK_TIMES).entrySet())
+        {
+            SpaceSavingSketch sketch = entry.getValue();
+            for (int index : sketch.top(count))
+            {
+                result.add(new Hotspot(entry.getKey().dimension(), sketch.key(index),
+                        divider * sketch.weight(index), divider * sketch.error(index), 1.0D * sketch.hits(index) / ticksCollected));
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.msPerTick(), a.msPerTick()));
+        return result.size() > count ? new ArrayList<>(result.subList(0, count)) : result;
+    }
+
+    private static void finalize_report(MinecraftServer server)
+    {
+        if (currentRequester == null)
+        {
+            return;
+        }
+        Messenger.m(currentRequester, "w ");
+        Messenger.m(currentRequester, "wb Top 10 chunks by entity and block entity tick time:");
+        for (Hotspot hotspot : top(false, 10))
+        {
+            ChunkPos chunk = new ChunkPos(hotspot.position());
+            BlockPos center = chunk.getMiddleBlockPosition(64);
+            Messenger.m(currentRequester,
+                    "w  - ", Messenger.tp("c", center.getX(), center.getY(), center.getZ()),
+                    "w  chunk [%d, %d] in %s: ".formatted(chunk.x, chunk.z, dimensionName(hotspot.dimension())),
+                    "y %.3fms".formatted(hotspot.msPerTick()),
+                    "^ up to %.3fms overestimated, %.1f ticks per game tick".formatted(hotspot.errorMsPerTick(), hotspot.callsPerTick()));
+        }
+        Messenger.m(currentRequester, "wb Top 10 block entities:");
+        for (Hotspot hotspot : top(true, 10))
+        {
+            BlockPos pos = BlockPos.of(hotspot.position());
+            ServerLevel level = server.getLevel(hotspot.dimension());
+            String block = level == null ? "?" : shortId(BuiltInRegistries.BLOCK.getKey(level.getBlockState(pos).getBlock()));
+            Messenger.m(currentRequester,
+                    "w  - ", Messenger.tp("c", pos),
+                    "w  %s in %s: ".formatted(block, dimensionName(hotspot.dimension())),
+                    "y %.3fms".formatted(hotspot.msPerTick()),
+                    "^ up to %.3fms overestimated".formatted(hotspot.errorMsPerTick()));
+        }
+    }
+
+    private static String dimensionName(ResourceKey<Level> dimension)
+    {
+        return shortId(dimension.location());
+    }
+
+    private static String shortId(ResourceLocation id)
+    {
+        return "minecraft".equals(id.getNamespace()) ? id.getPath() : id.toString();
+    }
+}
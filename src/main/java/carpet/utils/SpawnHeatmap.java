@@ -0,0 +1,176 @@
+package carpet.utils;
+
+import java.util.Arrays;
+
+/**
+ * Spawn attempts and successful spawns per block column of a single dimension, in a fixed-size open addressing table.
+ * Once the table is full, attempts in columns not seen before are only counted as {@link #dropped()},
+ * so a long tracking session over a large area can't grow memory without bounds.
+ */
+public class SpawnHeatmap
+{
+    private static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+    // keeps probe sequences short
+    private static final int MAX_COLUMNS = CAPACITY / 4 * 3;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] keys = new long[CAPACITY];
+    private final int[] attempts = new int[CAPACITY];
+    private final int[] successes = new int[CAPACITY];
+    private int columns;
+    private long dropped;
+
+    public SpawnHeatmap()
+    {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public static long pack(int x, int z)
+    {
+        return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+    }
+
+    public static int unpackX(long column)
+    {
+        return (int) column;
+    }
+
+    public static int unpackZ(long column)
+    {
+        return (int) (column >>> 32);
+    }
+
+    public void recordAttempt(int x, int z)
+    {
+        int slot = slotFor(pack(x, z));
+        if (slot < 0)
+        {
+            dropped++;
+            return;
+        }
+        attempts[slot]++;
+    }
+
+    public void recordSuccess(int x, int z)
+    {
+        int slot = slotFor(pack(x, z));
+        if (slot < 0)
+        {
+            return;
+        }
+        successes[slot]++;
+    }
+
+    public int attempts(int x, int z)
+    {
+        int slot = find(pack(x, z));
+        return slot < 0 ? 0 : attempts[slot];
+    }
+
+    public int successes(int x, int z)
+    {
+        int slot = find(pack(x, z));
+        return slot < 0 ? 0 : successes[slot];
+    }
+
+    public int columns()
+    {
+        return columns;
+    }
+
+    /**
+     * @return attempts not recorded because the table was full
+     */
+    public long dropped()
+    {
+        return dropped;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(attempts, 0);
+        Arrays.fill(successes, 0);
+        columns = 0;
+        dropped = 0;
+    }
+
+    /**
+     * @return packed columns (see {@link #pack(int, int)}) with the most attempts, most attempted first
+     */
+    public long[] top(int count)
+    {
+        int[] order = new int[Math.min(count, columns)];
+        int size = 0;
+        // insertion into a small sorted array, count is expected to be small
+        for (int slot = 0; slot < CAPACITY; slot++)
+        {
+            if (keys[slot] == EMPTY || order.length == 0)
+            {
+                continue;
+            }
+            if (size == order.length && attempts[order[size - 1]] >= attempts[slot])
+            {
+                continue;
+            }
+            int i = size < order.length ? size++ : size - 1;
+            while (i > 0 && attempts[order[i - 1]] < attempts[slot])
+            {
+                order[i] = order[i - 1];
+                i--;
+            }
+            order[i] = slot;
+        }
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            result[i] = keys[order[i]];
+        }
+        return result;
+    }
+
+    private int find(long key)
+    {
+        for (int slot = mix(key); ; slot = (slot + 1) & MASK)
+        {
+            long current = keys[slot];
+            if (current == key)
+            {
+                return slot;
+            }
+            if (current == EMPTY)
+            {
+                return -1;
+            }
+        }
+    }
+
+    private int slotFor(long key)
+    {
+        for (int slot = mix(key); ; slot = (slot + 1) & MASK)
+        {
+            long current = keys[slot];
+            if (current == key)
+            {
+                return slot;
+            }
+            if (current == EMPTY)
+            {
+                if (columns >= MAX_COLUMNS)
+                {
+                    return -1;
+                }
+                keys[slot] = key;
+                columns++;
+                return slot;
+            }
+        }
+    }
+
+    private static int mix(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & MASK;
+    }
+}
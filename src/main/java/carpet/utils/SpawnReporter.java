@@ -3,7 +3,9 @@ package carpet.utils;
 import carpet.CarpetSettings;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMaps;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.network.chat.Component;
@@ -21,6 +23,7 @@ import net.minecraft.world.entity.MobSpawnType;
 import net.minecraft.world.entity.SpawnPlacements;
 import net.minecraft.world.entity.animal.Ocelot;
 import net.minecraft.world.item.DyeColor;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.NaturalSpawner;
 import net.minecraft.world.level.StructureManager;
@@ -40,6 +43,7 @@ import org.jetbrains.annotations.Nullable;
 import static net.minecraft.world.entity.MobCategory.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -47,44 +51,445 @@ import java.util.List;
 public class SpawnReporter
 {
     private static final MobCategory[] CACHED_MOBCATEGORY_VALUES = MobCategory.values();
+    private static final int CATEGORIES = CACHED_MOBCATEGORY_VALUES.length;
+    private static final int RECENT_SPAWNS = 10;
     public static boolean mockSpawns = false;
 
-    public static final HashMap<ResourceKey<Level>, Integer> chunkCounts = new HashMap<>();
+    public static double mobcap_exponent = 0.0D;
+
+    // statistics are kept in flat arrays indexed with dimension * CATEGORIES + category, see slot(int, MobCategory)
+    private static final Reference2IntOpenHashMap<ResourceKey<Level>> dimensionIndices = new Reference2IntOpenHashMap<>();
+    private static int[] dimensionChunkCounts = new int[0];
+
+    private static long[] attemptCounts = new long[0];
+    private static long[] overallSpawnTicks = new long[0];
+    private static long[] fullSpawnTicks = new long[0];
+    private static long[] failedSpawnTicks = new long[0];
+    private static long[] successfulSpawnTicks = new long[0];
+    private static long[] spawnsInTicks = new long[0];
+    private static long[] mobCapCounts = new long[0];
+    private static Object2LongOpenHashMap<?>[] spawnCounts = new Object2LongOpenHashMap<?>[0];
+    // ring buffers of the last RECENT_SPAWNS spawns, RECENT_SPAWNS entries per slot
+    private static EntityType<?>[] recent_types = new EntityType<?>[0];
+    private static long[] recent_positions = new long[0];
+    private static long[] recentCounts = new long[0];
+    private static SpawnHeatmap[] heatmaps = new SpawnHeatmap[0];
+
+    private static final int[] triesPerCategory = new int[CATEGORIES];
+
+    private static int spawnTrackingStartTime = 0;
+    private static BoundingBox trackedSpawningArea = null;
+    private static boolean trackingHeatmap = false;
+    // in case game gets each thread for each world - these need to belong to workd.
+    // dimension of the current world spawning cycle, -1 outside of one
+    private static int cycleDimension = -1;
+    // spawns in the current cycle per category, -1 when the category had no spawn attempts
+    private static final long[] cycleSpawns = new long[CATEGORIES];
+    private static final boolean[] cycleCategoryChecked = new boolean[CATEGORIES];
 
+    // keys of the maps that were public before, which are only refreshed from the arrays when a report is made
+    private static Pair<?, ?>[] slotKeys = new Pair<?, ?>[0];
+
+    /**
+     * @deprecated Use {@link #getChunkCount(ResourceKey)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
+    public static final HashMap<ResourceKey<Level>, Integer> chunkCounts = new HashMap<>();
+    /**
+     * @deprecated Use {@link #getSpawnCounts(ResourceKey, MobCategory)}
+     */
+    @Deprecated(forRemoval = true)
     public static final HashMap<Pair<ResourceKey<Level>, MobCategory>, Object2LongOpenHashMap<EntityType<?>>> spawn_stats = new HashMap<>();
-    public static double mobcap_exponent = 0.0D;
-    
+    /**
+     * @deprecated Use {@link #getSpawnAttempts(ResourceKey, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final Object2LongOpenHashMap<Pair<ResourceKey<Level>, MobCategory>> spawn_attempts = new Object2LongOpenHashMap<>();
+    /**
+     * @deprecated Use {@link #getSpawnTicks(ResourceKey, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final Object2LongOpenHashMap<Pair<ResourceKey<Level>, MobCategory>> overall_spawn_ticks = new Object2LongOpenHashMap<>();
+    /**
+     * @deprecated Use {@link #getFullSpawnTicks(ResourceKey, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final Object2LongOpenHashMap<Pair<ResourceKey<Level>, MobCategory>> spawn_ticks_full = new Object2LongOpenHashMap<>();
+    /**
+     * @deprecated Use {@link #getFailedSpawnTicks(ResourceKey, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final Object2LongOpenHashMap<Pair<ResourceKey<Level>, MobCategory>> spawn_ticks_fail = new Object2LongOpenHashMap<>();
+    /**
+     * @deprecated Use {@link #getSuccessfulSpawnTicks(ResourceKey, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final Object2LongOpenHashMap<Pair<ResourceKey<Level>, MobCategory>> spawn_ticks_succ = new Object2LongOpenHashMap<>();
+    /**
+     * @deprecated Use {@link #getSpawnsInTicks(ResourceKey, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final Object2LongOpenHashMap<Pair<ResourceKey<Level>, MobCategory>> spawn_ticks_spawns = new Object2LongOpenHashMap<>();
+    /**
+     * @deprecated Use {@link #getMobCapCount(ResourceKey, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final Object2LongOpenHashMap<Pair<ResourceKey<Level>, MobCategory>> spawn_cap_count = new Object2LongOpenHashMap<>();
+    /**
+     * @deprecated Use {@link #getRecentSpawns(Level, MobCategory)}, this is a copy refreshed when a report is made
+     */
+    @Deprecated(forRemoval = true)
     public static final HashMap<Pair<ResourceKey<Level>, MobCategory>, EvictingQueue<Pair<EntityType<?>, BlockPos>>> spawned_mobs = new HashMap<>();
+    /**
+     * @deprecated Use {@link #getSpawnTries(MobCategory)} and {@link #setSpawnTries(MobCategory, int)}, this is a copy
+     * that is not read back
+     */
+    @Deprecated(forRemoval = true)
     public static final HashMap<MobCategory, Integer> spawn_tries = new HashMap<>();
-
-    private static int spawnTrackingStartTime = 0;
-    private static BoundingBox trackedSpawningArea = null;
-    // in case game gets each thread for each world - these need to belong to workd.
-    public static Object2LongOpenHashMap<MobCategory> local_spawns = null; // per world
+    /**
+     * @deprecated Not used anymore, always null
+     */
+    @Deprecated(forRemoval = true)
+    public static Object2LongOpenHashMap<MobCategory> local_spawns = null;
+    /**
+     * @deprecated Not used anymore, always null
+     */
+    @Deprecated(forRemoval = true)
     public static HashSet<MobCategory> first_chunk_marker = null;
 
+    static
+    {
+        dimensionIndices.defaultReturnValue(-1);
+        resetSpawnTries();
+    }
+
+    private static int dimensionIndex(ResourceKey<Level> dimension)
+    {
+        int index = dimensionIndices.getInt(dimension);
+        if (index < 0)
+        {
+            index = dimensionChunkCounts.length;
+            dimensionIndices.put(dimension, index);
+            grow(index + 1);
+            for (MobCategory category : CACHED_MOBCATEGORY_VALUES)
+            {
+                int slot = slot(index, category);
+                Pair<ResourceKey<Level>, MobCategory> key = Pair.of(dimension, category);
+                slotKeys[slot] = key;
+                spawn_stats.put(key, spawnStats(slot));
+                spawned_mobs.put(key, new EvictingQueue<>());
+            }
+        }
+        return index;
+    }
+
+    private static void grow(int dimensionCount)
+    {
+        int slots = dimensionCount * CATEGORIES;
+        int oldSlots = attemptCounts.length;
+        int oldDimensions = dimensionChunkCounts.length;
+        dimensionChunkCounts = Arrays.copyOf(dimensionChunkCounts, dimensionCount);
+        Arrays.fill(dimensionChunkCounts, oldDimensions, dimensionCount, -1);
+        heatmaps = Arrays.copyOf(heatmaps, dimensionCount);
+        slotKeys = Arrays.copyOf(slotKeys, slots);
+        attemptCounts = Arrays.copyOf(attemptCounts, slots);
+        overallSpawnTicks = Arrays.copyOf(overallSpawnTicks, slots);
+        fullSpawnTicks = Arrays.copyOf(fullSpawnTicks, slots);
+        failedSpawnTicks = Arrays.copyOf(failedSpawnTicks, slots);
+        successfulSpawnTicks = Arrays.copyOf(successfulSpawnTicks, slots);
+        spawnsInTicks = Arrays.copyOf(spawnsInTicks, slots);
+        mobCapCounts = Arrays.copyOf(mobCapCounts, slots);
+        spawnCounts = Arrays.copyOf(spawnCounts, slots);
+        recentCounts = Arrays.copyOf(recentCounts, slots);
+        recent_types = Arrays.copyOf(recent_types, slots * RECENT_SPAWNS);
+        recent_positions = Arrays.copyOf(recent_positions, slots * RECENT_SPAWNS);
+        for (int slot = oldSlots; slot < slots; slot++)
+        {
+            spawnCounts[slot] = new Object2LongOpenHashMap<EntityType<?>>();
+        }
+    }
+
+    private static int slot(int dimension, MobCategory category)
+    {
+        return dimension * CATEGORIES + category.ordinal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Pair<ResourceKey<Level>, MobCategory> slotKey(int slot)
+    {
+        return (Pair<ResourceKey<Level>, MobCategory>) slotKeys[slot];
+    }
+
+    /**
+     * Refreshes the deprecated public maps from the arrays. Kept off the spawning paths, so they only catch up when
+     * a report is made
+     */
+    private static void updateLegacyMaps()
+    {
+        for (int slot = 0; slot < slotKeys.length; slot++)
+        {
+            Pair<ResourceKey<Level>, MobCategory> key = slotKey(slot);
+            if (key.getRight().ordinal() == 0 && dimensionChunkCounts[slot / CATEGORIES] >= 0)
+            {
+                chunkCounts.put(key.getLeft(), dimensionChunkCounts[slot / CATEGORIES]);
+            }
+            spawn_attempts.put(key, attemptCounts[slot]);
+            overall_spawn_ticks.put(key, overallSpawnTicks[slot]);
+            spawn_ticks_full.put(key, fullSpawnTicks[slot]);
+            spawn_ticks_fail.put(key, failedSpawnTicks[slot]);
+            spawn_ticks_succ.put(key, successfulSpawnTicks[slot]);
+            spawn_ticks_spawns.put(key, spawnsInTicks[slot]);
+            spawn_cap_count.put(key, mobCapCounts[slot]);
+            EvictingQueue<Pair<EntityType<?>, BlockPos>> recent = spawned_mobs.get(key);
+            recent.clear();
+            long count = recentCounts[slot];
+            for (long i = Math.max(0, count - RECENT_SPAWNS); i < count; i++)
+            {
+                int entry = slot * RECENT_SPAWNS + (int) (i % RECENT_SPAWNS);
+                recent.put(Pair.of(recent_types[entry], BlockPos.of(recent_positions[entry])));
+            }
+        }
+    }
+
+    private static long statistic(long[] statistic, ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic[slot(dimensionIndex(dimension), category)];
+    }
+
+    /**
+     * Number of spawn tries of the category in the dimension since tracking started, counted once per spawning cycle
+     */
+    public static long getSpawnAttempts(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic(attemptCounts, dimension, category);
+    }
+
+    /**
+     * Number of spawning cycles of the dimension since tracking started, times spawn tries of the category
+     */
+    public static long getSpawnTicks(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic(overallSpawnTicks, dimension, category);
+    }
+
+    /**
+     * Spawn tries of the category that didn't happen because its mobcap was full
+     */
+    public static long getFullSpawnTicks(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic(fullSpawnTicks, dimension, category);
+    }
+
+    /**
+     * Spawn tries of the category that spawned nothing
+     */
+    public static long getFailedSpawnTicks(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic(failedSpawnTicks, dimension, category);
+    }
+
+    /**
+     * Spawn tries of the category that spawned at least one mob
+     */
+    public static long getSuccessfulSpawnTicks(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic(successfulSpawnTicks, dimension, category);
+    }
+
+    /**
+     * Mobs of the category spawned in successful spawn tries
+     */
+    public static long getSpawnsInTicks(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic(spawnsInTicks, dimension, category);
+    }
+
+    /**
+     * Sum of mob counts of the category at the start of each spawn try, to average how full the mobcap was
+     */
+    public static long getMobCapCount(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return statistic(mobCapCounts, dimension, category);
+    }
+
+    /**
+     * Mobs of the category spawned in the dimension by type, since tracking started
+     */
+    public static Object2LongMap<EntityType<?>> getSpawnCounts(ResourceKey<Level> dimension, MobCategory category)
+    {
+        return Object2LongMaps.unmodifiable(spawnStats(slot(dimensionIndex(dimension), category)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object2LongOpenHashMap<EntityType<?>> spawnStats(int slot)
+    {
+        return (Object2LongOpenHashMap<EntityType<?>>) spawnCounts[slot];
+    }
+
+    public static int getSpawnTries(MobCategory category)
+    {
+        return triesPerCategory[category.ordinal()];
+    }
+
+    public static void setSpawnTries(MobCategory category, int tries)
+    {
+        triesPerCategory[category.ordinal()] = tries;
+        spawn_tries.put(category, tries);
+    }
+
+    public static void resetSpawnTries()
+    {
+        for (MobCategory category : CACHED_MOBCATEGORY_VALUES)
+        {
+            setSpawnTries(category, 1);
+        }
+    }
+
+    /**
+     * Called at the start of each world spawning cycle, with the number of chunks eligible for spawning
+     */
+    public static void startSpawnCycle(ResourceKey<Level> dimension, int chunkCount)
+    {
+        int dim = dimensionIndex(dimension);
+        dimensionChunkCounts[dim] = chunkCount;
+        if (!trackingSpawns())
+        {
+            return;
+        }
+        //local spawns now need to be tracked globally cause each calll is just for chunk
+        cycleDimension = dim;
+        Arrays.fill(cycleSpawns, -1L);
+        Arrays.fill(cycleCategoryChecked, false);
+        for (MobCategory cat : CACHED_MOBCATEGORY_VALUES)
+        {
+            overallSpawnTicks[slot(dim, cat)] += triesPerCategory[cat.ordinal()];
+        }
+    }
+
+    /**
+     * @return chunks eligible for spawning in the last spawning cycle of the dimension, or -1 if there wasn't one
+     */
+    public static int getChunkCount(ResourceKey<Level> dimension)
+    {
+        return dimensionChunkCounts[dimensionIndex(dimension)];
+    }
+
+    public static boolean inSpawnCycle()
+    {
+        return cycleDimension >= 0;
+    }
+
+    /**
+     * Captures each category try per dimension before it fails due to full mobcaps.
+     * @param belowCap whether the category can spawn this cycle, otherwise it will be counted as full
+     */
+    public static void registerCategoryCheck(MobCategory category, int mobCount, boolean belowCap)
+    {
+        int cat = category.ordinal();
+        if (!cycleCategoryChecked[cat])
+        {
+            cycleCategoryChecked[cat] = true;
+            //first chunk with spawn eligibility for that category
+            int slot = slot(cycleDimension, category);
+            attemptCounts[slot] += triesPerCategory[cat];
+            mobCapCounts[slot] += mobCount;
+        }
+        if (belowCap && cycleSpawns[cat] < 0)
+        {
+            //place 0 to indicate there were spawn attempts for a category
+            cycleSpawns[cat] = 0;
+        }
+    }
+
+    public static void finishSpawnCycle(boolean animalTick)
+    {
+        if (trackingSpawns() && inSpawnCycle())
+        {
+            for (MobCategory cat : CACHED_MOBCATEGORY_VALUES)
+            {
+                int slot = slot(cycleDimension, cat);
+                int spawnTries = triesPerCategory[cat.ordinal()];
+                long spawns = cycleSpawns[cat.ordinal()];
+                if (spawns < 0)
+                {
+                    if (!cat.isPersistent() || animalTick) // isAnimal
+                    {
+                        // fill mobcaps for that category so spawn got cancelled
+                        fullSpawnTicks[slot] += spawnTries;
+                    }
+                }
+                else if (spawns > 0)
+                {
+                    // tick spawned mobs for that type
+                    successfulSpawnTicks[slot] += spawnTries;
+                    spawnsInTicks[slot] += spawns;
+                    // this will be off comparing to 1.13 as that would succeed if
+                    // ANY tries in that round were successful.
+                    // there will be much more difficult to mix in
+                    // considering spawn tries to remove, as with warp
+                    // there is little need for them anyways.
+                }
+                else // spawn no mobs despite trying
+                {
+                    //tick didn's spawn mobs of that type
+                    failedSpawnTicks[slot] += spawnTries;
+                }
+            }
+        }
+        cycleDimension = -1;
+    }
+
     public static void registerSpawn(Mob mob, MobCategory cat, BlockPos pos)
     {
         if (trackedSpawningArea != null && !trackedSpawningArea.isInside(pos))
         {
             return;
         }
-        Pair<ResourceKey<Level>, MobCategory> key = Pair.of(mob.level().dimension(), cat);
-        spawn_stats.get(key).addTo(mob.getType(), 1);
-        spawned_mobs.get(key).put(Pair.of(mob.getType(), pos));
-        if (!local_spawns.containsKey(cat))
+        int dim = dimensionIndex(mob.level().dimension());
+        int slot = slot(dim, cat);
+        EntityType<?> type = mob.getType();
+        spawnStats(slot).addTo(type, 1);
+        int entry = slot * RECENT_SPAWNS + (int) (recentCounts[slot]++ % RECENT_SPAWNS);
+        recent_types[entry] = type;
+        recent_positions[entry] = pos.asLong();
+        if (trackingHeatmap)
+        {
+            heatmap(dim).recordSuccess(pos.getX(), pos.getZ());
+        }
+        if (cycleSpawns[cat.ordinal()] < 0)
+        {
+            CarpetSettings.LOG.error("Rogue spawn detected for category "+cat.getName()+" for mob "+type.getDescription().getString()+". If you see this message let carpet peeps know about it on github issues.");
+            cycleSpawns[cat.ordinal()] = 0;
+        }
+        cycleSpawns[cat.ordinal()]++;
+    }
+
+    public static boolean trackingHeatmap()
+    {
+        return trackingHeatmap;
+    }
+
+    /**
+     * Called for every position a mob spawn is attempted at while the heatmap is tracked
+     */
+    public static void registerSpawnAttempt(Level world, BlockPos pos)
+    {
+        if (trackedSpawningArea != null && !trackedSpawningArea.isInside(pos))
+        {
+            return;
+        }
+        heatmap(dimensionIndex(world.dimension())).recordAttempt(pos.getX(), pos.getZ());
+    }
+
+    private static SpawnHeatmap heatmap(int dim)
+    {
+        SpawnHeatmap heatmap = heatmaps[dim];
+        if (heatmap == null)
         {
-            CarpetSettings.LOG.error("Rogue spawn detected for category "+cat.getName()+" for mob "+mob.getType().getDescription().getString()+". If you see this message let carpet peeps know about it on github issues.");
-            local_spawns.put(cat, 0L);
+            heatmap = new SpawnHeatmap();
+            heatmaps[dim] = heatmap;
         }
-        local_spawns.addTo(cat, 1);
+        return heatmap;
     }
 
     public static final int MAGIC_NUMBER = (int)Math.pow(17.0D, 2.0D);
@@ -102,7 +507,7 @@ public class SpawnReporter
             lst.add(Messenger.s(String.format("Mobcaps for %s:",name)));
         NaturalSpawner.SpawnState lastSpawner = world.getChunkSource().getLastSpawnState();
         Object2IntMap<MobCategory> dimCounts = lastSpawner.getMobCategoryCounts();
-        int chunkcount = chunkCounts.getOrDefault(dim, -1);
+        int chunkcount = getChunkCount(dim);
         if (dimCounts == null || chunkcount < 0)
         {
             lst.add(Messenger.c("g   --UNAVAILABLE--"));
@@ -118,10 +523,10 @@ public class SpawnReporter
             String mobColor = Messenger.creatureTypeColor(category);
             if (multiline)
             {
-                int rounds = spawn_tries.get(category);
+                int rounds = getSpawnTries(category);
                 lst.add(Messenger.c(String.format("w   %s: ", category.getName()),
                         (cur < 0) ? "g -" : (color + " " + cur), "g  / ", mobColor + " " + max,
-                        (rounds == 1) ? "w " : String.format("gi  (%d rounds/tick)", spawn_tries.get(category))
+                        (rounds == 1) ? "w " : String.format("gi  (%d rounds/tick)", rounds)
                 ));
             }
             else
@@ -150,6 +555,7 @@ public class SpawnReporter
     
     public static List<Component> getRecentSpawns(Level world, MobCategory category)
     {
+        updateLegacyMaps();
         List<Component> lst = new ArrayList<>();
         if (!trackingSpawns())
         {
@@ -159,12 +565,15 @@ public class SpawnReporter
         String categoryName = category.getName();
         
         lst.add(Messenger.s(String.format("Recent %s spawns:", categoryName)));
-        for (Pair<EntityType<?>, BlockPos> pair : spawned_mobs.get(Pair.of(world.dimension(), category)).keySet())
+        int slot = slot(dimensionIndex(world.dimension()), category);
+        long count = recentCounts[slot];
+        for (long i = Math.max(0, count - RECENT_SPAWNS); i < count; i++)
         {
+            int entry = slot * RECENT_SPAWNS + (int) (i % RECENT_SPAWNS);
             lst.add( Messenger.c(
                     "w  - ",
-                    Messenger.tp("wb",pair.getRight()),
-                    String.format("w : %s", pair.getLeft().getDescription().getString())
+                    Messenger.tp("wb", BlockPos.of(recent_positions[entry])),
+                    String.format("w : %s", recent_types[entry].getDescription().getString())
                     ));
         }
         
@@ -176,6 +585,72 @@ public class SpawnReporter
 
     }
     
+    /**
+     * Spawn attempts and successful spawns for each column of the chunk at {@code pos}, and the most attempted columns
+     * of the dimension
+     */
+    public static List<Component> makeHeatmapReport(ServerLevel world, BlockPos pos)
+    {
+        List<Component> lst = new ArrayList<>();
+        if (!trackingSpawns() || !trackingHeatmap)
+        {
+            lst.add(Messenger.c(
+                    "w Spawn heatmap is not tracked, type '",
+                    "wi /spawn tracking start heatmap","/spawn tracking start heatmap",
+                    "w ' to enable"));
+            return lst;
+        }
+        SpawnHeatmap heatmap = heatmap(dimensionIndex(world.dimension()));
+        ChunkPos chunk = new ChunkPos(pos);
+        int maxSuccesses = 0;
+        for (int x = chunk.getMinBlockX(); x <= chunk.getMaxBlockX(); x++)
+        {
+            for (int z = chunk.getMinBlockZ(); z <= chunk.getMaxBlockZ(); z++)
+            {
+                maxSuccesses = Math.max(maxSuccesses, heatmap.successes(x, z));
+            }
+        }
+        lst.add(Messenger.s(String.format("Spawn attempts in chunk [%d, %d] (north up):", chunk.x, chunk.z)));
+        for (int z = chunk.getMinBlockZ(); z <= chunk.getMaxBlockZ(); z++)
+        {
+            List<Object> row = new ArrayList<>();
+            row.add("w  ");
+            for (int x = chunk.getMinBlockX(); x <= chunk.getMaxBlockX(); x++)
+            {
+                int attempts = heatmap.attempts(x, z);
+                int successes = heatmap.successes(x, z);
+                if (attempts == 0)
+                {
+                    row.add("f \u25A1");
+                }
+                else
+                {
+                    row.add((successes == 0 ? "n" : Messenger.heatmap_color(successes, maxSuccesses)) + " \u25A0");
+                }
+                row.add(String.format("^w %d, %d: %d attempts, %d spawns", x, z, attempts, successes));
+            }
+            lst.add(Messenger.c(row.toArray(new Object[0])));
+        }
+        lst.add(Messenger.s("Most attempted columns:"));
+        for (long column : heatmap.top(5))
+        {
+            int x = SpawnHeatmap.unpackX(column);
+            int z = SpawnHeatmap.unpackZ(column);
+            int attempts = heatmap.attempts(x, z);
+            int successes = heatmap.successes(x, z);
+            lst.add(Messenger.c(
+                    "w  - ",
+                    Messenger.tp("wb", x, world.getHeight(Heightmap.Types.MOTION_BLOCKING, x, z), z),
+                    String.format("w : %d attempts, %d spawns, %.1f%% failed", attempts, successes, 100.0D * (attempts - successes) / attempts)
+            ));
+        }
+        if (heatmap.dropped() > 0)
+        {
+            lst.add(Messenger.s(String.format(" %d attempts in further columns were not recorded, track a smaller area", heatmap.dropped()), "gi"));
+        }
+        return lst;
+    }
+
     public static List<Component> handleWoolAction(BlockPos pos, ServerLevel worldIn)
     {
         DyeColor under = WoolTool.getWoolColorAtPosition(worldIn, pos.below());
@@ -267,25 +742,28 @@ public class SpawnReporter
     {
         if (full)
         {
-            for (MobCategory category : cachedMobCategories())
-                spawn_tries.put(category, 1);
-        }
-        overall_spawn_ticks.clear();
-        spawn_attempts.clear();
-        spawn_ticks_full.clear();
-        spawn_ticks_fail.clear();
-        spawn_ticks_succ.clear();
-        spawn_ticks_spawns.clear();
-        spawn_cap_count.clear();
-
-        // can't fast-path to clear given different worlds could have different amount of worlds
-        for (MobCategory category : cachedMobCategories()) {
-            for (ResourceKey<Level> world : server.levelKeys()) {
-                Pair<ResourceKey<Level>, MobCategory> key = Pair.of(world, category);
-                spawn_stats.put(key, new Object2LongOpenHashMap<>());
-                spawned_mobs.put(key, new EvictingQueue<>());
-            }
+            resetSpawnTries();
+        }
+        for (ResourceKey<Level> world : server.levelKeys())
+        {
+            dimensionIndex(world);
         }
+        Arrays.fill(overallSpawnTicks, 0L);
+        Arrays.fill(attemptCounts, 0L);
+        Arrays.fill(fullSpawnTicks, 0L);
+        Arrays.fill(failedSpawnTicks, 0L);
+        Arrays.fill(successfulSpawnTicks, 0L);
+        Arrays.fill(spawnsInTicks, 0L);
+        Arrays.fill(mobCapCounts, 0L);
+        for (Object2LongOpenHashMap<?> stats : spawnCounts)
+        {
+            stats.clear();
+        }
+        Arrays.fill(recentCounts, 0L);
+        Arrays.fill(recent_types, null);
+        // heatmaps are large, only kept around while in use
+        Arrays.fill(heatmaps, null);
+        updateLegacyMaps();
         spawnTrackingStartTime = 0;
     }
 
@@ -298,15 +776,21 @@ public class SpawnReporter
     }
 
     public static void startTracking(MinecraftServer server, BoundingBox trackedArea) {
+        startTracking(server, trackedArea, false);
+    }
+
+    public static void startTracking(MinecraftServer server, BoundingBox trackedArea, boolean heatmap) {
         resetSpawnStats(server, false);
         spawnTrackingStartTime = server.getTickCount();
         trackedSpawningArea = trackedArea;
+        trackingHeatmap = heatmap;
     }
 
     public static void stopTracking(MinecraftServer server) {
         resetSpawnStats(server, false);
         SpawnReporter.spawnTrackingStartTime = 0;
         trackedSpawningArea = null;
+        trackingHeatmap = false;
     }
 
     private static String getWorldCode(ResourceKey<Level> world)
@@ -317,6 +801,7 @@ public class SpawnReporter
     
     public static List<Component> makeTrackingReport(Level worldIn)
     {
+        updateLegacyMaps();
         List<Component> report = new ArrayList<>();
         if (!trackingSpawns())
         {
@@ -338,21 +823,21 @@ public class SpawnReporter
         {
             for (ResourceKey<Level> dim : worldIn.getServer().levelKeys())
             {
-                Pair<ResourceKey<Level>, MobCategory> key = Pair.of(dim, category);
-                if (spawn_ticks_spawns.getLong(key) > 0L)
+                int key = slot(dimensionIndex(dim), category);
+                if (spawnsInTicks[key] > 0L)
                 {
-                    double hours = overall_spawn_ticks.getLong(key)/72000.0;
-                    long spawnAttemptsForCategory = spawn_attempts.getLong(key);
+                    double hours = overallSpawnTicks[key]/72000.0;
+                    long spawnAttemptsForCategory = attemptCounts[key];
                     report.add(Messenger.s(String.format(" > %s%s (%.1f min), %.1f m/t, %%{%.1fF %.1f- %.1f+}; %.2f s/att",
                         category.getName().substring(0,3), getWorldCode(dim),
                         60*hours,
-                        (1.0D * spawn_cap_count.getLong(key)) / spawnAttemptsForCategory,
-                        (100.0D * spawn_ticks_full.getLong(key)) / spawnAttemptsForCategory,
-                        (100.0D * spawn_ticks_fail.getLong(key)) / spawnAttemptsForCategory,
-                        (100.0D * spawn_ticks_succ.getLong(key)) / spawnAttemptsForCategory,
-                        (1.0D * spawn_ticks_spawns.getLong(key)) / (spawn_ticks_fail.getLong(key) + spawn_ticks_succ.getLong(key))
+                        (1.0D * mobCapCounts[key]) / spawnAttemptsForCategory,
+                        (100.0D * fullSpawnTicks[key]) / spawnAttemptsForCategory,
+                        (100.0D * failedSpawnTicks[key]) / spawnAttemptsForCategory,
+                        (100.0D * successfulSpawnTicks[key]) / spawnAttemptsForCategory,
+                        (1.0D * spawnsInTicks[key]) / (failedSpawnTicks[key] + successfulSpawnTicks[key])
                     )));
-                    for (Object2LongMap.Entry<EntityType<?>> entry: spawn_stats.get(key).object2LongEntrySet())
+                    for (Object2LongMap.Entry<EntityType<?>> entry: spawnStats(key).object2LongEntrySet())
                     {
                         report.add(Messenger.s(String.format("   - %s: %d spawns, %d per hour",
                                 entry.getKey().getDescription().getString(),
@@ -365,6 +850,29 @@ public class SpawnReporter
         return report;
     }
 
+    public static List<Component> makeSimulationReport(SpawnSimulation.Result result)
+    {
+        List<Component> report = new ArrayList<>();
+        BoundingBox area = result.area();
+        report.add(Messenger.c("bw --------------------"));
+        report.add(Messenger.s(String.format("[SIMULATED] Spawn rates [in (%d, %d, %d)x(%d, %d, %d)]: %d trials of %.1f min",
+                area.minX(), area.minY(), area.minZ(), area.maxX(), area.maxY(), area.maxZ(),
+                result.trials(), (result.ticks()/72000.0)*60)));
+        if (result.rates().isEmpty())
+        {
+            report.add(Messenger.s(" > nothing spawned"));
+        }
+        for (SpawnSimulation.Rate rate : result.rates())
+        {
+            String margin = Double.isNaN(rate.margin()) ? "" : String.format(" +/- %.1f", rate.margin());
+            report.add(Messenger.s(String.format("   - %s (%s): %.1f per hour%s",
+                    rate.type().getDescription().getString(),
+                    rate.type().getCategory().getName().substring(0,3),
+                    rate.perHour(), margin)));
+        }
+        return report;
+    }
+
     public static void killEntity(LivingEntity entity)
     {
         if (entity.isPassenger())
@@ -389,7 +897,7 @@ public class SpawnReporter
     }
 
     // yeeted from NaturalSpawner - temporary access fix
-    private static List<MobSpawnSettings.SpawnerData> getSpawnEntries(ServerLevel serverLevel, StructureManager structureManager, ChunkGenerator chunkGenerator, MobCategory mobCategory, BlockPos blockPos, @Nullable Holder<Biome> holder) {
+    static List<MobSpawnSettings.SpawnerData> getSpawnEntries(ServerLevel serverLevel, StructureManager structureManager, ChunkGenerator chunkGenerator, MobCategory mobCategory, BlockPos blockPos, @Nullable Holder<Biome> holder) {
         return NaturalSpawner.isInNetherFortressBounds(blockPos, serverLevel, mobCategory, structureManager) ? NetherFortressStructure.FORTRESS_ENEMIES.unwrap() : chunkGenerator.getMobsAt(holder != null ? holder : serverLevel.getBiome(blockPos), structureManager, mobCategory, blockPos).unwrap();
     }
 
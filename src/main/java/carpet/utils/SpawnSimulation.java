@@ -0,0 +1,426 @@
+package carpet.utils;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.TickTask;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.tags.BiomeTags;
+import net.minecraft.util.Mth;
+import net.minecraft.util.RandomSource;
+import net.minecraft.util.random.WeightedRandom;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.MobCategory;
+import net.minecraft.world.entity.MobSpawnType;
+import net.minecraft.world.entity.SpawnPlacements;
+import net.minecraft.world.level.biome.MobSpawnSettings;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Estimates spawning rates of an area, usually a mob farm, without running the world faster.
+ * The state of the area that spawning depends on is read once, on the server thread and a slice of spare tick time
+ * at a time: which blocks can start a spawning pack, how high spawning can start in each column, and for each
+ * spot which mobs it can spawn, with the chance that their spawning rules pass there. Independent trials then
+ * replay the natural spawning cycles of the chunks around the area at full speed on the common fork-join pool,
+ * as if every spawned mob was killed at once, so mobcaps never fill up.
+ * <p>
+ * Only spots inside the area can spawn mobs in a trial, spawning rules of the mobs themselves (like avoiding
+ * spawning in liquids) and collisions with other entities are not checked, and the player stays where the test
+ * was started from.
+ */
+public class SpawnSimulation
+{
+    public static final int MAX_VOLUME = 64 * 64 * 64;
+    // time the server thread spends reading the area before letting the tick go on
+    private static final long READ_SLICE_NANOS = 5_000_000;
+    // evaluations of the spawning rules of a mob at a spot, to tell how likely they pass
+    private static final int RULE_SAMPLES = 16;
+    private static final int PACKS = 3;
+    private static final MobCategory[] CATEGORIES = MobCategory.values();
+    // two-sided 95% quantiles of the Student t distribution, by degrees of freedom
+    private static final double[] T_95 = {
+            Double.NaN, 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    /**
+     * Spawning rate of a mob type, in mobs per hour, and the half width of its 95% confidence interval
+     */
+    public record Rate(EntityType<?> type, double perHour, double margin) {}
+
+    public record Result(BoundingBox area, int ticks, int trials, List<Rate> rates) {}
+
+    /**
+     * Mobs a spot can spawn for one category, with the chance of each passing its spawning rules there
+     */
+    private record Spot(List<MobSpawnSettings.SpawnerData> entries, float[] chances, boolean reducedWaterAmbient)
+    {
+        private float chance(MobSpawnSettings.SpawnerData data)
+        {
+            for (int i = 0; i < chances.length; i++)
+            {
+                if (entries.get(i) == data)
+                {
+                    return chances[i];
+                }
+            }
+            // only mobs still spawning at the spot can spawn there
+            return 0.0F;
+        }
+    }
+
+    private final ServerLevel level;
+    private final BoundingBox area;
+    private final int minChunkX, minChunkZ, chunksX, chunksZ;
+    private final int minBuildHeight, height;
+    private final double playerX, playerY, playerZ;
+    private final double spawnX, spawnY, spawnZ;
+    private final int[] spawnTries = new int[CATEGORIES.length];
+    // WORLD_SURFACE heightmaps of the chunks, 256 columns each
+    private final int[] heights;
+    // blocks that stop a pack from starting, one set per chunk indexed by column and height
+    private final BitSet[] conductors;
+    private final Spot[] spots;
+    private final Reference2IntOpenHashMap<EntityType<?>> typeIndices = new Reference2IntOpenHashMap<>();
+    private final List<EntityType<?>> types = new ArrayList<>();
+    private final IntArrayList clusterSizes = new IntArrayList();
+    // own randomness for reading spawning rules and seeding trials, so a simulation doesn't change what the world rolls next
+    private final RandomSource random = RandomSource.create();
+    private int cursor;
+
+    private SpawnSimulation(ServerLevel level, BoundingBox area, Vec3 player)
+    {
+        this.level = level;
+        this.area = area;
+        minChunkX = (area.minX() >> 4) - 1;
+        minChunkZ = (area.minZ() >> 4) - 1;
+        chunksX = (area.maxX() >> 4) + 1 - minChunkX + 1;
+        chunksZ = (area.maxZ() >> 4) + 1 - minChunkZ + 1;
+        minBuildHeight = level.getMinBuildHeight();
+        height = level.getHeight();
+        playerX = player.x;
+        playerY = player.y;
+        playerZ = player.z;
+        BlockPos worldSpawn = level.getSharedSpawnPos();
+        spawnX = worldSpawn.getX() + 0.5D;
+        spawnY = worldSpawn.getY() + 0.5D;
+        spawnZ = worldSpawn.getZ() + 0.5D;
+        for (MobCategory category : CATEGORIES)
+        {
+            spawnTries[category.ordinal()] = SpawnReporter.getSpawnTries(category);
+        }
+        heights = new int[chunksX * chunksZ * 256];
+        conductors = new BitSet[chunksX * chunksZ];
+        spots = new Spot[area.getXSpan() * area.getYSpan() * area.getZSpan() * CATEGORIES.length];
+        typeIndices.defaultReturnValue(-1);
+    }
+
+    /**
+     * Starts estimating spawning rates of the area, has to be called on the server thread.
+     * The returned future completes on the server thread.
+     */
+    public static CompletableFuture<Result> run(ServerLevel level, BoundingBox area, Vec3 player, int ticks, int trials)
+    {
+        MinecraftServer server = level.getServer();
+        SpawnSimulation simulation = new SpawnSimulation(level, area, player);
+        long seed = simulation.random.nextLong();
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        Runnable reader = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    if (!simulation.read(System.nanoTime() + READ_SLICE_NANOS))
+                    {
+                        // runs when the server has spare time, or a few ticks later at the latest
+                        server.tell(new TickTask(server.getTickCount(), this));
+                        return;
+                    }
+                }
+                catch (RuntimeException e)
+                {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                List<CompletableFuture<long[]>> runs = new ArrayList<>(trials);
+                for (int trial = 0; trial < trials; trial++)
+                {
+                    long trialSeed = seed + trial;
+                    runs.add(CompletableFuture.supplyAsync(() -> simulation.trial(RandomSource.create(trialSeed), ticks)));
+                }
+                CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new)).whenComplete((ignored, error) -> server.execute(() -> {
+                    if (error != null)
+                    {
+                        future.completeExceptionally(error);
+                        return;
+                    }
+                    future.complete(simulation.summarize(runs.stream().map(CompletableFuture::join).toList(), ticks));
+                }));
+            }
+        };
+        reader.run();
+        return future;
+    }
+
+    /**
+     * Reads the next part of the area from the world
+     *
+     * @return whether everything has been read
+     */
+    private boolean read(long sliceEnd)
+    {
+        int chunks = conductors.length;
+        int volume = spots.length / CATEGORIES.length;
+        while (cursor < chunks + volume)
+        {
+            if (cursor < chunks)
+            {
+                readChunk(cursor);
+            }
+            else
+            {
+                readSpot(cursor - chunks);
+            }
+            cursor++;
+            if (System.nanoTime() > sliceEnd)
+            {
+                return cursor == chunks + volume;
+            }
+        }
+        return true;
+    }
+
+    private void readChunk(int index)
+    {
+        int chunkX = minChunkX + index / chunksZ;
+        int chunkZ = minChunkZ + index % chunksZ;
+        LevelChunk chunk = level.getChunk(chunkX, chunkZ);
+        BitSet blocking = new BitSet();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int column = 0; column < 256; column++)
+        {
+            int x = (chunkX << 4) + (column >> 4);
+            int z = (chunkZ << 4) + (column & 15);
+            int top = chunk.getHeight(Heightmap.Types.WORLD_SURFACE, x, z) + 1;
+            heights[index * 256 + column] = top;
+            for (int y = minBuildHeight; y <= top; y++)
+            {
+                pos.set(x, y, z);
+                if (chunk.getBlockState(pos).isRedstoneConductor(chunk, pos))
+                {
+                    blocking.set(column * height + y - minBuildHeight);
+                }
+            }
+        }
+        conductors[index] = blocking;
+    }
+
+    private void readSpot(int index)
+    {
+        int x = area.minX() + index / (area.getYSpan() * area.getZSpan());
+        int y = area.minY() + (index / area.getZSpan()) % area.getYSpan();
+        int z = area.minZ() + index % area.getZSpan();
+        BlockPos pos = new BlockPos(x, y, z);
+        for (MobCategory category : CATEGORIES)
+        {
+            if (category == MobCategory.MISC)
+            {
+                continue;
+            }
+            List<MobSpawnSettings.SpawnerData> entries = SpawnReporter.getSpawnEntries(level, level.structureManager(), level.getChunkSource().getGenerator(), category, pos, null);
+            if (entries.isEmpty())
+            {
+                continue;
+            }
+            float[] chances = new float[entries.size()];
+            for (int i = 0; i < chances.length; i++)
+            {
+                chances[i] = ruleChance(entries.get(i).type, pos);
+            }
+            boolean reducedWaterAmbient = category == MobCategory.WATER_AMBIENT && level.getBiome(pos).is(BiomeTags.REDUCE_WATER_AMBIENT_SPAWNS);
+            spots[index * CATEGORIES.length + category.ordinal()] = new Spot(entries, chances, reducedWaterAmbient);
+        }
+    }
+
+    private float ruleChance(EntityType<?> type, BlockPos pos)
+    {
+        typeIndex(type);
+        if (!type.canSummon() || !SpawnPlacements.isSpawnPositionOk(type, level, pos)
+                || !level.noCollision(type.getSpawnAABB(pos.getX() + 0.5D, pos.getY(), pos.getZ() + 0.5D)))
+        {
+            return 0.0F;
+        }
+        int passed = 0;
+        for (int i = 0; i < RULE_SAMPLES; i++)
+        {
+            if (SpawnPlacements.checkSpawnRules(type, level, MobSpawnType.NATURAL, pos, random))
+            {
+                passed++;
+            }
+        }
+        return (float) passed / RULE_SAMPLES;
+    }
+
+    private int typeIndex(EntityType<?> type)
+    {
+        int index = typeIndices.getInt(type);
+        if (index < 0)
+        {
+            index = types.size();
+            typeIndices.put(type, index);
+            types.add(type);
+            // not added to the world, only asked how many of it can spawn at once
+            Entity entity = type.create(level);
+            clusterSizes.add(entity instanceof Mob mob ? mob.getMaxSpawnClusterSize() : 4);
+        }
+        return index;
+    }
+
+    /**
+     * Runs natural spawning of the chunks around the area for the given number of ticks, off the server thread
+     *
+     * @return mobs spawned by type index
+     */
+    private long[] trial(RandomSource random, int ticks)
+    {
+        long[] spawned = new long[types.size()];
+        for (int tick = 0; tick < ticks; tick++)
+        {
+            for (int chunk = 0; chunk < conductors.length; chunk++)
+            {
+                for (MobCategory category : CATEGORIES)
+                {
+                    // persistent mobs only try to spawn every 400 ticks
+                    if (category == MobCategory.MISC || (category.isPersistent() && tick % 400 != 0))
+                    {
+                        continue;
+                    }
+                    for (int i = 0; i < spawnTries[category.ordinal()]; i++)
+                    {
+                        spawnInChunk(category, chunk, random, spawned);
+                    }
+                }
+            }
+        }
+        return spawned;
+    }
+
+    /**
+     * Follows NaturalSpawner.spawnCategoryForChunk, with the world read from what was captured
+     */
+    private void spawnInChunk(MobCategory category, int chunk, RandomSource random, long[] spawned)
+    {
+        int column = random.nextInt(16) << 4 | random.nextInt(16);
+        int x = ((minChunkX + chunk / chunksZ) << 4) + (column >> 4);
+        int z = ((minChunkZ + chunk % chunksZ) << 4) + (column & 15);
+        int y = Mth.randomBetweenInclusive(random, minBuildHeight, heights[chunk * 256 + column]);
+        if (y < minBuildHeight + 1 || conductors[chunk].get(column * height + y - minBuildHeight))
+        {
+            return;
+        }
+        int spawnedInChunk = 0;
+        for (int pack = 0; pack < PACKS; pack++)
+        {
+            int packX = x;
+            int packZ = z;
+            MobSpawnSettings.SpawnerData data = null;
+            int packSize = Mth.ceil(random.nextFloat() * 4.0F);
+            for (int attempt = 0; attempt < packSize; attempt++)
+            {
+                packX += random.nextInt(6) - random.nextInt(6);
+                packZ += random.nextInt(6) - random.nextInt(6);
+                double dx = packX + 0.5D - playerX;
+                double dy = y - playerY;
+                double dz = packZ + 0.5D - playerZ;
+                double distance = dx * dx + dy * dy + dz * dz;
+                if (distance <= 576.0D || Mth.lengthSquared(packX + 0.5D - spawnX, y - spawnY, packZ + 0.5D - spawnZ) < 576.0D)
+                {
+                    continue;
+                }
+                Spot spot = spot(packX, y, packZ, category);
+                if (data == null)
+                {
+                    if (spot == null || (spot.reducedWaterAmbient() && random.nextFloat() < 0.98F))
+                    {
+                        break;
+                    }
+                    Optional<MobSpawnSettings.SpawnerData> chosen = WeightedRandom.getRandomItem(random, spot.entries());
+                    if (chosen.isEmpty())
+                    {
+                        break;
+                    }
+                    data = chosen.get();
+                    packSize = data.minCount + random.nextInt(1 + data.maxCount - data.minCount);
+                }
+                if (spot == null || (distance > 16384.0D && !data.type.canSpawnFarFromPlayer()) || random.nextFloat() >= spot.chance(data))
+                {
+                    continue;
+                }
+                int type = typeIndices.getInt(data.type);
+                spawned[type]++;
+                spawnedInChunk++;
+                if (spawnedInChunk >= clusterSizes.getInt(type))
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Spot spot(int x, int y, int z, MobCategory category)
+    {
+        if (!area.isInside(x, y, z))
+        {
+            return null;
+        }
+        int index = ((x - area.minX()) * area.getYSpan() + y - area.minY()) * area.getZSpan() + z - area.minZ();
+        return spots[index * CATEGORIES.length + category.ordinal()];
+    }
+
+    private Result summarize(List<long[]> trials, int ticks)
+    {
+        int n = trials.size();
+        double hours = ticks / 72000.0D;
+        List<Rate> rates = new ArrayList<>();
+        for (int type = 0; type < types.size(); type++)
+        {
+            double sum = 0.0D;
+            double squares = 0.0D;
+            for (long[] trial : trials)
+            {
+                double perHour = trial[type] / hours;
+                sum += perHour;
+                squares += perHour * perHour;
+            }
+            if (sum == 0.0D)
+            {
+                continue;
+            }
+            double mean = sum / n;
+            double margin = Double.NaN;
+            if (n > 1)
+            {
+                double deviation = Math.sqrt(Math.max(0.0D, (squares - n * mean * mean) / (n - 1)));
+                margin = (n - 1 < T_95.length ? T_95[n - 1] : 1.96D) * deviation / Math.sqrt(n);
+            }
+            rates.add(new Rate(types.get(type), mean, margin));
+        }
+        rates.sort((a, b) -> Double.compare(b.perHour(), a.perHour()));
+        return new Result(area, ticks, n, rates);
+    }
+}
@@ -0,0 +1,41 @@
+package carpet.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable length encoding of non-negative numbers, 7 bits per byte with the high bit marking that more bytes follow,
+ * used by the compact files carpet writes, like saved hopper counters and trajectory captures.
+ */
+public final class VarInts
+{
+    private VarInts()
+    {
+    }
+
+    public static void writeVarLong(DataOutput output, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput input) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+}
@@ -0,0 +1,162 @@
+// Scarpet interpreter benchmarks. Each case reports the best wall time out of a few runs,
+// so results of different versions of carpet can be compared on the same machine.
+// Not shipped with the mod, copy it to the scripts folder of a test world and run /script load benchmark.
+
+__config() -> {
+    'scope' -> 'global',
+    'commands' -> {
+        '' -> 'bench_calls',
+        'calls' -> 'bench_calls',
+        'loops' -> 'bench_loops',
+        'numbers' -> 'bench_numbers',
+        'pipelines' -> 'bench_pipelines',
+        'maps' -> 'bench_maps',
+        'cramming' -> 'bench_cramming',
+    },
+};
+
+global_runs = 5;
+
+_bench(name, case) ->
+(
+    best = null;
+    loop(global_runs,
+        start = time();
+        call(case);
+        elapsed = time() - start;
+        if (best == null || elapsed < best, best = elapsed)
+    );
+    print(format('w  ' + name + ': ', 'y ' + str('%.2f', best) + 'ms'));
+    best
+);
+
+_fib(n) -> if (n < 2, n, _fib(n - 1) + _fib(n - 2));
+
+_inc(counter) -> counter + 1;
+
+_add(a, b) -> a + b;
+
+_sum_to(n, acc) -> if (n == 0, acc, _sum_to(n - 1, acc + n));
+
+// a return inside of try is no tail call, the try still has to catch what the call throws
+_return_in_try(n) -> (if (n == 0, throw('x')); try(return(_return_in_try(n - 1)), 'caught'));
+
+_is_even(n) -> if (n == 0, true, _is_odd(n - 1));
+_is_odd(n) -> if (n == 0, false, _is_even(n - 1));
+
+_block_weight(block) -> if (air(block), 0, solid(block), 2, 1);
+
+bench_calls() ->
+(
+    print(format('wb Function calls:'));
+    _bench('recursive fib(22)', _() -> _fib(22));
+    _bench('100k calls, argument of the same name', _() -> (counter = 0; loop(100000, counter = _inc(counter)); counter));
+    _bench('100k calls, computed arguments', _() -> (s = 0; loop(100000, s = _add(s, _)); s));
+    _bench('100k lambda calls', _() -> (adder = _(a, b) -> a + b; s = 0; loop(100000, s = call(adder, s, _)); s));
+    _bench('tail recursion, 100k deep', _() -> _sum_to(100000, 0));
+    _bench('trampolined mutual recursion, 100k deep', _() -> trampoline('_is_even', 100000));
+    _bench('function per block, 32x32x32', _() -> (total = 0; volume(0, 0, 0, 31, 31, 31, total += _block_weight(_)); total));
+    if (_return_in_try(1) != 'caught', print(format('r   exceptions escape try around a returned call')));
+    null
+);
+
+// each case runs twice: with break, continue or return where their value reaches the loop or function, so they are
+// returned as signals, and inside of '&&', where they are still thrown like before signals, to compare both
+_bench_signals(name, returned, thrown) ->
+(
+    fast = _bench(name + ', returned', returned);
+    slow = _bench(name + ', thrown', thrown);
+    print(format('g    ' + str('%.1f', slow / max(fast, 0.01)) + 'x faster returned'));
+);
+
+bench_loops() ->
+(
+    print(format('wb Loops:'));
+    _bench_signals('100k iterations with continue',
+        _() -> (s = 0; loop(100000, if (_ % 2, continue()); s += _); s),
+        _() -> (s = 0; loop(100000, _ % 2 && continue(); s += _); s));
+    _bench_signals('while with break after 100k',
+        _() -> (i = 0; while (true, if (i >= 100000, break(i)); i += 1)),
+        _() -> (i = 0; while (true, i >= 100000 && break(i); i += 1)));
+    _bench_signals('filter 100k with continue',
+        _() -> length(filter(range(100000), if (_ % 3, continue(false), true))),
+        _() -> length(filter(range(100000), _ % 3 && continue(false); true)));
+    _bench_signals('first of 100k',
+        _() -> first(range(100000), if (_ == 99999, break(_), false)),
+        _() -> first(range(100000), _ == 99999 && break(_); false));
+    _bench_signals('map 100k, early returns in a function',
+        _() -> (_classify(x) -> (if (x < 10, return('small')); if (x < 1000, 'medium', 'large')); map(range(100000), _classify(_))),
+        _() -> (_classify_thrown(x) -> (x < 10 && return('small'); if (x < 1000, 'medium', 'large')); map(range(100000), _classify_thrown(_))));
+    _bench_signals('c_for 100k with break',
+        _() -> c_for(i = 0, true, i += 1, if (i >= 100000, break())),
+        _() -> c_for(i = 0, true, i += 1, i >= 100000 && break()));
+    null
+);
+
+bench_numbers() ->
+(
+    print(format('wb Lists of numbers:'));
+    _bench('list of range 1M', _() -> length(l(range(1000000))));
+    _bench('map 200k numbers', _() -> map(range(200000), _ * 2));
+    _bench('sort 200k numbers', _() -> (l = map(range(200000), (_ * 7919) % 200000); length(sort(l))));
+    _bench('vector arithmetic, 100 rounds on 10k', _() -> (v = l(range(10000)); w = v * 0.5; loop(100, v = v + w); v:9999));
+    _bench('sum of 100 vectors of 10k', _() -> (v = l(range(10000)); length(sum(...map(range(100), v)))));
+    _bench('read 100k numbers 10 times', _() -> (v = map(range(100000), _ * 3); s = 0; loop(10, for(v, s += _)); s));
+    // integers in lists of numbers that hold fractions too must stay integers, which shows on exact long arithmetic
+    big = 1000000000000000001;
+    mixed = map(l(1.5, 3), _);
+    widened = map(range(3), _);
+    widened:0 = 0.5;
+    if (str(mixed:1 * big) != '3000000000000000003' || str(widened:2 * big) != '2000000000000000002',
+        print(format('r   integers in lists with fractions read back as fractions'))
+    );
+    null
+);
+
+bench_pipelines() ->
+(
+    print(format('wb Map, filter and reduce chains:'));
+    _bench('reduce(filter(map(range(1M))))', _() -> reduce(filter(map(range(1000000), _ * 3), _ % 2), _a + _, 0));
+    _bench('first of map over 1M', _() -> first(map(range(1000000), _ * _), _ > 10000));
+    _bench('for over filter of 1M', _() -> for(filter(range(1000000), _ % 7 == 0), _ % 2));
+    null
+);
+
+bench_maps() ->
+(
+    print(format('wb String keyed maps:'));
+    keys = map(range(1000), 'key_' + _);
+    ids = block_list();
+    _bench('put 100k, 1000 string keys', _(outer(keys)) -> (m = {}; loop(100, for(keys, m:_ = _i)); length(m)));
+    _bench('get 100k, 1000 string keys', _(outer(keys)) -> (m = {}; for(keys, m:_ = _i); s = 0; loop(100, for(keys, s += m:_)); s));
+    _bench('has 100k, literal key', _() -> (m = {'stone' -> 1}; c = 0; loop(100000, if (has(m, 'stone'), c += 1)); c));
+    _bench('get of each block id, 100 rounds', _(outer(ids)) -> (m = {}; for(ids, m:_ = _i); s = 0; loop(100, for(block_list(), s += m:_)); s));
+    null
+);
+
+bench_cramming() ->
+(
+    if (!player(), print(format('r Cramming needs to be run by a player, pigs are crammed where they stand')); return());
+    print(format('wb Entity cramming, 2000 pigs in one block, 20 ticks:'));
+    at = map(pos(player()), floor(_)) + l(0.5, 0, 0.5);
+    rules = system_info('world_carpet_rules');
+    cramming = system_info('world_gamerules'):'maxEntityCramming';
+    // nothing dies from cramming while measuring, and pigs don't walk away
+    run('gamerule maxEntityCramming 0');
+    // rules and pigs are put back even if a case fails, which is thrown again after that
+    failure = null;
+    try(
+        loop(2000, spawn('pig', at, '{NoAI:1b,Tags:["bench_cramming"]}'));
+        for (l(0, 24, 8, 1),
+            run('carpet maxEntityCollisions ' + _);
+            _bench(if (_ == 0, 'no collision limit', 'maxEntityCollisions ' + _), _() -> loop(20, game_tick()))
+        ),
+        'exception', failure = _
+    );
+    // pushed around by the other pigs, they don't all stay in the block they spawned in
+    for (entity_selector('@e[type=pig,tag=bench_cramming]'), modify(_, 'remove'));
+    run('carpet maxEntityCollisions ' + rules:'maxEntityCollisions');
+    run('gamerule maxEntityCramming ' + cramming);
+    if (failure != null, throw(failure));
+    null
+);